@@ -7,7 +7,6 @@ import android.text.Editable;
 import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
-import android.widget.ArrayAdapter;
 import android.widget.AutoCompleteTextView;
 import android.widget.Button;
 import android.widget.CheckBox;
@@ -19,19 +18,10 @@ import androidx.fragment.app.DialogFragment;
 
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * AddItemDialogFragment allows the user to create & post a new item to be shared with all
@@ -50,10 +40,12 @@ public class AddItemDialogFragment extends DialogFragment {
     private Button cancelButton;
     private Button addCategoryButton;
 
-    private final List<Category> categoryList = new ArrayList<>();
-    private final List<String> categoryTitles = new ArrayList<>();
-    private final Set<String> categoryTitleLowerSet = new HashSet<>();
+    private CategoryRepository.Snapshot categories;
+    // ranked category suggestions for the dropdown
+    private CategorySuggestionAdapter categoryAdapter;
     private String selectedCategoryKey = null;
+    // category of the item being edited, before any change
+    private String editingCategoryId = null;
 
     /**
      * onCreateDialog initializes the UI of the dialog fragment.
@@ -82,6 +74,9 @@ public class AddItemDialogFragment extends DialogFragment {
         builder.setView(view);
         Dialog dialog = builder.create();
 
+        categoryAdapter = new CategorySuggestionAdapter(requireContext(),
+                CategoryRepository.SUGGESTION_LIMIT);
+        itemCategoryDropdown.setAdapter(categoryAdapter);
         loadCategories();
 
         // show dropdown when tapping the category box
@@ -93,14 +88,9 @@ public class AddItemDialogFragment extends DialogFragment {
             }
         });
 
-        itemCategoryDropdown.setOnItemClickListener((parent, v, position, id) -> {
-            if (position >= 0 && position < categoryList.size()) {
-                Category selected = categoryList.get(position);
-                selectedCategoryKey = selected.getKey();
-            } else {
-                selectedCategoryKey = null;
-            }
-        });
+        // the position is in the filtered suggestions, which carry their keys
+        itemCategoryDropdown.setOnItemClickListener((parent, v, position, id) ->
+                selectedCategoryKey = categoryAdapter.keyAt(position));
 
         // only allow the user to enter up to 2 decimal places for the price
         priceEditText.addTextChangedListener(new TextWatcher() {
@@ -134,14 +124,10 @@ public class AddItemDialogFragment extends DialogFragment {
         String itemId = (getArguments() != null) ? getArguments().getString("itemId") : null;
         // conditional rendering of dialog fragment if the user is creating or editing the item
         if (itemId != null) {
-            DatabaseReference dbRef = FirebaseDatabase.getInstance()
-                    .getReference("items")
-                    .child(itemId);
-
-            dbRef.get().addOnSuccessListener(snapshot -> {
+            DataSources.get().items().get(itemId).whenComplete((item, error) -> {
                 if (!isAdded()) return;
-                Item item = snapshot.getValue(Item.class);
                 if (item != null) {
+                    editingCategoryId = item.getCategoryId();
                     itemNameEditText.setText(item.getName());
                     descriptionEditText.setText(item.getDescription());
                     if (item.getPrice() == 0.0) {
@@ -152,12 +138,12 @@ public class AddItemDialogFragment extends DialogFragment {
 
                     if (item.getCategoryId() != null) {
                         String catId = item.getCategoryId();
-                        for (Category c : categoryList) {
-                            if (catId.equals(c.getKey())) {
-                                selectedCategoryKey = c.getKey();
-                                itemCategoryDropdown.setText(c.getTitle(), false);
-                                break;
-                            }
+                        String title = (categories != null)
+                                ? categories.titleOf(catId)
+                                : item.getCategoryTitle();
+                        if (title != null) {
+                            selectedCategoryKey = catId;
+                            itemCategoryDropdown.setText(title, false);
                         }
                     }
                 }
@@ -175,58 +161,43 @@ public class AddItemDialogFragment extends DialogFragment {
 
     /**
      * loadCategories displays the names of all categories in the
-     * database.
+     * database, using the shared CategoryRepository.
      */
     private void loadCategories() {
-        DatabaseReference catRef = FirebaseDatabase.getInstance()
-                .getReference("categories");
-
-        catRef.orderByChild("title")
-                .addValueEventListener(new ValueEventListener() {
-                    @Override
-                    public void onDataChange(@NonNull DataSnapshot snapshot) {
-                        if (!isAdded()) return;
-
-                        categoryList.clear();
-                        categoryTitles.clear();
-                        categoryTitleLowerSet.clear();
-
-                        for (DataSnapshot catSnap : snapshot.getChildren()) {
-                            Category c = catSnap.getValue(Category.class);
-                            if (c != null) {
-                                if (c.getKey() == null || c.getKey().isEmpty()) {
-                                    c.setKey(catSnap.getKey());
-                                }
-                                String title = c.getTitle();
-                                if (title == null) continue;
-
-                                String norm = title.trim().toLowerCase(Locale.US);
-                                if (!categoryTitleLowerSet.contains(norm)) {
-                                    categoryTitleLowerSet.add(norm);
-                                    categoryList.add(c);
-                                    categoryTitles.add(title);
-                                }
-                            }
-                        }
+        CategoryRepository.get().subscribe(categoryListener);
+    }
 
-                        if (getContext() == null) return;
+    private final CategoryRepository.Listener categoryListener = new CategoryRepository.Listener() {
+        @Override
+        public void onCategoriesChanged(CategoryRepository.Snapshot snapshot) {
+            if (!isAdded() || getContext() == null) return;
 
-                        ArrayAdapter<String> adapter = new ArrayAdapter<>(
-                                requireContext(),
-                                android.R.layout.simple_dropdown_item_1line,
-                                categoryTitles
-                        );
-                        itemCategoryDropdown.setAdapter(adapter);
-                    }
+            categories = snapshot;
+            categoryAdapter.refresh();
+        }
 
-                    @Override
-                    public void onCancelled(@NonNull DatabaseError error) {
-                        if (!isAdded()) return;
-                        Toast.makeText(getContext(),
-                                "Failed to load categories",
-                                Toast.LENGTH_SHORT).show();
-                    }
-                });
+        @Override
+        public void onSuggestionsChanged() {
+            if (!isAdded()) return;
+            categoryAdapter.refresh();
+        }
+
+        @Override
+        public void onLoadFailed() {
+            if (!isAdded()) return;
+            Toast.makeText(getContext(),
+                    "Failed to load categories",
+                    Toast.LENGTH_SHORT).show();
+        }
+    };
+
+    /**
+     * onDestroy stops listening to the categories.
+     */
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        CategoryRepository.get().unsubscribe(categoryListener);
     }
 
     /**
@@ -252,15 +223,14 @@ public class AddItemDialogFragment extends DialogFragment {
                 return;
             }
 
-            String norm = title.toLowerCase(Locale.US);
-            if (categoryTitleLowerSet.contains(norm)) {
+            if (categories != null && categories.containsTitle(title)) {
                 Toast.makeText(getContext(),
                         "Category already exists",
                         Toast.LENGTH_SHORT).show();
                 return;
             }
 
-            createCategoryInFirebase(title, norm);
+            createCategoryInFirebase(title);
         });
 
         builder.setNegativeButton("Cancel", (dialog, which) -> dialog.dismiss());
@@ -272,19 +242,17 @@ public class AddItemDialogFragment extends DialogFragment {
      * createCategoryInFirebase adds the entered category into the Firebase
      * database.
      * @param title
-     * @param normalizedLower
      */
-    private void createCategoryInFirebase(String title, String normalizedLower) {
+    private void createCategoryInFirebase(String title) {
         String currentUid = FirebaseAuth.getInstance().getUid();
         if (currentUid == null) {
             Toast.makeText(getContext(), "User not recognized", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        DatabaseReference catRef = FirebaseDatabase.getInstance()
-                .getReference("categories");
+        DataSource.Ref<Category> catRef = DataSources.get().categories();
 
-        String key = catRef.push().getKey();
+        String key = catRef.newKey();
         if (key == null) {
             Toast.makeText(getContext(),
                     "Failed to create category",
@@ -296,32 +264,24 @@ public class AddItemDialogFragment extends DialogFragment {
         Category newCategory = new Category(currentUid, title, time);
         newCategory.setKey(key);
 
-        catRef.child(key).setValue(newCategory)
-                .addOnSuccessListener(aVoid -> {
+        catRef.set(key, newCategory)
+                .whenComplete((saved, error) -> {
                     if (!isAdded()) return;
-
-                    categoryList.add(newCategory);
-                    categoryTitles.add(title);
-                    categoryTitleLowerSet.add(normalizedLower);
-
-                    ArrayAdapter<String> adapter =
-                            (ArrayAdapter<String>) itemCategoryDropdown.getAdapter();
-                    if (adapter != null) {
-                        adapter.notifyDataSetChanged();
+                    if (error != null) {
+                        Toast.makeText(getContext(),
+                                "Failed to save category",
+                                Toast.LENGTH_SHORT).show();
+                        return;
                     }
 
+                    // the repository already delivered the new category
+                    // to the dropdown, so just select it
                     itemCategoryDropdown.setText(title, false);
                     selectedCategoryKey = key;
 
                     Toast.makeText(getContext(),
                             "Category created",
                             Toast.LENGTH_SHORT).show();
-                })
-                .addOnFailureListener(e -> {
-                    if (!isAdded()) return;
-                    Toast.makeText(getContext(),
-                            "Failed to save category",
-                            Toast.LENGTH_SHORT).show();
                 });
     }
 
@@ -363,9 +323,7 @@ public class AddItemDialogFragment extends DialogFragment {
             }
         }
 
-        DatabaseReference itemsRef =
-                FirebaseDatabase.getInstance().getReference("items");
-        String key = itemsRef.push().getKey();
+        String key = DataSources.get().items().newKey();
         FirebaseUser currUser = FirebaseAuth.getInstance().getCurrentUser();
         long time = System.currentTimeMillis();
 
@@ -382,21 +340,32 @@ public class AddItemDialogFragment extends DialogFragment {
                     desc
             );
             newItem.setKey(key);
+            // store the names cards show with the item, so they need no reads
+            newItem.setCategoryTitle(categoryTitleFor(selectedCategoryKey));
+            String categoryKey = selectedCategoryKey;
 
-            itemsRef.child(key).setValue(newItem)
-                    .addOnSuccessListener(aVoid -> {
-                        if (!isAdded()) return;
-                        Toast.makeText(getContext(),
-                                "Successfully added item",
-                                Toast.LENGTH_SHORT).show();
-                        dialog.dismiss();
-                    })
-                    .addOnFailureListener(e -> {
-                        if (!isAdded()) return;
+            UserDirectory.get().lookup(sellerId, seller -> {
+                if (seller != null) newItem.setSellerName(seller.getName());
+
+                // write the item & bump its category's count in one update
+                Map<String, Object> updates = new HashMap<>();
+                updates.put("items/" + key, newItem);
+                CategoryCounters.addStatusChange(updates, categoryKey, null, "available");
+
+                DataSources.get().update(updates).whenComplete((unused, error) -> {
+                    if (!isAdded()) return;
+                    if (error != null) {
                         Toast.makeText(getContext(),
                                 "Failed to add item",
                                 Toast.LENGTH_SHORT).show();
-                    });
+                        return;
+                    }
+                    Toast.makeText(getContext(),
+                            "Successfully added item",
+                            Toast.LENGTH_SHORT).show();
+                    dialog.dismiss();
+                });
+            });
         } else {
             Toast.makeText(getContext(),
                     "User not recognized",
@@ -451,29 +420,41 @@ public class AddItemDialogFragment extends DialogFragment {
             return;
         }
 
-        Map<String, Object> updates = new HashMap<>();
-        updates.put("name", name);
-        updates.put("description", desc);
-        updates.put("price", price);
-        updates.put("categoryId", selectedCategoryKey);
-
-        DatabaseReference dbRef = FirebaseDatabase.getInstance()
-                .getReference("items")
-                .child(itemId);
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("name", name);
+        fields.put("description", desc);
+        fields.put("price", price);
+        fields.put("categoryId", selectedCategoryKey);
+        fields.put("categoryTitle", categoryTitleFor(selectedCategoryKey));
+        // only available items can be edited, so keep that index in sync
+        fields.put("statusName", Item.nameIndex("available", name));
+
+        // move the item between category counts in the same update
+        Map<String, Object> updates = CategoryCounters.itemFields(itemId, fields);
+        CategoryCounters.addCategoryChange(updates, editingCategoryId, selectedCategoryKey, "available");
+
+        DataSources.get().update(updates).whenComplete((unused, error) -> {
+            if (!isAdded()) return;
+            if (error != null) {
+                Toast.makeText(requireContext(),
+                        "Error: " + error.getMessage(),
+                        Toast.LENGTH_SHORT).show();
+                return;
+            }
+            Toast.makeText(requireContext(),
+                    "Successfully Updated Item",
+                    Toast.LENGTH_SHORT).show();
+            dialog.dismiss();
+        });
+    }
 
-        dbRef.updateChildren(updates)
-                .addOnSuccessListener(unused -> {
-                    if (!isAdded()) return;
-                    Toast.makeText(requireContext(),
-                            "Successfully Updated Item",
-                            Toast.LENGTH_SHORT).show();
-                    dialog.dismiss();
-                })
-                .addOnFailureListener(e -> {
-                    if (!isAdded()) return;
-                    Toast.makeText(requireContext(),
-                            "Error: " + e.getMessage(),
-                            Toast.LENGTH_SHORT).show();
-                });
+    /**
+     * categoryTitleFor returns the title of the chosen category, from the
+     * loaded categories or else from the dropdown (for a category that was
+     * just created & has not arrived yet).
+     */
+    private String categoryTitleFor(String categoryId) {
+        String title = (categories == null) ? null : categories.titleOf(categoryId);
+        return (title != null) ? title : itemCategoryDropdown.getText().toString().trim();
     }
 }
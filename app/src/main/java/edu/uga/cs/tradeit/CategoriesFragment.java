@@ -7,19 +7,17 @@ import android.view.ViewGroup;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This fragment shows a list of categories that
@@ -39,6 +37,10 @@ public class CategoriesFragment extends Fragment {
     // this is the list of all categories made by the user
     private List<Category> categories = new ArrayList<>();
 
+    // one listener per shown category on its item counters, each one
+    // detached when the category goes away or with the view
+    private final Map<String, Subscriptions.Subscription> countListeners = new HashMap<>();
+
     /**
      * Empty constructor required for fragments.
      * Nothing special happens here.
@@ -75,10 +77,21 @@ public class CategoriesFragment extends Fragment {
         adapter = new CategoryRecyclerAdapter(categories);
         recyclerView.setAdapter(adapter);
 
+        return view;
+    }
+
+    /**
+     * This is called once the view exists, so listeners can be tied
+     * to the view's lifecycle & go away together with it.
+     *
+     * @param view the view returned by onCreateView
+     * @param savedInstanceState previous state, if any (not used here)
+     */
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
         // load categories created by the current user from Firebase
         loadMyCategories();
-
-        return view;
     }
 
     /**
@@ -89,7 +102,7 @@ public class CategoriesFragment extends Fragment {
      * 1. Get the current user's id from FirebaseAuth.
      * 2. Go to "categories" part of the database.
      * 3. Only get categories whose "creatorId" matches this user id.
-     * 4. When data comes back, update the list and refresh the screen.
+     * 4. As each category comes back or changes, update just that row.
      */
     private void loadMyCategories() {
         // get the ID of the current user (null if no one is logged in)
@@ -101,54 +114,134 @@ public class CategoriesFragment extends Fragment {
             return;
         }
 
-        // point to the "categories" node in the Firebase Realtime Database
-        DatabaseReference catRef = FirebaseDatabase.getInstance().getReference("categories");
-
-        // ask Firebase: give me categories where creatorId == current user's id
-        catRef.orderByChild("creatorId").equalTo(currentUid)
-                .addValueEventListener(new ValueEventListener() {
-                    /**
-                     * This runs when Firebase sends us the data or when
-                     * the data changes in the database.
-                     *
-                     * @param snapshot all the matching categories from Firebase
-                     */
-                    @Override
-                    public void onDataChange(@NonNull DataSnapshot snapshot) {
-                        // clear old data so we don't duplicate items
-                        categories.clear();
-
-                        // go through each category found in the database
-                        for (DataSnapshot catSnapshot : snapshot.getChildren()) {
-                            // turn the database row into a Category object
-                            Category category = catSnapshot.getValue(Category.class);
-                            if (category != null) {
-                                // if the category doesn't have a key yet, set it
-                                // using Firebase's auto-generated key
-                                if (category.getKey() == null || category.getKey().isEmpty()) {
-                                    category.setKey(catSnapshot.getKey());
-                                }
-                                // add it to our list so the adapter can show it
-                                categories.add(category);
-                            }
-                        }
-
-                        // tell the adapter that the data changed so the UI refreshes
-                        adapter.notifyDataSetChanged();
-                    }
-
-                    /**
-                     * This runs if something goes wrong when reading from Firebase.
-                     *
-                     * @param error the error from Firebase
-                     */
-                    @Override
-                    public void onCancelled(@NonNull DatabaseError error) {
-                        // show a short message if loading fails
-                        Toast.makeText(requireContext(),
-                                "Failed to load categories",
-                                Toast.LENGTH_SHORT).show();
-                    }
-                });
+        // ask the database: give me categories where creatorId == current user's id
+        DataSource.Query<Category> categoriesQuery = DataSources.get().categories()
+                .orderByChild("creatorId").equalTo(currentUid);
+
+        // listen to one category at a time, so a change only touches
+        // the row it belongs to instead of rebuilding the whole list
+        DataSource.ChildListener<Category> categoriesListener = new DataSource.ChildListener<Category>() {
+            /**
+             * This runs once for every existing category and then
+             * again whenever a new one is created.
+             *
+             * @param category the category that was added
+             */
+            @Override
+            public void onChildAdded(String key, Category category) {
+                // add it to our list and tell the adapter about the new row
+                categories.add(category);
+                adapter.notifyItemInserted(categories.size() - 1);
+                watchCounts(category.getKey());
+            }
+
+            /**
+             * This runs when a category (for example its title) changes.
+             *
+             * @param category the category with its new values
+             */
+            @Override
+            public void onChildChanged(String key, Category category) {
+                int pos = indexOfKey(category.getKey());
+                if (pos >= 0) {
+                    // only redraw the row that changed
+                    categories.set(pos, category);
+                    adapter.notifyItemChanged(pos);
+                }
+            }
+
+            /**
+             * This runs when a category is deleted.
+             *
+             * @param key the key of the category that was removed
+             */
+            @Override
+            public void onChildRemoved(String key, Category category) {
+                int pos = indexOfKey(key);
+                if (pos >= 0) {
+                    categories.remove(pos);
+                    adapter.notifyItemRemoved(pos);
+                }
+                unwatchCounts(key);
+            }
+
+            /**
+             * This runs if something goes wrong when reading from the database.
+             *
+             * @param error the error from the database
+             */
+            @Override
+            public void onCancelled(Exception error) {
+                if (!isAdded()) return;
+                // show a short message if loading fails
+                Toast.makeText(requireContext(),
+                        "Failed to load categories",
+                        Toast.LENGTH_SHORT).show();
+            }
+        };
+        // detached automatically when the view is destroyed
+        Subscriptions.child(categoriesQuery, categoriesListener)
+                .untilDestroyed(getViewLifecycleOwner());
+    }
+
+    /**
+     * This is called when the fragment's view goes away. The Firebase
+     * listeners were already detached with the view's lifecycle, so
+     * only the local lists are cleared.
+     */
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        countListeners.clear();
+        categories.clear();
+    }
+
+    /**
+     * Starts listening to the item counters of one category so its
+     * row shows how many items it has of each status.
+     *
+     * @param key the category key
+     */
+    private void watchCounts(String key) {
+        if (key == null || countListeners.containsKey(key)) return;
+        DataSource.ValueListener<CategoryCounts> listener = new DataSource.ValueListener<CategoryCounts>() {
+            @Override
+            public void onValue(CategoryCounts counts) {
+                if (!isAdded()) return;
+                adapter.setCounts(key, counts);
+            }
+
+            @Override
+            public void onCancelled(Exception error) {
+                // counts are only extra info, so just leave them out
+            }
+        };
+        countListeners.put(key, Subscriptions.value(DataSources.get().counters(), key, listener)
+                .untilDestroyed(getViewLifecycleOwner()));
+    }
+
+    /**
+     * Stops listening to the item counters of one category.
+     *
+     * @param key the category key
+     */
+    private void unwatchCounts(String key) {
+        Subscriptions.Subscription subscription = countListeners.remove(key);
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * Finds where the category with the given key is in our list.
+     *
+     * @param key the category key to look for
+     * @return the position, or -1 if it is not in the list
+     */
+    private int indexOfKey(String key) {
+        for (int i = 0; i < categories.size(); i++) {
+            if (categories.get(i).getKey().equals(key)) return i;
+        }
+        return -1;
     }
 }
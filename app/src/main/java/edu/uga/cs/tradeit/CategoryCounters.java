@@ -0,0 +1,136 @@
+package edu.uga.cs.tradeit;
+
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * CategoryCounters keeps a count of the items in each category per status
+ * under /categoryCounts/{categoryId}/{available|pending|completed}.
+ *
+ * Every write that creates, deletes, re-categorizes or changes the status of
+ * an item adds the matching DataSource.increment() entries to the same
+ * multi-path update as the item itself, so the item & its counts always
+ * change together. Checking if a category is in use is then one small read
+ * instead of reading every item in the category.
+ *
+ * Items written before the counters existed are counted in by
+ * CounterBackfill; until then load() counts the items itself. Request &
+ * confirm can only send their counts after their item transaction (see
+ * sendStatusChange()), so CounterBackfill also counts everything again
+ * every few hours.
+ */
+public class CategoryCounters {
+
+    /**
+     * Callback receives the counts of one category, or a failure.
+     */
+    public interface Callback {
+        void onCounts(CategoryCounts counts);
+        void onFailed();
+    }
+
+    private CategoryCounters() { }
+
+    /**
+     * itemFields turns item fields into root paths (items/{key}/{field}) so
+     * they can be sent in one update together with counter changes.
+     */
+    public static Map<String, Object> itemFields(String itemKey, Map<String, Object> fields) {
+        Map<String, Object> updates = new HashMap<>();
+        for (Map.Entry<String, Object> e : fields.entrySet()) {
+            updates.put("items/" + itemKey + "/" + e.getKey(), e.getValue());
+        }
+        return updates;
+    }
+
+    /**
+     * addStatusChange adds the counter changes for an item in the given
+     * category moving from oldStatus to newStatus. Use null as oldStatus for
+     * a new item & null as newStatus for a deleted one.
+     */
+    public static void addStatusChange(Map<String, Object> updates, @Nullable String categoryId,
+                                       @Nullable String oldStatus, @Nullable String newStatus) {
+        if (categoryId == null || categoryId.isEmpty()) return;
+        if (oldStatus != null && oldStatus.equals(newStatus)) return;
+        if (oldStatus != null) {
+            updates.put(CategoryCounts.path(categoryId, oldStatus), DataSource.increment(-1));
+        }
+        if (newStatus != null) {
+            updates.put(CategoryCounts.path(categoryId, newStatus), DataSource.increment(1));
+        }
+    }
+
+    /**
+     * sendStatusChange sends the counter changes for an item a transaction
+     * has already moved from oldStatus to newStatus. It is a write of its
+     * own, so it is lost if the app dies first; CounterBackfill's next
+     * recount puts the counts right.
+     */
+    public static void sendStatusChange(@Nullable String categoryId, String oldStatus,
+                                        String newStatus) {
+        Map<String, Object> updates = new HashMap<>();
+        addStatusChange(updates, categoryId, oldStatus, newStatus);
+        if (!updates.isEmpty()) {
+            DataSources.get().update(updates);
+        }
+    }
+
+    /**
+     * addCategoryChange adds the counter changes for an item with the given
+     * status moving from one category to another.
+     */
+    public static void addCategoryChange(Map<String, Object> updates, @Nullable String oldCategoryId,
+                                         @Nullable String newCategoryId, String status) {
+        if (oldCategoryId != null && oldCategoryId.equals(newCategoryId)) return;
+        addStatusChange(updates, oldCategoryId, status, null);
+        addStatusChange(updates, newCategoryId, null, status);
+    }
+
+    /**
+     * load reads the counts of one category. Until the counters have been
+     * built from the items (Migrations.counters()) they may be incomplete,
+     * so the category's items are counted instead.
+     */
+    public static void load(String categoryId, Callback callback) {
+        if (!Migrations.counters().getNow(false)) {
+            count(categoryId, callback);
+            return;
+        }
+        DataSources.get().counters().get(categoryId).whenComplete((counts, error) -> {
+            if (error != null) {
+                callback.onFailed();
+            } else {
+                // no counters yet means no items yet
+                callback.onCounts((counts != null) ? counts : new CategoryCounts());
+            }
+        });
+    }
+
+    /**
+     * count counts the items of one category by reading them.
+     */
+    private static void count(String categoryId, Callback callback) {
+        DataSources.get().items().orderByChild("categoryId").equalTo(categoryId).get()
+                .whenComplete((items, error) -> {
+                    if (error != null) {
+                        callback.onFailed();
+                        return;
+                    }
+                    CategoryCounts counted = new CategoryCounts();
+                    for (Item item : items.values()) {
+                        String status = item.getStatus();
+                        if ("completed".equals(status)) {
+                            counted.setCompleted(counted.getCompleted() + 1);
+                        } else if ("pending".equals(status)) {
+                            counted.setPending(counted.getPending() + 1);
+                        } else {
+                            // a missing status counts as active, like the old check
+                            counted.setAvailable(counted.getAvailable() + 1);
+                        }
+                    }
+                    callback.onCounts(counted);
+                });
+    }
+}
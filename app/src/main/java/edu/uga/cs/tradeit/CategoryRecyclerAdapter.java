@@ -13,15 +13,11 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
-
 import java.text.DateFormat;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This adapter connects a list of Category objects
@@ -36,12 +32,8 @@ public class CategoryRecyclerAdapter
     // list of categories to show
     private List<Category> categories;
 
-    // reference to "categories" in Firebase Realtime Database
-    private DatabaseReference categoriesRef =
-            FirebaseDatabase.getInstance().getReference("categories");
-    // reference to "items" in Firebase, used to check if a category is in use
-    private DatabaseReference itemsRef =
-            FirebaseDatabase.getInstance().getReference("items");
+    // item counts per category id, shown on each row once they are known
+    private final Map<String, CategoryCounts> counts = new HashMap<>();
 
     /**
      * Simple constructor that just stores the list of categories.
@@ -51,6 +43,25 @@ public class CategoryRecyclerAdapter
         this.categories = categories;
     }
 
+    /**
+     * Sets the item counts for one category and redraws its row.
+     * @param categoryId the category the counts belong to
+     * @param categoryCounts the new counts, or null to hide them
+     */
+    public void setCounts(String categoryId, CategoryCounts categoryCounts) {
+        if (categoryCounts == null) {
+            counts.remove(categoryId);
+        } else {
+            counts.put(categoryId, categoryCounts);
+        }
+        for (int i = 0; i < getItemCount(); i++) {
+            if (categoryId.equals(categories.get(i).getKey())) {
+                notifyItemChanged(i);
+                break;
+            }
+        }
+    }
+
     /**
      * Holds the views (widgets) for each row in the list.
      * One CategoryHolder = one row showing one Category.
@@ -109,10 +120,14 @@ public class CategoryRecyclerAdapter
             holder.dateTextView.setText("");
         }
 
-        // info note to the user about when categories can be changed
-        holder.infoTextView.setText(
-                "Only categories with no active items can be edited or deleted."
-        );
+        // item counts (if known) and a note about when categories can be changed
+        String note = "Only categories with no active items can be edited or deleted.";
+        CategoryCounts c = counts.get(category.getKey());
+        if (c != null) {
+            note = c.getAvailable() + " available, " + c.getPending() + " pending, "
+                    + c.getCompleted() + " completed. " + note;
+        }
+        holder.infoTextView.setText(note);
 
         // when edit button is clicked, check first if category has any active items
         holder.editButton.setOnClickListener(v ->
@@ -132,8 +147,8 @@ public class CategoryRecyclerAdapter
     }
 
     /**
-     * Before editing a category, this checks Firebase "items"
-     * to see if any items in this category are still active
+     * Before editing a category, this checks the category's item
+     * counters to see if any items in it are still active
      * (not completed). If it is empty, then we let the user edit.
      */
     private void checkCategoryEmptyThenEdit(CategoryHolder holder, Category category) {
@@ -145,44 +160,29 @@ public class CategoryRecyclerAdapter
             return;
         }
 
-        // look up items whose "categoryId" field matches this category key
-        itemsRef.orderByChild("categoryId").equalTo(categoryId)
-                .addListenerForSingleValueEvent(new ValueEventListener() {
-                    @Override
-                    public void onDataChange(@NonNull DataSnapshot snapshot) {
-                        boolean hasActive = false;
-
-                        // loop over all items in this category
-                        for (DataSnapshot s : snapshot.getChildren()) {
-                            Item item = s.getValue(Item.class);
-                            if (item == null) continue;
-                            String status = item.getStatus();
-                            // if status is not "completed", then it is still active
-                            if (status == null || !status.equals("completed")) {
-                                hasActive = true;
-                                break;
-                            }
-                        }
-
-                        if (hasActive) {
-                            // tell the user they cannot edit if category is still in use
-                            Toast.makeText(holder.itemView.getContext(),
-                                    "Category is in use. Only categories with no active items (available/pending) can be edited.",
-                                    Toast.LENGTH_LONG).show();
-                        } else {
-                            // safe to edit
-                            showEditDialog(holder, category);
-                        }
-                    }
-
-                    @Override
-                    public void onCancelled(@NonNull DatabaseError error) {
-                        // something went wrong while checking Firebase
-                        Toast.makeText(holder.itemView.getContext(),
-                                "Failed to check category usage",
-                                Toast.LENGTH_SHORT).show();
-                    }
-                });
+        // one small read of the category's counters instead of every item
+        CategoryCounters.load(categoryId, new CategoryCounters.Callback() {
+            @Override
+            public void onCounts(CategoryCounts counts) {
+                if (counts.active() > 0) {
+                    // tell the user they cannot edit if category is still in use
+                    Toast.makeText(holder.itemView.getContext(),
+                            "Category is in use. Only categories with no active items (available/pending) can be edited.",
+                            Toast.LENGTH_LONG).show();
+                } else {
+                    // safe to edit
+                    showEditDialog(holder, category);
+                }
+            }
+
+            @Override
+            public void onFailed() {
+                // something went wrong while checking Firebase
+                Toast.makeText(holder.itemView.getContext(),
+                        "Failed to check category usage",
+                        Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     /**
@@ -217,20 +217,21 @@ public class CategoryRecyclerAdapter
                 return;
             }
 
-            // update the title in Firebase "categories" node
-            categoriesRef.child(key).child("title").setValue(newTitle)
-                    .addOnSuccessListener(aVoid -> {
-                        // also update local object and refresh this row
-                        category.setTitle(newTitle);
-                        notifyItemChanged(holder.getAdapterPosition());
-                        Toast.makeText(holder.itemView.getContext(),
-                                "Category updated",
-                                Toast.LENGTH_SHORT).show();
-                    })
-                    .addOnFailureListener(e ->
-                            Toast.makeText(holder.itemView.getContext(),
-                                    "Failed to update category",
-                                    Toast.LENGTH_SHORT).show());
+            // update the title in the "categories" node
+            CategoryRepository.get().rename(key, newTitle).whenComplete((unused, error) -> {
+                if (error != null) {
+                    Toast.makeText(holder.itemView.getContext(),
+                            "Failed to update category",
+                            Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                // also update local object and refresh this row
+                category.setTitle(newTitle);
+                notifyItemChanged(holder.getAdapterPosition());
+                Toast.makeText(holder.itemView.getContext(),
+                        "Category updated",
+                        Toast.LENGTH_SHORT).show();
+            });
         });
 
         // if user taps "Cancel", just close the dialog
@@ -239,8 +240,8 @@ public class CategoryRecyclerAdapter
     }
 
     /**
-     * Before deleting a category, we again check in Firebase if there
-     * are any active items in it. If it is empty (or only completed items),
+     * Before deleting a category, we again check its item counters
+     * to see if there are any active items in it. If it is empty (or only completed items),
      * then we go ahead and let the user delete the category.
      */
     private void checkCategoryEmptyThenDelete(CategoryHolder holder, Category category) {
@@ -252,41 +253,27 @@ public class CategoryRecyclerAdapter
             return;
         }
 
-        itemsRef.orderByChild("categoryId").equalTo(categoryId)
-                .addListenerForSingleValueEvent(new ValueEventListener() {
-                    @Override
-                    public void onDataChange(@NonNull DataSnapshot snapshot) {
-                        boolean hasActive = false;
-
-                        // check all items for this category
-                        for (DataSnapshot s : snapshot.getChildren()) {
-                            Item item = s.getValue(Item.class);
-                            if (item == null) continue;
-                            String status = item.getStatus();
-                            if (status == null || !status.equals("completed")) {
-                                hasActive = true;
-                                break;
-                            }
-                        }
-
-                        if (hasActive) {
-                            // cannot delete if there are still active items
-                            Toast.makeText(holder.itemView.getContext(),
-                                    "Category is in use. Only categories with no active items (available/pending) can be deleted.",
-                                    Toast.LENGTH_LONG).show();
-                        } else {
-                            // ask for final confirmation to delete
-                            confirmDelete(holder, category);
-                        }
-                    }
-
-                    @Override
-                    public void onCancelled(@NonNull DatabaseError error) {
-                        Toast.makeText(holder.itemView.getContext(),
-                                "Failed to check category usage",
-                                Toast.LENGTH_SHORT).show();
-                    }
-                });
+        CategoryCounters.load(categoryId, new CategoryCounters.Callback() {
+            @Override
+            public void onCounts(CategoryCounts counts) {
+                if (counts.active() > 0) {
+                    // cannot delete if there are still active items
+                    Toast.makeText(holder.itemView.getContext(),
+                            "Category is in use. Only categories with no active items (available/pending) can be deleted.",
+                            Toast.LENGTH_LONG).show();
+                } else {
+                    // ask for final confirmation to delete
+                    confirmDelete(holder, category);
+                }
+            }
+
+            @Override
+            public void onFailed() {
+                Toast.makeText(holder.itemView.getContext(),
+                        "Failed to check category usage",
+                        Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     /**
@@ -309,23 +296,27 @@ public class CategoryRecyclerAdapter
                 return;
             }
 
-            // remove the category from Firebase
-            categoriesRef.child(key).removeValue()
-                    .addOnSuccessListener(aVoid -> {
-                        // also remove it from the local list and update the UI
-                        int pos = holder.getAdapterPosition();
-                        if (pos != RecyclerView.NO_POSITION) {
-                            categories.remove(pos);
-                            notifyItemRemoved(pos);
-                        }
-                        Toast.makeText(holder.itemView.getContext(),
-                                "Category deleted",
-                                Toast.LENGTH_SHORT).show();
-                    })
-                    .addOnFailureListener(e ->
-                            Toast.makeText(holder.itemView.getContext(),
-                                    "Failed to delete category",
-                                    Toast.LENGTH_SHORT).show());
+            // remove the category and its counters from Firebase
+            Map<String, Object> updates = new HashMap<>();
+            updates.put("categories/" + key, null);
+            updates.put(CategoryCounts.PATH + "/" + key, null);
+            DataSources.get().update(updates).whenComplete((unused, error) -> {
+                if (error != null) {
+                    Toast.makeText(holder.itemView.getContext(),
+                            "Failed to delete category",
+                            Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                // also remove it from the local list and update the UI
+                int pos = holder.getAdapterPosition();
+                if (pos != RecyclerView.NO_POSITION) {
+                    categories.remove(pos);
+                    notifyItemRemoved(pos);
+                }
+                Toast.makeText(holder.itemView.getContext(),
+                        "Category deleted",
+                        Toast.LENGTH_SHORT).show();
+            });
         });
 
         builder.setNegativeButton("Cancel", (dialog, which) -> dialog.dismiss());
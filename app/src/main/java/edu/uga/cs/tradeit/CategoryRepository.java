@@ -0,0 +1,306 @@
+package edu.uga.cs.tradeit;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * CategoryRepository is the one place the app reads categories from.
+ *
+ * - all screens share a single listener on categories ordered by title; it
+ *   is attached for the first subscriber & detached after the last one
+ * - every change is published as an immutable Snapshot with titles already
+ *   deduplicated (ignoring case) & an id -> title map for O(1) lookups
+ * - a snapshot is only published if a title was added, renamed or removed,
+ *   so lists showing category titles refresh exactly when they have to
+ * - a CategoryTrie ranked by each category's active items answers the
+ *   category dropdowns; it is updated one category at a time
+ *
+ * All methods must be called on the main thread, which is also where
+ * Firebase delivers its callbacks.
+ */
+public class CategoryRepository {
+
+    /**
+     * Listener receives the newest snapshot whenever the categories change,
+     * & right away when subscribing if one is already loaded.
+     */
+    public interface Listener {
+        void onCategoriesChanged(Snapshot snapshot);
+        default void onLoadFailed() { }
+        // the suggestions' ranking changed, e.g. a category got more items
+        default void onSuggestionsChanged() { }
+    }
+
+    /**
+     * TitleCallback receives a category title, or null if it is unknown.
+     */
+    public interface TitleCallback {
+        void onTitle(@Nullable String title);
+    }
+
+    /**
+     * Snapshot is one immutable view of all categories. The deduplication
+     * itself is done by CategoryTitles in the core module.
+     */
+    public static class Snapshot {
+        private final CategoryTitles titles;
+
+        Snapshot(CategoryTitles titles) {
+            this.titles = titles;
+        }
+
+        // categories with a unique title (ignoring case), ordered by title
+        public List<Category> categories() { return titles.categories(); }
+
+        // the titles of categories(), in the same order
+        public List<String> titles() { return titles.titles(); }
+
+        /**
+         * containsTitle checks if a category with this title already exists,
+         * ignoring case & surrounding spaces.
+         */
+        public boolean containsTitle(String title) {
+            return titles.containsTitle(title);
+        }
+
+        /**
+         * titleOf returns the title of any category by id (duplicates
+         * included), or null if there is no such category.
+         */
+        @Nullable
+        public String titleOf(String categoryId) {
+            return titles.titleOf(categoryId);
+        }
+    }
+
+    // how long a preload keeps the categories attached with no subscriber
+    private static final long PRELOAD_HOLD_MS = 30_000;
+    // the most suggestions a dropdown can ask for
+    public static final int SUGGESTION_LIMIT = 50;
+    // count changes arriving this close together are announced once
+    private static final long RANKING_DELAY_MS = 250;
+
+    private static CategoryRepository instance;
+
+    private final DataSource.Ref<Category> categoriesRef = DataSources.get().categories();
+    private final DataSource.Query<Category> byTitle = categoriesRef.orderByChild("title");
+
+    private final List<Listener> listeners = new ArrayList<>();
+    private Subscriptions.Subscription subscription;
+    private Subscriptions.Subscription countsSubscription;
+    private Snapshot current;
+    private final CategoryTrie suggestions = new CategoryTrie(SUGGESTION_LIMIT);
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // placeholder subscriber holding the listener attached after preload()
+    private final Listener preloadHolder = snapshot -> { };
+    private final Runnable releasePreload = () -> unsubscribe(preloadHolder);
+    private final Runnable announceRanking = () -> {
+        for (Listener l : new ArrayList<>(listeners)) {
+            l.onSuggestionsChanged();
+        }
+    };
+
+    private CategoryRepository() { }
+
+    public static CategoryRepository get() {
+        if (instance == null) {
+            instance = new CategoryRepository();
+        }
+        return instance;
+    }
+
+    /**
+     * subscribe adds a listener, attaching to Firebase for the first one.
+     */
+    public void subscribe(Listener listener) {
+        if (listeners.contains(listener)) return;
+        listeners.add(listener);
+        if (subscription == null) {
+            attach();
+        } else if (current != null) {
+            listener.onCategoriesChanged(current);
+        }
+        if (listener != preloadHolder && listeners.contains(preloadHolder)) {
+            // a real subscriber took over, the preload is no longer needed
+            mainHandler.removeCallbacks(releasePreload);
+            unsubscribe(preloadHolder);
+        }
+    }
+
+    /**
+     * preload starts loading the categories before any screen subscribes,
+     * e.g. while the first activity is being inflated. The listener stays
+     * attached until the first real subscriber arrives, or for a short while
+     * if none does.
+     */
+    public void preload() {
+        // already attached (or loading) for someone else
+        if (!listeners.isEmpty()) return;
+        subscribe(preloadHolder);
+        mainHandler.postDelayed(releasePreload, PRELOAD_HOLD_MS);
+    }
+
+    /**
+     * unsubscribe removes a listener, detaching from Firebase after the last
+     * one. The last snapshot is dropped then, since nothing keeps it fresh.
+     */
+    public void unsubscribe(Listener listener) {
+        if (!listeners.remove(listener) || !listeners.isEmpty()) return;
+        if (subscription != null) {
+            subscription.cancel();
+            subscription = null;
+        }
+        if (countsSubscription != null) {
+            countsSubscription.cancel();
+            countsSubscription = null;
+        }
+        mainHandler.removeCallbacks(announceRanking);
+        current = null;
+        suggestions.clear();
+    }
+
+    /**
+     * current returns the newest snapshot, or null if none is loaded.
+     */
+    @Nullable
+    public Snapshot current() { return current; }
+
+    /**
+     * suggestions returns the ranked prefix index over the current
+     * categories. It is safe to search from a background thread.
+     */
+    public CategoryTrie suggestions() { return suggestions; }
+
+    /**
+     * lookupTitle gives a category's title to the callback, right away if it
+     * is in the current snapshot, otherwise after one small read.
+     */
+    public void lookupTitle(@Nullable String categoryId, TitleCallback callback) {
+        if (categoryId == null || categoryId.isEmpty()) {
+            callback.onTitle(null);
+            return;
+        }
+        if (current != null) {
+            callback.onTitle(current.titleOf(categoryId));
+            return;
+        }
+        categoriesRef.get(categoryId).whenComplete((category, error) ->
+                callback.onTitle((error != null || category == null) ? null : category.getTitle()));
+    }
+
+    /**
+     * rename changes a category's title. Categories can only be renamed
+     * while they have no active items, & completed items keep the title
+     * they were sold under, so no item needs to change.
+     */
+    public CompletableFuture<Void> rename(String categoryId, String newTitle) {
+        return categoriesRef.update(categoryId, Collections.singletonMap("title", newTitle));
+    }
+
+    private void attach() {
+        // show the mirror's categories until Firebase answers
+        LocalMirror mirror = LocalMirror.get();
+        if (mirror != null && current == null) {
+            mirror.loadCategories(saved -> {
+                if (current != null || subscription == null || saved.isEmpty()) return;
+                Snapshot fromMirror = build(saved);
+                suggestions.update(fromMirror.categories());
+                publish(fromMirror);
+            });
+        }
+
+        DataSource.ValueListener<Map<String, Category>> valueListener =
+                new DataSource.ValueListener<Map<String, Category>>() {
+            @Override
+            public void onValue(Map<String, Category> categories) {
+                List<Category> all = new ArrayList<>(categories.values());
+                LocalMirror m = LocalMirror.get();
+                if (m != null) m.replaceCategories(all);
+
+                Snapshot next = build(all);
+                // only the categories that changed are touched
+                suggestions.update(next.categories());
+                // nothing visible changed (e.g. only a creation time), skip
+                if (current != null && current.titles.sameTitlesAs(next.titles)) return;
+                publish(next);
+            }
+
+            @Override
+            public void onCancelled(Exception error) {
+                // the source already removed the listener, the next subscriber retries
+                if (subscription != null) {
+                    subscription.cancel();
+                    subscription = null;
+                }
+                if (countsSubscription != null) {
+                    countsSubscription.cancel();
+                    countsSubscription = null;
+                }
+                for (Listener l : new ArrayList<>(listeners)) {
+                    l.onLoadFailed();
+                }
+            }
+        };
+        subscription = Subscriptions.value(byTitle, valueListener).start();
+        attachCounts();
+    }
+
+    /**
+     * attachCounts follows each category's item counts, which rank the
+     * suggestions. Counts are only extra info, so a failure is ignored.
+     */
+    private void attachCounts() {
+        DataSource.ChildListener<CategoryCounts> countsListener =
+                new DataSource.ChildListener<CategoryCounts>() {
+            @Override
+            public void onChildAdded(String key, CategoryCounts counts) {
+                setActiveItems(key, counts.active());
+            }
+
+            @Override
+            public void onChildChanged(String key, CategoryCounts counts) {
+                setActiveItems(key, counts.active());
+            }
+
+            @Override
+            public void onChildRemoved(String key, CategoryCounts counts) {
+                setActiveItems(key, 0);
+            }
+        };
+        countsSubscription = Subscriptions.child(DataSources.get().counters(), countsListener).start();
+    }
+
+    private void setActiveItems(String categoryId, long activeItems) {
+        suggestions.setActiveItems(categoryId, activeItems);
+        rankingChanged();
+    }
+
+    // the first load sends one event per category, so announce them together
+    private void rankingChanged() {
+        mainHandler.removeCallbacks(announceRanking);
+        mainHandler.postDelayed(announceRanking, RANKING_DELAY_MS);
+    }
+
+    private void publish(Snapshot next) {
+        current = next;
+        for (Listener l : new ArrayList<>(listeners)) {
+            l.onCategoriesChanged(next);
+        }
+    }
+
+    /**
+     * build makes a snapshot from every category, ordered by title.
+     */
+    private static Snapshot build(List<Category> all) {
+        return new Snapshot(CategoryTitles.build(all));
+    }
+}
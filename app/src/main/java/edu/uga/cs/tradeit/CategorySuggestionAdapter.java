@@ -0,0 +1,109 @@
+package edu.uga.cs.tradeit;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.Filter;
+import android.widget.Filterable;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CategorySuggestionAdapter feeds a category AutoCompleteTextView from the
+ * shared CategoryTrie instead of an ArrayAdapter over every title.
+ *
+ * - typing asks the trie for the categories starting with the text, most
+ *   active first, on the dropdown's background filter thread
+ * - each row is a CategoryTrie.Suggestion, so a tap gives the category key
+ *   directly with keyAt(position), whatever the list was filtered down to
+ * - refresh() re-runs the last filter when the categories or their ranking
+ *   change, instead of building a new adapter
+ */
+public class CategorySuggestionAdapter extends BaseAdapter implements Filterable {
+
+    private final LayoutInflater inflater;
+    private final CategoryTrie trie;
+    private final int limit;
+
+    private List<CategoryTrie.Suggestion> shown = new ArrayList<>();
+    // the text of the last filter, which refresh() runs again
+    private volatile String lastPrefix = "";
+
+    public CategorySuggestionAdapter(Context context, int limit) {
+        this.inflater = LayoutInflater.from(context);
+        this.trie = CategoryRepository.get().suggestions();
+        this.limit = limit;
+        refresh();
+    }
+
+    /**
+     * refresh runs the last filter again, e.g. after the categories changed.
+     */
+    public void refresh() {
+        filter.filter(lastPrefix);
+    }
+
+    /**
+     * keyAt returns the category key of the row at position, or null.
+     */
+    public String keyAt(int position) {
+        if (position < 0 || position >= shown.size()) return null;
+        return shown.get(position).key();
+    }
+
+    @Override
+    public int getCount() { return shown.size(); }
+
+    @Override
+    public CategoryTrie.Suggestion getItem(int position) { return shown.get(position); }
+
+    @Override
+    public long getItemId(int position) { return position; }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        TextView row = (TextView) ((convertView != null)
+                ? convertView
+                : inflater.inflate(android.R.layout.simple_dropdown_item_1line, parent, false));
+        row.setText(shown.get(position).title());
+        return row;
+    }
+
+    @Override
+    public Filter getFilter() { return filter; }
+
+    private final Filter filter = new Filter() {
+        @Override
+        protected FilterResults performFiltering(CharSequence constraint) {
+            String prefix = (constraint == null) ? "" : constraint.toString();
+            lastPrefix = prefix;
+            List<CategoryTrie.Suggestion> found = trie.suggest(prefix, limit);
+            FilterResults results = new FilterResults();
+            results.values = found;
+            results.count = found.size();
+            return results;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void publishResults(CharSequence constraint, FilterResults results) {
+            shown = (results.values != null)
+                    ? (List<CategoryTrie.Suggestion>) results.values
+                    : new ArrayList<>();
+            if (results.count > 0) {
+                notifyDataSetChanged();
+            } else {
+                notifyDataSetInvalidated();
+            }
+        }
+
+        @Override
+        public CharSequence convertResultToString(Object resultValue) {
+            return ((CategoryTrie.Suggestion) resultValue).title();
+        }
+    };
+}
@@ -0,0 +1,30 @@
+package edu.uga.cs.tradeit;
+
+/**
+ * DataSources holds the DataSource every screen reads & writes through.
+ * It is Firebase unless another source (e.g. an InMemoryDataSource for a
+ * load test) was put in with use() before the first screen starts.
+ *
+ * All methods must be called on the main thread.
+ */
+public class DataSources {
+
+    private static DataSource current;
+
+    private DataSources() { }
+
+    public static DataSource get() {
+        if (current == null) {
+            current = new FirebaseDataSource();
+        }
+        return current;
+    }
+
+    /**
+     * use replaces the data source. Screens that already read from the old
+     * one keep their listeners on it, so call this early.
+     */
+    public static void use(DataSource source) {
+        current = source;
+    }
+}
@@ -5,7 +5,6 @@ import android.app.Dialog;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
-import android.widget.ArrayAdapter;
 import android.widget.AutoCompleteTextView;
 import android.widget.Button;
 import android.widget.CheckBox;
@@ -17,19 +16,10 @@ import androidx.annotation.NonNull;
 import androidx.fragment.app.DialogFragment;
 
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * A dialog window used to edit an existing item.
@@ -69,15 +59,14 @@ public class EditItemDialogFragment extends DialogFragment {
     private CheckBox freeCheckBox;
     private Button addButton, cancelButton, addCategoryButton;
 
-    // Firebase references for items and categories
-    private DatabaseReference itemsRef;
-    private DatabaseReference categoriesRef;
+    // database nodes for items and categories
+    private DataSource.Ref<Item> itemsRef;
+    private DataSource.Ref<Category> categoriesRef;
     private String currentUid;
 
-    // lists and sets for managing categories and their titles
-    private final List<Category> categoryList = new ArrayList<>();
-    private final List<String> categoryTitles = new ArrayList<>();
-    private final Set<String> categoryTitlesLowerSet = new HashSet<>();
+    // the loaded categories & the ranked suggestions for the dropdown
+    private CategoryRepository.Snapshot categories;
+    private CategorySuggestionAdapter categoryAdapter;
     // which category is currently selected (by id)
     private String selectedCategoryId = null;
 
@@ -90,8 +79,8 @@ public class EditItemDialogFragment extends DialogFragment {
     public Dialog onCreateDialog(Bundle savedInstanceState) {
         itemKey = getArguments() != null ? getArguments().getString(ARG_ITEM_KEY) : null;
 
-        itemsRef = FirebaseDatabase.getInstance().getReference("items");
-        categoriesRef = FirebaseDatabase.getInstance().getReference("categories");
+        itemsRef = DataSources.get().items();
+        categoriesRef = DataSources.get().categories();
         currentUid = FirebaseAuth.getInstance().getUid();
 
         AlertDialog.Builder builder = new AlertDialog.Builder(requireContext());
@@ -131,6 +120,14 @@ public class EditItemDialogFragment extends DialogFragment {
         // opens a small dialog to create a new category
         addCategoryButton.setOnClickListener(v -> showNewCategoryDialog());
 
+        categoryAdapter = new CategorySuggestionAdapter(requireContext(),
+                CategoryRepository.SUGGESTION_LIMIT);
+        categoryDropdown.setAdapter(categoryAdapter);
+        // when user picks a category, remember its id; the position is in the
+        // filtered suggestions, which carry their keys
+        categoryDropdown.setOnItemClickListener((parent, view1, position, id) ->
+                selectedCategoryId = categoryAdapter.keyAt(position));
+
         // set up dropdown so it always shows suggestions when clicked/focused
         categoryDropdown.setThreshold(0);
         categoryDropdown.setOnClickListener(v -> categoryDropdown.showDropDown());
@@ -175,8 +172,7 @@ public class EditItemDialogFragment extends DialogFragment {
                 return;
             }
 
-            String norm = title.toLowerCase(Locale.US);
-            if (categoryTitlesLowerSet.contains(norm)) {
+            if (categories != null && categories.containsTitle(title)) {
                 Toast.makeText(getContext(),
                         "Category already exists",
                         Toast.LENGTH_SHORT).show();
@@ -186,7 +182,7 @@ public class EditItemDialogFragment extends DialogFragment {
             String creatorId = (currentUid != null) ? currentUid : "unknown";
             long now = System.currentTimeMillis();
 
-            String key = categoriesRef.push().getKey();
+            String key = categoriesRef.newKey();
             if (key == null) {
                 Toast.makeText(getContext(),
                         "Failed to create category",
@@ -197,32 +193,25 @@ public class EditItemDialogFragment extends DialogFragment {
             Category newCat = new Category(creatorId, title, now);
             newCat.setKey(key);
 
-            categoriesRef.child(key).setValue(newCat)
-                    .addOnSuccessListener(aVoid -> {
+            categoriesRef.set(key, newCat)
+                    .whenComplete((saved, error) -> {
                         if (!isAdded()) return;
-
-                        // update our local lists and dropdown
-                        categoryList.add(newCat);
-                        categoryTitles.add(title);
-                        categoryTitlesLowerSet.add(norm);
-
-                        ArrayAdapter<String> adapter =
-                                (ArrayAdapter<String>) categoryDropdown.getAdapter();
-                        if (adapter != null) {
-                            adapter.notifyDataSetChanged();
+                        if (error != null) {
+                            Toast.makeText(getContext(),
+                                    "Failed to save category",
+                                    Toast.LENGTH_SHORT).show();
+                            return;
                         }
 
+                        // the repository already delivered the new category
+                        // to the dropdown, so just select it
                         selectedCategoryId = key;
                         categoryDropdown.setText(title, false);
 
                         Toast.makeText(getContext(),
                                 "Category added",
                                 Toast.LENGTH_SHORT).show();
-                    })
-                    .addOnFailureListener(e ->
-                            Toast.makeText(getContext(),
-                                    "Failed to save category",
-                                    Toast.LENGTH_SHORT).show());
+                    });
         });
 
         b.setNegativeButton("Cancel", (dialogInterface, which) -> dialogInterface.dismiss());
@@ -236,12 +225,17 @@ public class EditItemDialogFragment extends DialogFragment {
     private void loadItem() {
         if (itemKey == null) return;
 
-        itemsRef.child(itemKey)
-                .get()
-                .addOnSuccessListener(snapshot -> {
+        itemsRef.get(itemKey)
+                .whenComplete((item, error) -> {
                     if (!isAdded()) return;
+                    if (error != null) {
+                        Toast.makeText(getContext(),
+                                "Failed to load item",
+                                Toast.LENGTH_SHORT).show();
+                        dismiss();
+                        return;
+                    }
 
-                    Item item = snapshot.getValue(Item.class);
                     if (item == null) {
                         Toast.makeText(getContext(),
                                 "Item not found",
@@ -270,77 +264,52 @@ public class EditItemDialogFragment extends DialogFragment {
                     // remember its category so we can show it in the dropdown
                     selectedCategoryId = item.getCategoryId();
                     applySelectedCategoryToDropdown();
-                })
-                .addOnFailureListener(e -> {
-                    if (!isAdded()) return;
-                    Toast.makeText(getContext(),
-                            "Failed to load item",
-                            Toast.LENGTH_SHORT).show();
-                    dismiss();
                 });
     }
 
     /**
-     * Loads all categories from Firebase, builds the dropdown list,
-     * and connects the selected category to the item (if editing).
+     * Loads all categories from the shared CategoryRepository, builds
+     * the dropdown list, and connects the selected category to the item
+     * (if editing).
      */
     private void loadCategories() {
-        categoriesRef.orderByChild("title")
-                .addValueEventListener(new ValueEventListener() {
-                    @Override
-                    public void onDataChange(@NonNull DataSnapshot snapshot) {
-                        if (!isAdded()) return;
+        CategoryRepository.get().subscribe(categoryListener);
+    }
 
-                        categoryList.clear();
-                        categoryTitles.clear();
-                        categoryTitlesLowerSet.clear();
-
-                        // go through each category in the database
-                        for (DataSnapshot catSnap : snapshot.getChildren()) {
-                            Category c = catSnap.getValue(Category.class);
-                            if (c != null) {
-                                if (c.getKey() == null || c.getKey().isEmpty()) {
-                                    c.setKey(catSnap.getKey());
-                                }
-                                String title = c.getTitle();
-                                if (title == null) continue;
-
-                                String norm = title.trim().toLowerCase(Locale.US);
-                                if (!categoryTitlesLowerSet.contains(norm)) {
-                                    categoryTitlesLowerSet.add(norm);
-                                    categoryList.add(c);
-                                    categoryTitles.add(title);
-                                }
-                            }
-                        }
+    private final CategoryRepository.Listener categoryListener = new CategoryRepository.Listener() {
+        @Override
+        public void onCategoriesChanged(CategoryRepository.Snapshot snapshot) {
+            if (!isAdded()) return;
 
-                        // create an adapter for the category dropdown
-                        ArrayAdapter<String> adapter = new ArrayAdapter<>(
-                                requireContext(),
-                                android.R.layout.simple_dropdown_item_1line,
-                                categoryTitles
-                        );
-                        categoryDropdown.setAdapter(adapter);
-
-                        // when user picks a category, remember its id
-                        categoryDropdown.setOnItemClickListener((parent, view, position, id) -> {
-                            if (position >= 0 && position < categoryList.size()) {
-                                selectedCategoryId = categoryList.get(position).getKey();
-                            }
-                        });
-
-                        // if we already had a selectedCategoryId, try to show it now
-                        applySelectedCategoryToDropdown();
-                    }
+            categories = snapshot;
+            categoryAdapter.refresh();
 
-                    @Override
-                    public void onCancelled(@NonNull DatabaseError error) {
-                        if (!isAdded()) return;
-                        Toast.makeText(getContext(),
-                                "Failed to load categories",
-                                Toast.LENGTH_SHORT).show();
-                    }
-                });
+            // if we already had a selectedCategoryId, try to show it now
+            applySelectedCategoryToDropdown();
+        }
+
+        @Override
+        public void onSuggestionsChanged() {
+            if (!isAdded()) return;
+            categoryAdapter.refresh();
+        }
+
+        @Override
+        public void onLoadFailed() {
+            if (!isAdded()) return;
+            Toast.makeText(getContext(),
+                    "Failed to load categories",
+                    Toast.LENGTH_SHORT).show();
+        }
+    };
+
+    /**
+     * Stops listening to the categories when the dialog goes away.
+     */
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        CategoryRepository.get().unsubscribe(categoryListener);
     }
 
     /**
@@ -348,14 +317,11 @@ public class EditItemDialogFragment extends DialogFragment {
      * to match the category whose id is selectedCategoryId.
      */
     private void applySelectedCategoryToDropdown() {
-        if (selectedCategoryId == null || categoryList.isEmpty() || !isAdded()) return;
+        if (selectedCategoryId == null || categories == null || !isAdded()) return;
 
-        for (int i = 0; i < categoryList.size(); i++) {
-            Category c = categoryList.get(i);
-            if (selectedCategoryId.equals(c.getKey())) {
-                categoryDropdown.setText(c.getTitle(), false);
-                break;
-            }
+        String title = categories.titleOf(selectedCategoryId);
+        if (title != null) {
+            categoryDropdown.setText(title, false);
         }
     }
 
@@ -415,36 +381,54 @@ public class EditItemDialogFragment extends DialogFragment {
         }
 
         // build a map with all updates we want to send to Firebase
-        Map<String, Object> updates = new HashMap<>();
-        updates.put("name", name);
-        updates.put("price", priceVal);
-        updates.put("categoryId", selectedCategoryId);
-        updates.put("description", desc);
-
-        itemsRef.child(currentItem.getKey())
-                .updateChildren(updates)
-                .addOnSuccessListener(aVoid -> {
-                    if (!isAdded()) return;
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("name", name);
+        fields.put("price", priceVal);
+        fields.put("categoryId", selectedCategoryId);
+        fields.put("categoryTitle", categoryTitleFor(selectedCategoryId));
+        fields.put("description", desc);
+        // fill in the seller's name on items written before it was stored
+        User seller = UserDirectory.get().peek(currentItem.getSellerId());
+        if (currentItem.getSellerName() == null && seller != null && seller.getName() != null) {
+            fields.put("sellerName", seller.getName());
+        }
+        // keep the alphabetical index in sync with the new name
+        fields.put("statusName", Item.nameIndex(currentItem.getStatus(), name));
 
-                    Toast.makeText(getContext(),
-                            "Item updated",
-                            Toast.LENGTH_SHORT).show();
+        // a new category moves the item between category counts in the same update
+        Map<String, Object> updates = CategoryCounters.itemFields(currentItem.getKey(), fields);
+        CategoryCounters.addCategoryChange(updates, currentItem.getCategoryId(),
+                selectedCategoryId, currentItem.getStatus());
 
-                    // if we are on the ItemDetailActivity, refresh it
-                    if (getActivity() instanceof ItemDetailActivity) {
-                        ((ItemDetailActivity) getActivity()).reloadItem();
-                    }
+        DataSources.get().update(updates).whenComplete((unused, error) -> {
+            if (!isAdded()) return;
+            if (error != null) {
+                Toast.makeText(getContext(),
+                        "Failed to update item",
+                        Toast.LENGTH_SHORT).show();
+                return;
+            }
 
-                    dialog.dismiss();
-                })
-                .addOnFailureListener(e -> {
-                    if (!isAdded()) return;
-                    Toast.makeText(getContext(),
-                            "Failed to update item",
-                            Toast.LENGTH_SHORT).show();
-                });
-    }
-}
+            Toast.makeText(getContext(),
+                    "Item updated",
+                    Toast.LENGTH_SHORT).show();
 
+            // if we are on the ItemDetailActivity, refresh it
+            if (getActivity() instanceof ItemDetailActivity) {
+                ((ItemDetailActivity) getActivity()).reloadItem();
+            }
 
+            dialog.dismiss();
+        });
+    }
 
+    /**
+     * categoryTitleFor returns the title of the chosen category, from the
+     * loaded categories or else from the dropdown (for a category that was
+     * just created & has not arrived yet).
+     */
+    private String categoryTitleFor(String categoryId) {
+        String title = (categories == null) ? null : categories.titleOf(categoryId);
+        return (title != null) ? title : categoryDropdown.getText().toString().trim();
+    }
+}
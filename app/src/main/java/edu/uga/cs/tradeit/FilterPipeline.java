@@ -0,0 +1,111 @@
+package edu.uga.cs.tradeit;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * FilterPipeline runs list filtering & sorting off the main thread.
+ *
+ * - a new request waits a short delay first, so fast typing only runs
+ *   the last query (debounce)
+ * - a new request cancels the one that is waiting or still running
+ * - only the result of the newest request is handed back, on the main thread,
+ *   or the exception it threw
+ *
+ * submit() & cancel() must be called on the main thread.
+ */
+public class FilterPipeline {
+
+    /**
+     * Job is the background work. It should check isCancelled now & then
+     * & stop early when it returns true.
+     */
+    public interface Job<T> {
+        T run(BooleanSupplier isCancelled);
+    }
+
+    /**
+     * Callback receives the result of the newest job, or what it threw, on
+     * the main thread.
+     */
+    public interface Callback<T> {
+        void onResult(T result);
+        void onFailed(RuntimeException error);
+    }
+
+    // one shared worker, so old & new jobs never run at the same time
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // increases on every submit; a job whose number is old is cancelled
+    private volatile int generation = 0;
+    private Runnable pending;
+    private Future<?> running;
+
+    /**
+     * submit schedules a new job after delayMs, cancelling any earlier one.
+     * @param delayMs how long to wait for newer input before starting
+     * @param prepare runs on the main thread when the delay is over & builds
+     *                the job, so it can copy the newest state
+     * @param callback gets the job's result if no newer job was submitted
+     */
+    public <T> void submit(long delayMs, Supplier<Job<T>> prepare, Callback<T> callback) {
+        cancel();
+        final int gen = generation;
+        BooleanSupplier isCancelled = () -> gen != generation;
+
+        pending = () -> {
+            pending = null;
+            Job<T> job = prepare.get();
+            running = EXECUTOR.submit(() -> {
+                if (isCancelled.getAsBoolean()) return;
+                Runnable outcome = null;
+                try {
+                    T result = job.run(isCancelled);
+                    outcome = () -> callback.onResult(result);
+                } catch (RuntimeException e) {
+                    outcome = () -> callback.onFailed(e);
+                } finally {
+                    // posted even if the job threw, so running is cleared &
+                    // isBusy() does not stay true
+                    Runnable finished = outcome;
+                    mainHandler.post(() -> {
+                        if (isCancelled.getAsBoolean()) return;
+                        running = null;
+                        if (finished != null) finished.run();
+                    });
+                }
+            });
+        };
+        mainHandler.postDelayed(pending, delayMs);
+    }
+
+    /**
+     * cancel drops the waiting job & asks a running job to stop.
+     */
+    public void cancel() {
+        generation++;
+        if (pending != null) {
+            mainHandler.removeCallbacks(pending);
+            pending = null;
+        }
+        if (running != null) {
+            running.cancel(true);
+            running = null;
+        }
+    }
+
+    /**
+     * isBusy checks if a job is waiting or running.
+     */
+    public boolean isBusy() {
+        return pending != null || running != null;
+    }
+}
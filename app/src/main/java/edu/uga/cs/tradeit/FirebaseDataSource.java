@@ -0,0 +1,354 @@
+package edu.uga.cs.tradeit;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.Transaction;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.UnaryOperator;
+
+/**
+ * FirebaseDataSource is the DataSource the app runs on: every call maps to
+ * the Realtime Database call of the same name. Futures & listeners are
+ * completed & called on the main thread, where Firebase delivers them.
+ */
+public class FirebaseDataSource implements DataSource {
+
+    private final FirebaseRef<Item> items = new FirebaseRef<>(Type.ITEM);
+    private final FirebaseRef<Category> categories = new FirebaseRef<>(Type.CATEGORY);
+    private final FirebaseRef<User> users = new FirebaseRef<>(Type.USER);
+    private final FirebaseRef<CategoryCounts> counters = new FirebaseRef<>(Type.COUNTS);
+    private final FirebaseRef<Migration> migrations = new FirebaseRef<>(Type.MIGRATION);
+
+    @Override
+    public Ref<Item> items() { return items; }
+
+    @Override
+    public Ref<Category> categories() { return categories; }
+
+    @Override
+    public Ref<User> users() { return users; }
+
+    @Override
+    public Ref<CategoryCounts> counters() { return counters; }
+
+    @Override
+    public Ref<Migration> migrations() { return migrations; }
+
+    @Override
+    public CompletableFuture<Void> update(Map<String, Object> updates) {
+        return future(FirebaseDatabase.getInstance().getReference()
+                .updateChildren(toFirebase(updates)));
+    }
+
+    // the values as Firebase takes them, with increments as server values
+    private static Map<String, Object> toFirebase(Map<String, Object> values) {
+        Map<String, Object> result = new HashMap<>();
+        for (Map.Entry<String, Object> e : values.entrySet()) {
+            Object value = e.getValue();
+            if (value instanceof Increment) {
+                value = ServerValue.increment(((Increment) value).delta());
+            }
+            result.put(e.getKey(), value);
+        }
+        return result;
+    }
+
+    /**
+     * FirebaseQuery wraps one Firebase query of a node.
+     */
+    private static class FirebaseQuery<T> implements DataSource.Query<T> {
+        final Type<T> type;
+        final Query query;
+
+        FirebaseQuery(Type<T> type, Query query) {
+            this.type = type;
+            this.query = query;
+        }
+
+        private FirebaseQuery<T> with(Query q) { return new FirebaseQuery<>(type, q); }
+
+        @Override
+        public String path() {
+            DatabaseReference ref = query.getRef();
+            return ref.toString().substring(ref.getRoot().toString().length());
+        }
+
+        @Override
+        public DataSource.Query<T> orderByChild(String field) {
+            return with(query.orderByChild(field));
+        }
+
+        @Override
+        public DataSource.Query<T> startAt(Object value) {
+            if (value instanceof Number) return with(query.startAt(((Number) value).doubleValue()));
+            if (value instanceof Boolean) return with(query.startAt((Boolean) value));
+            return with(query.startAt((String) value));
+        }
+
+        @Override
+        public DataSource.Query<T> startAt(Object value, String key) {
+            if (value instanceof Number) return with(query.startAt(((Number) value).doubleValue(), key));
+            if (value instanceof Boolean) return with(query.startAt((Boolean) value, key));
+            return with(query.startAt((String) value, key));
+        }
+
+        @Override
+        public DataSource.Query<T> startAfter(Object value, String key) {
+            if (value instanceof Number) return with(query.startAfter(((Number) value).doubleValue(), key));
+            if (value instanceof Boolean) return with(query.startAfter((Boolean) value, key));
+            return with(query.startAfter((String) value, key));
+        }
+
+        @Override
+        public DataSource.Query<T> endAt(Object value) {
+            if (value instanceof Number) return with(query.endAt(((Number) value).doubleValue()));
+            if (value instanceof Boolean) return with(query.endAt((Boolean) value));
+            return with(query.endAt((String) value));
+        }
+
+        @Override
+        public DataSource.Query<T> endAt(Object value, String key) {
+            if (value instanceof Number) return with(query.endAt(((Number) value).doubleValue(), key));
+            if (value instanceof Boolean) return with(query.endAt((Boolean) value, key));
+            return with(query.endAt((String) value, key));
+        }
+
+        @Override
+        public DataSource.Query<T> equalTo(Object value) {
+            if (value instanceof Number) return with(query.equalTo(((Number) value).doubleValue()));
+            if (value instanceof Boolean) return with(query.equalTo((Boolean) value));
+            return with(query.equalTo((String) value));
+        }
+
+        @Override
+        public DataSource.Query<T> limitToFirst(int limit) { return with(query.limitToFirst(limit)); }
+
+        @Override
+        public DataSource.Query<T> limitToLast(int limit) { return with(query.limitToLast(limit)); }
+
+        @Override
+        public CompletableFuture<Map<String, T>> get() {
+            return future(query.get()).thenApply(this::readAll);
+        }
+
+        @Override
+        public Registration addChildListener(ChildListener<T> listener) {
+            ChildEventListener childListener = new ChildEventListener() {
+                @Override
+                public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                    T value = read(snapshot);
+                    if (value != null) listener.onChildAdded(snapshot.getKey(), value);
+                }
+
+                @Override
+                public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                    T value = read(snapshot);
+                    if (value != null) listener.onChildChanged(snapshot.getKey(), value);
+                }
+
+                @Override
+                public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+                    listener.onChildRemoved(snapshot.getKey(), read(snapshot));
+                }
+
+                @Override
+                public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                    // always paired with onChildChanged, & orders are kept by the listeners
+                }
+
+                @Override
+                public void onCancelled(@NonNull DatabaseError error) {
+                    listener.onCancelled(error.toException());
+                }
+            };
+            query.addChildEventListener(childListener);
+            return () -> query.removeEventListener(childListener);
+        }
+
+        @Override
+        public Registration addValueListener(ValueListener<Map<String, T>> listener) {
+            ValueEventListener valueListener = new ValueEventListener() {
+                @Override
+                public void onDataChange(@NonNull DataSnapshot snapshot) {
+                    listener.onValue(readAll(snapshot));
+                }
+
+                @Override
+                public void onCancelled(@NonNull DatabaseError error) {
+                    listener.onCancelled(error.toException());
+                }
+            };
+            query.addValueEventListener(valueListener);
+            return () -> query.removeEventListener(valueListener);
+        }
+
+        @Nullable
+        T read(DataSnapshot snapshot) {
+            return type.withKey(snapshot.getValue(type.type()), snapshot.getKey());
+        }
+
+        // the children of a snapshot, by key in query order
+        Map<String, T> readAll(DataSnapshot snapshot) {
+            Map<String, T> result = new LinkedHashMap<>();
+            for (DataSnapshot child : snapshot.getChildren()) {
+                T value = read(child);
+                if (value != null) result.put(child.getKey(), value);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * FirebaseRef is one top level node.
+     */
+    private static class FirebaseRef<T> extends FirebaseQuery<T> implements Ref<T> {
+        final DatabaseReference ref;
+
+        FirebaseRef(Type<T> type) {
+            this(type, FirebaseDatabase.getInstance().getReference(type.path()));
+        }
+
+        private FirebaseRef(Type<T> type, DatabaseReference ref) {
+            super(type, ref);
+            this.ref = ref;
+        }
+
+        @Override
+        public Type<T> type() { return type; }
+
+        @Override
+        public String newKey() { return ref.push().getKey(); }
+
+        @Override
+        public CompletableFuture<T> get(String key) {
+            return future(ref.child(key).get()).thenApply(this::read);
+        }
+
+        @Override
+        public CompletableFuture<Void> set(String key, T value) {
+            return future(ref.child(key).setValue(value));
+        }
+
+        @Override
+        public CompletableFuture<Void> update(String key, Map<String, Object> fields) {
+            return future(ref.child(key).updateChildren(toFirebase(fields)));
+        }
+
+        @Override
+        public CompletableFuture<Void> remove(String key) {
+            return future(ref.child(key).removeValue());
+        }
+
+        @Override
+        public CompletableFuture<Boolean> create(String key, T value) {
+            CompletableFuture<Boolean> result = new CompletableFuture<>();
+            ref.child(key).runTransaction(new Transaction.Handler() {
+                @NonNull
+                @Override
+                public Transaction.Result doTransaction(@NonNull MutableData currentData) {
+                    // if the cache is behind, the server runs this again
+                    // with the real value
+                    if (currentData.getValue() != null) return Transaction.abort();
+                    currentData.setValue(value);
+                    return Transaction.success(currentData);
+                }
+
+                @Override
+                public void onComplete(@Nullable DatabaseError error, boolean committed,
+                                       @Nullable DataSnapshot currentData) {
+                    if (error != null) {
+                        result.completeExceptionally(error.toException());
+                    } else {
+                        result.complete(committed);
+                    }
+                }
+            });
+            return result;
+        }
+
+        @Override
+        public CompletableFuture<T> transact(String key, UnaryOperator<T> change) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            ref.child(key).runTransaction(new Transaction.Handler() {
+                @NonNull
+                @Override
+                public Transaction.Result doTransaction(@NonNull MutableData currentData) {
+                    T current = type.withKey(currentData.getValue(type.type()), key);
+                    if (current == null) {
+                        // nothing cached yet, the server will run this again
+                        // with the real value (or confirm it is gone)
+                        return Transaction.success(currentData);
+                    }
+                    T next = change.apply(current);
+                    if (next == null) return Transaction.abort();
+                    currentData.setValue(next);
+                    return Transaction.success(currentData);
+                }
+
+                @Override
+                public void onComplete(@Nullable DatabaseError error, boolean committed,
+                                       @Nullable DataSnapshot currentData) {
+                    if (error != null) {
+                        result.completeExceptionally(error.toException());
+                    } else if (!committed || currentData == null) {
+                        result.complete(null);
+                    } else {
+                        result.complete(read(currentData));
+                    }
+                }
+            });
+            return result;
+        }
+
+        @Override
+        public Registration addValueListener(String key, ValueListener<T> listener) {
+            DatabaseReference child = ref.child(key);
+            ValueEventListener valueListener = new ValueEventListener() {
+                @Override
+                public void onDataChange(@NonNull DataSnapshot snapshot) {
+                    listener.onValue(read(snapshot));
+                }
+
+                @Override
+                public void onCancelled(@NonNull DatabaseError error) {
+                    listener.onCancelled(error.toException());
+                }
+            };
+            child.addValueEventListener(valueListener);
+            return () -> child.removeEventListener(valueListener);
+        }
+    }
+
+    /**
+     * future completes with a task's result, on the thread the task
+     * reports on (the main thread).
+     */
+    private static <R> CompletableFuture<R> future(Task<R> task) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        task.addOnCompleteListener(t -> {
+            if (t.isSuccessful()) {
+                result.complete(t.getResult());
+            } else if (t.getException() != null) {
+                result.completeExceptionally(t.getException());
+            } else {
+                result.cancel(false);
+            }
+        });
+        return result;
+    }
+}
@@ -8,35 +8,36 @@ import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
 import android.widget.AutoCompleteTextView;
 import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.EditText;
 import android.widget.RadioButton;
 import android.widget.RadioGroup;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Locale;
-import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * HomeFragment is the first view the user sees after logging in. It displays
- * all items still available for purchase & the search function.
+ * all items still available for purchase & the search function. The loaded
+ * items & the search state live in a HomeViewModel, so rotating the screen
+ * only rebuilds the views.
  */
 public class HomeFragment extends Fragment {
 
@@ -57,22 +58,50 @@ public class HomeFragment extends Fragment {
     private RadioGroup sortModeGroup;
     private RadioButton sortByNewestRadio;
     private RadioButton sortByNameRadio;
-
-    private List<Item> allItems = new ArrayList<>();
-    private List<Item> itemsList = new ArrayList<>();
+    private RadioButton sortByPriceLowRadio;
+    private RadioButton sortByPriceHighRadio;
+
+    private EditText minPriceEditText;
+    private EditText maxPriceEditText;
+    private CheckBox freeOnlyCheckBox;
+    private TextView listHeaderText;
+
+    // loaded items & search state, kept across rotation
+    private HomeViewModel model;
+    // the filtered items shown, owned by the model
+    private List<Item> itemsList;
+    // start loading the next page when this close to the end of the list
+    private static final int PREFETCH_DISTANCE = 5;
+    // pages loaded on their own for one filter while it shows too few rows;
+    // after that the user scrolls or taps the header for more
+    private static final int MAX_AUTO_FILL_PAGES = 3;
+    private int autoFillPages = 0;
+
+    // true while the list shows items from the local mirror, before the
+    // first page has arrived from Firebase
+    private boolean showingPreview = false;
+
+    // filters & sorts off the main thread, keeping only the newest result
+    private final FilterPipeline filterPipeline = new FilterPipeline();
+    private static final long SEARCH_DEBOUNCE_MS = 150;
+
+    // the current filter, rebuilt by updateFilter()
+    private ItemQueryEngine.Query currentQuery = ItemQueryEngine.newQuery().build();
+    private double filterMinPrice = FeedFilter.MIN_PRICE;
+    private double filterMaxPrice = FeedFilter.MAX_PRICE;
 
     private List<Category> categoryList = new ArrayList<>();
-    private List<String> categoryTitles = new ArrayList<>();
-    private Set<String> categoryTitlesLowerSet = new HashSet<>();
-    private String selectedCategoryKey = null;
+    // ranked category suggestions, made with each view
+    private CategorySuggestionAdapter suggestionAdapter;
+    private static final int MAX_SUGGESTIONS = 20;
 
-    private static final int MODE_CATEGORY = 0;
-    private static final int MODE_ITEM = 1;
-    private int currentSearchMode = MODE_CATEGORY;
+    private static final int MODE_CATEGORY = HomeViewModel.MODE_CATEGORY;
+    private static final int MODE_ITEM = HomeViewModel.MODE_ITEM;
 
-    private static final int SORT_NEWEST = 0;
-    private static final int SORT_NAME = 1;
-    private int currentSortMode = SORT_NEWEST;
+    private static final int SORT_NEWEST = HomeViewModel.SORT_NEWEST;
+    private static final int SORT_NAME = HomeViewModel.SORT_NAME;
+    private static final int SORT_PRICE_LOW = HomeViewModel.SORT_PRICE_LOW;
+    private static final int SORT_PRICE_HIGH = HomeViewModel.SORT_PRICE_HIGH;
 
     // empty constructor
     public HomeFragment() { }
@@ -87,6 +116,8 @@ public class HomeFragment extends Fragment {
                              Bundle savedInstanceState) {
 
         View view = inflater.inflate(R.layout.fragment_home, container, false);
+        model = new ViewModelProvider(this).get(HomeViewModel.class);
+        itemsList = model.shownItems;
 
         recyclerView          = view.findViewById(R.id.recyclerView);
         addItemButton         = view.findViewById(R.id.floatingActionButton);
@@ -100,16 +131,83 @@ public class HomeFragment extends Fragment {
         sortModeGroup         = view.findViewById(R.id.sortModeGroup);
         sortByNewestRadio     = view.findViewById(R.id.sortByNewestRadio);
         sortByNameRadio       = view.findViewById(R.id.sortByNameRadio);
+        sortByPriceLowRadio   = view.findViewById(R.id.sortByPriceLowRadio);
+        sortByPriceHighRadio  = view.findViewById(R.id.sortByPriceHighRadio);
+        minPriceEditText      = view.findViewById(R.id.minPriceEditText);
+        maxPriceEditText      = view.findViewById(R.id.maxPriceEditText);
+        freeOnlyCheckBox      = view.findViewById(R.id.freeOnlyCheckBox);
+        listHeaderText        = view.findViewById(R.id.listHeaderText);
+
+        // made before the category listener can ask it to refresh
+        suggestionAdapter = new CategorySuggestionAdapter(requireContext(), MAX_SUGGESTIONS);
 
         int orientation = getResources().getConfiguration().orientation;
         int spanCount = (orientation == Configuration.ORIENTATION_PORTRAIT) ? 1 : 2;
-        recyclerView.setLayoutManager(new GridLayoutManager(requireContext(), spanCount));
+        GridLayoutManager layoutManager = new GridLayoutManager(requireContext(), spanCount);
+        recyclerView.setLayoutManager(layoutManager);
 
-        adapter = new ItemRecyclerAdapter(itemsList);
+        adapter = new ItemRecyclerAdapter();
         recyclerView.setAdapter(adapter);
+        // the first rows shown end the startup measurement
+        adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                adapter.unregisterAdapterDataObserver(this);
+                recyclerView.post(() -> {
+                    if (isAdded()) StartupTrace.firstListing(requireActivity());
+                });
+            }
+        });
 
+        // prefetch the next page when the user scrolls near the end
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView rv, int dx, int dy) {
+                if (dy <= 0) return;
+                int lastVisible = layoutManager.findLastVisibleItemPosition();
+                if (lastVisible >= adapter.getItemCount() - PREFETCH_DISTANCE) {
+                    loadMoreItems();
+                }
+            }
+        });
+
+        // show the state kept from before a rotation (or the defaults) before
+        // the listeners are set; the views' own saved state is not used, so
+        // it cannot fight with this
+        searchModeGroup.setSaveEnabled(false);
+        sortModeGroup.setSaveEnabled(false);
+        searchInputEditText.setSaveEnabled(false);
+        minPriceEditText.setSaveEnabled(false);
+        maxPriceEditText.setSaveEnabled(false);
+        freeOnlyCheckBox.setSaveEnabled(false);
+        searchModeGroup.check(currentSearchMode() == MODE_ITEM
+                ? R.id.searchByItemRadio : R.id.searchByCategoryRadio);
+        sortModeGroup.check(sortRadioId(currentSortMode()));
+        searchInputEditText.setText(model.searchText, false);
+        minPriceEditText.setText(model.minPriceText);
+        maxPriceEditText.setText(model.maxPriceText);
+        freeOnlyCheckBox.setChecked(model.freeOnly);
+        setPriceFieldsEnabled(!model.freeOnly);
+
+        model.setPageListener(pageListener);
+        model.itemStore.addListener(storeListener);
+        if (itemsList.isEmpty()) {
+            showMirrorPreview();
+        } else {
+            // back from a rotation: show the kept rows at the kept position
+            adapter.submitList(new ArrayList<>(itemsList), () -> {
+                if (model.listState != null) {
+                    layoutManager.onRestoreInstanceState(model.listState);
+                    model.listState = null;
+                }
+            });
+        }
         loadAvailableItems();
         loadCategories();
+        if (!itemsList.isEmpty()) {
+            // catch up on changes a cancelled filter may have missed
+            applyFilters();
+        }
 
         addItemButton.setOnClickListener(v -> {
             AddItemDialogFragment addItemDialogFragment = new AddItemDialogFragment();
@@ -141,255 +239,508 @@ public class HomeFragment extends Fragment {
 
         searchModeGroup.setOnCheckedChangeListener((group, checkedId) -> {
             if (checkedId == R.id.searchByCategoryRadio) {
-                currentSearchMode = MODE_CATEGORY;
+                model.searchMode = MODE_CATEGORY;
                 searchInputEditText.setText("");
                 searchInputEditText.setHint("Search category");
-                selectedCategoryKey = null;
+                model.selectedCategoryKey = null;
                 setCategorySuggestionsAdapter();
             } else if (checkedId == R.id.searchByItemRadio) {
-                currentSearchMode = MODE_ITEM;
-                selectedCategoryKey = null;
+                model.searchMode = MODE_ITEM;
+                model.selectedCategoryKey = null;
                 searchInputEditText.setText("");
                 searchInputEditText.setHint("Search item name");
                 searchInputEditText.setAdapter(null);
             }
-            applyFilters();
+            onFilterInput(0);
         });
 
         searchInputEditText.addTextChangedListener(new TextWatcher() {
             @Override public void beforeTextChanged(CharSequence s, int start, int count, int after) { }
             @Override public void onTextChanged(CharSequence s, int start, int before, int count) { }
             @Override public void afterTextChanged(Editable s) {
+                model.searchText = (s == null) ? "" : s.toString();
                 // if search bar is cleared in category mode, reset category filter
-                if (currentSearchMode == MODE_CATEGORY) {
+                if (currentSearchMode() == MODE_CATEGORY) {
                     if (s == null || s.toString().trim().isEmpty()) {
-                        selectedCategoryKey = null;
+                        model.selectedCategoryKey = null;
                     }
                 }
 
-                if (currentSearchMode == MODE_ITEM || currentSearchMode == MODE_CATEGORY) {
-                    applyFilters();
+                if (currentSearchMode() == MODE_ITEM || currentSearchMode() == MODE_CATEGORY) {
+                    // wait for the user to pause typing before filtering
+                    onFilterInput(SEARCH_DEBOUNCE_MS);
                 }
             }
         });
 
         searchInputEditText.setOnItemClickListener((parent, v, position, id) -> {
-            if (currentSearchMode == MODE_CATEGORY) {
-                String chosenTitle = (String) parent.getItemAtPosition(position);
-                selectedCategoryKey = null;
-
-                // find the Category whose title matches this chosen title
-                for (Category c : categoryList) {
-                    String t = c.getTitle();
-                    if (t != null && t.equals(chosenTitle)) {
-                        selectedCategoryKey = c.getKey();
-                        break;
-                    }
-                }
-
-                applyFilters();
+            if (currentSearchMode() == MODE_CATEGORY) {
+                // each suggestion carries its category's key
+                model.selectedCategoryKey = suggestionAdapter.keyAt(position);
+                onFilterInput(0);
             }
         });
 
         // show dropdown when clicking category search box
         searchInputEditText.setThreshold(0);
         searchInputEditText.setOnClickListener(v -> {
-            if (currentSearchMode == MODE_CATEGORY) {
+            if (currentSearchMode() == MODE_CATEGORY) {
                 searchInputEditText.showDropDown();
             }
         });
 
         sortModeGroup.setOnCheckedChangeListener((group, checkedId) -> {
             if (checkedId == R.id.sortByNewestRadio) {
-                currentSortMode = SORT_NEWEST;
+                model.sortMode = SORT_NEWEST;
             } else if (checkedId == R.id.sortByNameRadio) {
-                currentSortMode = SORT_NAME;
+                model.sortMode = SORT_NAME;
+            } else if (checkedId == R.id.sortByPriceLowRadio) {
+                model.sortMode = SORT_PRICE_LOW;
+            } else if (checkedId == R.id.sortByPriceHighRadio) {
+                model.sortMode = SORT_PRICE_HIGH;
             }
-            applyFilters();
+            // the loaded items can be read in any order, so show them right
+            // away; paging continues in the new order from here
+            loadAvailableItems();
+            onFilterInput(0);
         });
 
-        setCategorySuggestionsAdapter();
-        searchInputEditText.setHint("Search category");
+        minPriceEditText.addTextChangedListener(new TextWatcher() {
+            @Override public void beforeTextChanged(CharSequence s, int start, int count, int after) { }
+            @Override public void onTextChanged(CharSequence s, int start, int before, int count) { }
+            @Override public void afterTextChanged(Editable s) {
+                model.minPriceText = (s == null) ? "" : s.toString();
+                onFilterInput(SEARCH_DEBOUNCE_MS);
+            }
+        });
+
+        maxPriceEditText.addTextChangedListener(new TextWatcher() {
+            @Override public void beforeTextChanged(CharSequence s, int start, int count, int after) { }
+            @Override public void onTextChanged(CharSequence s, int start, int before, int count) { }
+            @Override public void afterTextChanged(Editable s) {
+                model.maxPriceText = (s == null) ? "" : s.toString();
+                onFilterInput(SEARCH_DEBOUNCE_MS);
+            }
+        });
+
+        freeOnlyCheckBox.setOnCheckedChangeListener((button, isChecked) -> {
+            model.freeOnly = isChecked;
+            // the typed range does not apply while only free items are shown
+            setPriceFieldsEnabled(!isChecked);
+            onFilterInput(0);
+        });
+
+        if (currentSearchMode() == MODE_CATEGORY) {
+            setCategorySuggestionsAdapter();
+            searchInputEditText.setHint("Search category");
+        } else {
+            searchInputEditText.setHint("Search item name");
+        }
 
         return view;
     }
 
     /**
-     * loadAvailableItems loads all the items from the Firebase that has
+     * onDestroyView stops updating the views & saves the scroll position.
+     * The loaded items stay in the model, which closes them once the
+     * fragment is gone for good.
+     */
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        filterPipeline.cancel();
+        CategoryRepository.get().unsubscribe(categoryListener);
+        model.itemStore.removeListener(storeListener);
+        model.setPageListener(null);
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        if (layoutManager != null) {
+            model.listState = layoutManager.onSaveInstanceState();
+        }
+    }
+
+    /**
+     * storeListener applies single item changes from the store to the shown
+     * list. The model has already updated its indexes & item table by
+     * then. The list is handed to the adapter once per frame, which diffs
+     * it, so only the affected rows are added, moved, rebound or removed.
+     */
+    private final ItemStore.Listener storeListener = new ItemStore.Listener() {
+        @Override
+        public void onItemAdded(Item item) {
+            if (!isAdded()) return;
+            if (refilterIfBusy()) return;
+            if (matchesFilter(item)) {
+                itemsList.add(insertionPoint(item), item);
+                adapter.submitOnNextFrame(itemsList);
+            }
+        }
+
+        @Override
+        public void onItemChanged(Item item) {
+            if (!isAdded()) return;
+            if (refilterIfBusy()) return;
+            int from = indexOfKey(item.getKey());
+            if (from >= 0) {
+                itemsList.remove(from);
+            }
+            if (matchesFilter(item)) {
+                itemsList.add(insertionPoint(item), item);
+            }
+            adapter.submitOnNextFrame(itemsList);
+        }
+
+        @Override
+        public void onItemRemoved(Item item) {
+            if (!isAdded()) return;
+            if (refilterIfBusy()) return;
+            int pos = indexOfKey(item.getKey());
+            if (pos >= 0) {
+                itemsList.remove(pos);
+                adapter.submitOnNextFrame(itemsList);
+            }
+        }
+
+        @Override
+        public void onLoadFailed() {
+            if (!isAdded()) return;
+            Toast.makeText(requireContext(),
+                    "Failed to load items",
+                    Toast.LENGTH_SHORT).show();
+        }
+    };
+
+    /**
+     * loadAvailableItems loads the items from the Firebase that have
      * the status "available" so that only the items that no one has
-     * already requested or purchased is displayed.
+     * already requested or purchased is displayed. Items are loaded a
+     * page at a time in the current sort order, starting with the first page.
+     * Each sort order has its own pager in the model; both feed the same
+     * store, so items loaded in one order stay shown after switching to the
+     * other, & nothing is loaded again after a rotation.
      */
     private void loadAvailableItems() {
-        DatabaseReference db = FirebaseDatabase.getInstance().getReference("items");
-
-        db.orderByChild("status").equalTo("available")
-                .addValueEventListener(new ValueEventListener() {
-                    @Override
-                    public void onDataChange(@NonNull DataSnapshot snapshot) {
-                        if (!isAdded()) return;
-
-                        allItems.clear();
-
-                        for (DataSnapshot itemSnapshot : snapshot.getChildren()) {
-                            Item item = itemSnapshot.getValue(Item.class);
-                            if (item != null) {
-                                if (item.getKey() == null || item.getKey().isEmpty()) {
-                                    item.setKey(itemSnapshot.getKey());
-                                }
-                                allItems.add(item);
-                            }
-                        }
-
-                        applyFilters();
-                    }
+        model.currentPager();
+    }
+
+    /**
+     * pageListener is told by the model when a page has been read.
+     */
+    private final ItemPager.Listener pageListener = new ItemPager.Listener() {
+        @Override
+        public void onPageLoaded(List<Item> page, String from, String fromKey,
+                                 String to, String toKey) {
+            if (!isAdded()) return;
+            if (showingPreview) {
+                showingPreview = false;
+                adapter.submitList(new ArrayList<>(itemsList));
+            }
+            // the page may cover items another order's pager loaded before,
+            // so filter again; that fills the list further if it is short
+            applyFilters();
+        }
+
+        @Override
+        public void onLoadFailed() {
+            if (!isAdded()) return;
+            Toast.makeText(requireContext(),
+                    "Failed to load items",
+                    Toast.LENGTH_SHORT).show();
+        }
+    };
 
-                    @Override
-                    public void onCancelled(@NonNull DatabaseError error) {
-                        if (!isAdded()) return;
-                        Toast.makeText(requireContext(),
-                                "Failed to load items",
-                                Toast.LENGTH_SHORT).show();
+    /**
+     * showMirrorPreview shows the first page of available items from the
+     * local mirror right away, so the list is not empty while the network
+     * is slow. It is replaced as soon as Firebase sends the first page.
+     */
+    private void showMirrorPreview() {
+        LocalMirror mirror = LocalMirror.get();
+        if (mirror == null) return;
+        mirror.loadItemsByStatus("available", currentSortMode() == SORT_NAME, ItemPager.PAGE_SIZE,
+                items -> {
+                    if (!isAdded() || model.itemStore.size() > 0 || items.isEmpty()) return;
+                    List<String> sellers = new ArrayList<>();
+                    for (Item item : items) {
+                        if (item.getSellerName() == null) sellers.add(item.getSellerId());
                     }
+                    UserDirectory.get().prefetch(sellers, UserDirectory.PREFETCH_DEADLINE_MS, () -> {
+                        if (!isAdded() || model.itemStore.size() > 0) return;
+                        showingPreview = true;
+                        adapter.submitList(items);
+                    });
                 });
     }
 
     /**
-     * loadCategories loads all categories from the Firebase database & updates the
-     * local category lists.
+     * loadMoreItems asks the pager for the next page, if there is one.
      */
-    private void loadCategories() {
-        DatabaseReference catRef = FirebaseDatabase.getInstance().getReference("categories");
-
-        catRef.orderByChild("title")
-                .addValueEventListener(new ValueEventListener() {
-                    @Override
-                    public void onDataChange(@NonNull DataSnapshot snapshot) {
-                        if (!isAdded()) return;
-
-                        categoryList.clear();
-                        categoryTitles.clear();
-                        categoryTitlesLowerSet.clear();
-
-                        for (DataSnapshot catSnapshot : snapshot.getChildren()) {
-                            Category category = catSnapshot.getValue(Category.class);
-                            if (category != null) {
-                                if (category.getKey() == null || category.getKey().isEmpty()) {
-                                    category.setKey(catSnapshot.getKey());
-                                }
-                                String title = category.getTitle();
-                                if (title == null) continue;
-
-                                String norm = title.trim().toLowerCase(Locale.US);
-                                if (!categoryTitlesLowerSet.contains(norm)) {
-                                    categoryTitlesLowerSet.add(norm);
-                                    categoryList.add(category);
-                                    categoryTitles.add(title);
-                                }
-                            }
-                        }
-
-                        if (currentSearchMode == MODE_CATEGORY) {
-                            setCategorySuggestionsAdapter();
-                        }
-                    }
+    private void loadMoreItems() {
+        ItemPager pager = model.currentPager();
+        if (pager.hasMore()) {
+            pager.loadNextPage();
+        }
+    }
 
-                    @Override
-                    public void onCancelled(@NonNull DatabaseError error) {
-                        if (!isAdded()) return;
-                        Toast.makeText(requireContext(),
-                                "Failed to load categories",
-                                Toast.LENGTH_SHORT).show();
-                    }
-                });
+    /**
+     * loadCategories subscribes to the shared CategoryRepository, which
+     * keeps the local category lists up to date.
+     */
+    private void loadCategories() {
+        CategoryRepository.get().subscribe(categoryListener);
     }
 
     /**
-     * setCategorySuggestionsAdapter displays all current category titles
-     * in the database to the user.
+     * categoryListener copies each new category snapshot into the lists used
+     * by the search box & re-runs the filter, since a renamed category can
+     * change which items match the typed category query.
+     */
+    private final CategoryRepository.Listener categoryListener = new CategoryRepository.Listener() {
+        @Override
+        public void onCategoriesChanged(CategoryRepository.Snapshot snapshot) {
+            if (!isAdded()) return;
+            categoryList = snapshot.categories();
+
+            if (currentSearchMode() == MODE_CATEGORY) {
+                suggestionAdapter.refresh();
+                if (!searchInputEditText.getText().toString().trim().isEmpty()) {
+                    applyFilters();
+                }
+            }
+        }
+
+        @Override
+        public void onSuggestionsChanged() {
+            if (!isAdded()) return;
+            suggestionAdapter.refresh();
+        }
+
+        @Override
+        public void onLoadFailed() {
+            if (!isAdded()) return;
+            Toast.makeText(requireContext(),
+                    "Failed to load categories",
+                    Toast.LENGTH_SHORT).show();
+        }
+    };
+
+    /**
+     * setCategorySuggestionsAdapter shows the ranked category suggestions
+     * under the search box. The adapter is refreshed, not replaced, when
+     * the categories change.
      */
     private void setCategorySuggestionsAdapter() {
         if (!isAdded()) return;
+        searchInputEditText.setAdapter(suggestionAdapter);
+    }
 
-        ArrayAdapter<String> dropdownAdapter = new ArrayAdapter<>(
-                requireContext(),
-                android.R.layout.simple_dropdown_item_1line,
-                categoryTitles
-        );
-        searchInputEditText.setAdapter(dropdownAdapter);
+    /**
+     * onFilterInput filters again after the user changed the search, sort
+     * or price inputs. The new filter may load a few pages on its own if it
+     * shows too few rows.
+     */
+    private void onFilterInput(long delayMs) {
+        autoFillPages = 0;
+        scheduleFilters(delayMs);
     }
 
     /**
      * applyFilters filters the items shown depending on what category
-     * or item the user queries. After filtering, this method also applies
-     * the current sorting mode, either by creation time or alphabetically.
+     * or item the user queries & the price range. The items are read already
+     * sorted in the current mode (by creation time, alphabetically or by
+     * price), so filtering keeps their order & nothing is re-sorted.
+     * The work runs in the background & the list updates when it is done.
      */
     private void applyFilters() {
-        itemsList.clear();
-
-        if (currentSearchMode == MODE_CATEGORY) {
-
-            String query = searchInputEditText.getText().toString()
-                    .trim().toLowerCase(Locale.US);
-
-            Set<String> allowedCategoryIds = new HashSet<>();
+        scheduleFilters(0);
+    } // applyFilters
 
-            // category chosen from dropdown
-            if (selectedCategoryKey != null && !selectedCategoryKey.isEmpty()) {
-                allowedCategoryIds.add(selectedCategoryKey);
+    /**
+     * scheduleFilters starts a background filter after delayMs,
+     * cancelling any earlier one that is still waiting or running. When the
+     * delay is over the current filter is copied on the main thread, so the
+     * background work never sees it change; the items are read from the
+     * view model's thread safe indexes in the background.
+     */
+    private void scheduleFilters(long delayMs) {
+        filterPipeline.submit(delayMs, () -> {
+            updateFilter();
+            final ItemQueryEngine.Query query = currentQuery;
+            final int sortMode = currentSortMode();
+            final double min = filterMinPrice;
+            final double max = filterMaxPrice;
+            final Predicate<Item> coverage = model.coverage();
+            return isCancelled -> {
+                // the loaded items in the sort order, already cut down to the
+                // price range & the loaded pages, read from the thread safe
+                // indexes
+                List<Item> sorted = model.sortedItems(sortMode, min, max, coverage);
+                // one pass over the sorted copy, so the result comes out in
+                // order; it only reads its own copy & the thread safe name index
+                return query.run(sorted, isCancelled);
+            };
+        }, new FilterPipeline.Callback<List<Item>>() {
+            @Override
+            public void onResult(List<Item> result) {
+                if (!isAdded()) return;
+                itemsList.clear();
+                itemsList.addAll(result);
+                // the adapter diffs against the shown list off the main thread
+                adapter.submitList(new ArrayList<>(itemsList));
+                updateListHeader();
+                fillIfShort();
             }
 
-            // any categories whose title matches the typed query
-            if (!query.isEmpty()) {
-                for (Category c : categoryList) {
-                    String title = c.getTitle();
-                    if (title == null) continue;
-                    String norm = title.toLowerCase(Locale.US);
-                    if (norm.contains(query)) {
-                        if (c.getKey() != null) {
-                            allowedCategoryIds.add(c.getKey());
-                        }
-                    }
-                }
+            @Override
+            public void onFailed(RuntimeException error) {
+                if (!isAdded()) return;
+                // the list keeps showing the last filter's result
+                Toast.makeText(requireContext(),
+                        "Failed to filter items",
+                        Toast.LENGTH_SHORT).show();
             }
+        });
+    }
 
-            for (Item item : allItems) {
-                String itemCatId = item.getCategoryId();
+    /**
+     * updateListHeader tells the user when the list may leave out items
+     * that are not loaded yet, i.e. while sorting by price or filtering a
+     * price range before the last page.
+     */
+    private void updateListHeader() {
+        if (isFillCapped()) {
+            // too few rows to scroll, so a tap loads the next pages instead
+            listHeaderText.setText("Few matches so far, tap to search more listings");
+            listHeaderText.setOnClickListener(v -> {
+                autoFillPages = 0;
+                fillIfShort();
+            });
+            return;
+        }
+        listHeaderText.setOnClickListener(null);
+        listHeaderText.setClickable(false);
+        listHeaderText.setText(model.loadedOnly(filterMinPrice, filterMaxPrice)
+                ? "Loaded listings only, scroll for more"
+                : "All listings");
+    }
 
-                if (allowedCategoryIds.isEmpty()) {
-                    // no category filter: show all available items
-                    itemsList.add(item);
-                } else {
-                    if (itemCatId != null && allowedCategoryIds.contains(itemCatId)) {
-                        itemsList.add(item);
-                    }
-                }
-            }
+    /**
+     * refilterIfBusy restarts the background filter if one is pending, since
+     * its copy of the items is now out of date. Returns true if it did.
+     */
+    private boolean refilterIfBusy() {
+        if (!filterPipeline.isBusy()) return false;
+        scheduleFilters(0);
+        return true;
+    }
 
+    /**
+     * updateFilter reads the search box & price fields & rebuilds the
+     * current query that matchesFilter() & the background filter check
+     * items against.
+     */
+    private void updateFilter() {
+        String text = FeedFilter.normalize(searchInputEditText.getText().toString());
+        // the category chosen from the dropdown & any categories whose
+        // title matches the typed query
+        BitSet allowed = (currentSearchMode() == MODE_CATEGORY)
+                ? FeedFilter.allowedCategories(categoryList, text, model.selectedCategoryKey)
+                : new BitSet();
+        ItemQueryEngine.Builder builder =
+                FeedFilter.builder(currentSearchMode(), text, allowed, model.nameIndex);
+
+        if (model.freeOnly) {
+            filterMinPrice = 0.0;
+            filterMaxPrice = 0.0;
+            builder.freeOnly();
         } else {
-            String query = searchInputEditText.getText().toString().trim().toLowerCase(Locale.US);
-            for (Item item : allItems) {
-                if (query.isEmpty()) {
-                    itemsList.add(item);
-                } else {
-                    String name = (item.getName() == null) ? "" : item.getName().toLowerCase(Locale.US);
-                    if (name.contains(query)) {
-                        itemsList.add(item);
-                    }
-                }
+            double min = FeedFilter.parsePrice(model.minPriceText, FeedFilter.MIN_PRICE);
+            double max = FeedFilter.parsePrice(model.maxPriceText, FeedFilter.MAX_PRICE);
+            // a range typed backwards still means the prices between them
+            filterMinPrice = Math.min(min, max);
+            filterMaxPrice = Math.max(min, max);
+            if (FeedFilter.isPriceLimited(filterMinPrice, filterMaxPrice)) {
+                builder.priceBetween(filterMinPrice, filterMaxPrice);
             }
         }
+        currentQuery = builder.build();
+    }
 
-        // sort
-        if (currentSortMode == SORT_NEWEST) {
-            itemsList.sort((a, b) -> Long.compare(b.getCreationTime(), a.getCreationTime()));
-        } else if (currentSortMode == SORT_NAME) {
-            itemsList.sort((a, b) -> {
-                String na = (a.getName() == null) ? "" : a.getName().toLowerCase(Locale.US);
-                String nb = (b.getName() == null) ? "" : b.getName().toLowerCase(Locale.US);
-                return na.compareTo(nb);
-            });
+    /**
+     * setPriceFieldsEnabled turns the min & max price fields on or off.
+     */
+    private void setPriceFieldsEnabled(boolean enabled) {
+        minPriceEditText.setEnabled(enabled);
+        maxPriceEditText.setEnabled(enabled);
+    }
+
+    /**
+     * matchesFilter checks one item against the current query & if the
+     * pages loaded in the current order reach it.
+     */
+    private boolean matchesFilter(Item item) {
+        return currentQuery.matches(item) && model.coverage().test(item);
+    }
+
+    private int currentSearchMode() { return model.searchMode; }
+
+    private int currentSortMode() { return model.sortMode; }
+
+    /**
+     * sortRadioId returns the radio button for a sort mode.
+     */
+    private static int sortRadioId(int sortMode) {
+        switch (sortMode) {
+            case SORT_NAME: return R.id.sortByNameRadio;
+            case SORT_PRICE_LOW: return R.id.sortByPriceLowRadio;
+            case SORT_PRICE_HIGH: return R.id.sortByPriceHighRadio;
+            default: return R.id.sortByNewestRadio;
         }
+    }
 
-        adapter.notifyDataSetChanged();
-    } // applyFilters
+    /**
+     * itemComparator returns the ordering for the current sort mode.
+     */
+    private Comparator<Item> itemComparator() {
+        return model.comparator();
+    }
+
+    /**
+     * insertionPoint finds where an item belongs in the sorted shown list.
+     */
+    private int insertionPoint(Item item) {
+        int pos = Collections.binarySearch(itemsList, item, itemComparator());
+        return (pos < 0) ? -(pos + 1) : pos;
+    }
+
+    private int indexOfKey(String key) {
+        for (int i = 0; i < itemsList.size(); i++) {
+            if (itemsList.get(i).getKey().equals(key)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * fillIfShort loads another page while a filter leaves too few rows to
+     * scroll, at most MAX_AUTO_FILL_PAGES per filter, so a search matching
+     * almost nothing does not page through the whole catalog.
+     */
+    private void fillIfShort() {
+        if (itemsList.size() >= PREFETCH_DISTANCE * 2) return;
+        ItemPager pager = model.currentPager();
+        if (!pager.hasMore() || pager.isLoading()) return;
+        if (autoFillPages >= MAX_AUTO_FILL_PAGES) {
+            updateListHeader();
+            return;
+        }
+        autoFillPages++;
+        pager.loadNextPage();
+    }
+
+    // the list is short but filling it stopped at MAX_AUTO_FILL_PAGES
+    private boolean isFillCapped() {
+        ItemPager pager = model.currentPager();
+        return itemsList.size() < PREFETCH_DISTANCE * 2
+                && autoFillPages >= MAX_AUTO_FILL_PAGES
+                && pager.hasMore();
+    }
 }
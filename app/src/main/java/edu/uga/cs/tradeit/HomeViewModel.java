@@ -0,0 +1,246 @@
+package edu.uga.cs.tradeit;
+
+import android.os.Parcelable;
+
+import androidx.lifecycle.ViewModel;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * HomeViewModel holds everything HomeFragment has loaded, so it survives
+ * configuration changes such as rotation. The fragment's views are rebuilt
+ * for the new layout, but the pagers, their Firebase listeners, the loaded
+ * items, the filter state & the scroll position are kept & shown again
+ * without downloading anything.
+ *
+ * Everything is released in onCleared(), once the fragment is really gone.
+ */
+public class HomeViewModel extends ViewModel {
+
+    public static final int MODE_CATEGORY = FeedFilter.MODE_CATEGORY;
+    public static final int MODE_ITEM = FeedFilter.MODE_ITEM;
+
+    public static final int SORT_NEWEST = 0;
+    public static final int SORT_NAME = 1;
+    public static final int SORT_PRICE_LOW = 2;
+    public static final int SORT_PRICE_HIGH = 3;
+
+    // every loaded item, kept up to date one change at a time
+    final ItemStore itemStore = new ItemStore();
+    // trigram index over the names of the items in the store
+    final NameIndex nameIndex = new NameIndex();
+    // the loaded items with the fields the feed filters & sorts on stored
+    // as compact columns, readable off the main thread
+    final ItemTable itemTable = new ItemTable();
+    // the filtered items currently shown, in the current sort order
+    final List<Item> shownItems = new ArrayList<>();
+
+    // filter & sort state
+    int searchMode = MODE_CATEGORY;
+    int sortMode = SORT_NEWEST;
+    String searchText = "";
+    String selectedCategoryKey = null;
+    String minPriceText = "";
+    String maxPriceText = "";
+    boolean freeOnly = false;
+
+    // the list's scroll position, saved when the views are destroyed
+    Parcelable listState = null;
+
+    // one pager per Firebase order, created the first time it is needed
+    private final Map<String, ItemPager> pagers = new HashMap<>();
+    // the fragment currently showing the pages, null between views
+    private ItemPager.Listener pageListener;
+
+    // keeps the shared category listener attached between views
+    private final CategoryRepository.Listener categoryHold = snapshot -> { };
+
+    // keeps the indexes & the item table in step with the store
+    private final ItemStore.Listener indexer = new ItemStore.Listener() {
+        @Override
+        public void onItemAdded(Item item) { index(item); }
+
+        @Override
+        public void onItemChanged(Item item) { index(item); }
+
+        @Override
+        public void onItemRemoved(Item item) {
+            // it was deleted or is no longer available, e.g. requested
+            LocalMirror mirror = LocalMirror.get();
+            if (mirror != null) refreshMirror(mirror, item.getKey());
+            unindex(item);
+        }
+
+        @Override
+        public void onItemReleased(Item item) {
+            // only no page holds it any more; the mirror keeps it
+            unindex(item);
+        }
+    };
+
+    public HomeViewModel() {
+        // registered before any fragment listener, so the indexes & the
+        // item table are up to date by the time the fragment is told
+        itemStore.addListener(indexer);
+        CategoryRepository.get().subscribe(categoryHold);
+    }
+
+    /**
+     * setPageListener sets who is told about loaded pages, or null while
+     * there are no views.
+     */
+    void setPageListener(ItemPager.Listener listener) {
+        pageListener = listener;
+    }
+
+    /**
+     * comparator returns the order of the current sort mode.
+     */
+    Comparator<Item> comparator() {
+        switch (sortMode) {
+            case SORT_NAME: return Item.BY_NAME;
+            case SORT_PRICE_LOW: return Item.PRICE_LOW_FIRST;
+            case SORT_PRICE_HIGH: return Item.PRICE_HIGH_FIRST;
+            default: return Item.NEWEST_FIRST;
+        }
+    }
+
+    /**
+     * coverage returns which loaded items can be shown in the current sort
+     * mode. The store also holds items the other order's pager loaded, &
+     * in the newest & name orders only the ones up to the current pager's
+     * last loaded item have no gaps before them. The price sorts show every
+     * loaded item.
+     */
+    Predicate<Item> coverage() {
+        if (sortMode == SORT_PRICE_LOW || sortMode == SORT_PRICE_HIGH) return item -> true;
+        return currentPager().coverage();
+    }
+
+    /**
+     * loadedOnly tells if the price sort or the price range from min to max
+     * may be leaving out items: pages are read by time or name, so until
+     * the last page is in they only order & filter the loaded items.
+     */
+    boolean loadedOnly(double min, double max) {
+        boolean byPrice = sortMode == SORT_PRICE_LOW || sortMode == SORT_PRICE_HIGH
+                || FeedFilter.isPriceLimited(min, max);
+        return byPrice && currentPager().hasMore();
+    }
+
+    /**
+     * sortedItems returns the loaded items priced from min to max that
+     * pass coverage, in the given sort mode, from the item table's
+     * presorted rows; a price sort reads the price range as one slice. It
+     * only reads the table, so it can run on a background thread while the
+     * store changes.
+     */
+    List<Item> sortedItems(int sortMode, double min, double max, Predicate<Item> coverage) {
+        ItemTable.Filter filter = new ItemTable.Filter();
+        if (FeedFilter.isPriceLimited(min, max)) {
+            filter.priceBetween(min, max);
+        }
+        List<Item> items = itemTable.selectItems(filter, tableOrder(sortMode));
+        List<Item> result = new ArrayList<>(items.size());
+        for (Item item : items) {
+            if (coverage.test(item)) result.add(item);
+        }
+        return result;
+    }
+
+    private static int tableOrder(int sortMode) {
+        switch (sortMode) {
+            case SORT_NAME: return ItemTable.ORDER_NAME;
+            case SORT_PRICE_LOW: return ItemTable.ORDER_PRICE_LOW;
+            case SORT_PRICE_HIGH: return ItemTable.ORDER_PRICE_HIGH;
+            default: return ItemTable.ORDER_NEWEST;
+        }
+    }
+
+    /**
+     * currentPager returns the pager for the current sort mode, creating it
+     * & loading its first page if there is none yet. All pagers feed the
+     * same store, so items loaded in one order stay shown in the others.
+     * The price sorts are served from the item table's price order over
+     * the loaded items, so they keep paging in the newest order.
+     */
+    ItemPager currentPager() {
+        String orderField = (sortMode == SORT_NAME)
+                ? ItemPager.ORDER_NAME
+                : ItemPager.ORDER_NEWEST;
+        ItemPager pager = pagers.get(orderField);
+        if (pager != null) return pager;
+
+        pager = new ItemPager("available", orderField, itemStore, new ItemPager.Listener() {
+            @Override
+            public void onPageLoaded(List<Item> page, String from, String fromKey,
+                                     String to, String toKey) {
+                // drop mirrored items in this range that are gone remotely
+                LocalMirror mirror = LocalMirror.get();
+                if (mirror != null) {
+                    mirror.replaceItemRange(orderField, from, fromKey, to, toKey, page);
+                }
+                if (pageListener != null) pageListener.onPageLoaded(page, from, fromKey, to, toKey);
+            }
+
+            @Override
+            public void onLoadFailed() {
+                if (pageListener != null) pageListener.onLoadFailed();
+            }
+        });
+        pagers.put(orderField, pager);
+        pager.loadNextPage();
+        return pager;
+    }
+
+    @Override
+    protected void onCleared() {
+        pageListener = null;
+        CategoryRepository.get().unsubscribe(categoryHold);
+        // closing the pagers releases every item, which must not reach the
+        // mirror; the indexes are cleared below
+        itemStore.removeListener(indexer);
+        for (ItemPager pager : pagers.values()) {
+            pager.close();
+        }
+        pagers.clear();
+        itemStore.close();
+        itemTable.clear();
+        nameIndex.clear();
+        shownItems.clear();
+    }
+
+    private void index(Item item) {
+        LocalMirror mirror = LocalMirror.get();
+        if (mirror != null) mirror.putItem(item);
+        nameIndex.put(item.getKey(), item.getName());
+        itemTable.put(item);
+    }
+
+    /**
+     * refreshMirror reads an item that left the loaded ranges & keeps its
+     * mirrored row with the new values, e.g. for the transaction tabs, or
+     * deletes the row if the item is gone.
+     */
+    private static void refreshMirror(LocalMirror mirror, String key) {
+        DataSources.get().items().get(key).whenComplete((item, error) -> {
+            // on a failed read the row stays until the next full query
+            if (error != null) return;
+            if (item == null) {
+                mirror.deleteItem(key);
+            } else {
+                mirror.putItem(item);
+            }
+        });
+    }
+
+    private void unindex(Item item) {
+        nameIndex.remove(item.getKey());
+        itemTable.remove(item.getKey());
+    }
+}
@@ -0,0 +1,77 @@
+package edu.uga.cs.tradeit;
+
+/**
+ * ItemConfirm confirms the buyer's or seller's side of a pending item in
+ * one atomic step.
+ *
+ * The side's flag is set in a transaction that only goes through while
+ * the item is still "pending". The confirmation that makes both flags
+ * true also completes the item in that same commit (status, index fields
+ * & category title), so when buyer & seller confirm at the same time
+ * exactly one of them completes it & only that one moves the category
+ * count. A transaction covers one item only, so the count follows in a
+ * second write; a count lost that way is fixed by CounterBackfill's
+ * periodic recount.
+ */
+public class ItemConfirm {
+
+    /**
+     * Callback is told how the confirmation ended, on the main thread.
+     */
+    public interface Callback {
+        // the side is confirmed; completed tells if this completed the item
+        void onConfirmed(Item item, boolean completed);
+        // the item is no longer pending, or was deleted
+        void onUnavailable();
+        void onFailed();
+    }
+
+    private ItemConfirm() { }
+
+    /**
+     * send confirms the seller's side (or else the buyer's) of the item
+     * with the given key.
+     */
+    public static void send(String itemKey, boolean seller, Callback callback) {
+        // an immutable snapshot, so the transaction can read it any number of times
+        CategoryRepository.Snapshot categories = CategoryRepository.get().current();
+
+        DataSources.get().items().transact(itemKey, item -> {
+            if (!"pending".equals(item.getStatus())) return null;
+            item.setKey(itemKey);
+            if (seller) {
+                item.setSellerConfirmed(true);
+            } else {
+                item.setBuyerConfirmed(true);
+            }
+            if (item.isBuyerConfirmed() && item.isSellerConfirmed()) {
+                item.setStatus("completed");
+                item.updateIndexes();
+                String title = item.getCategoryTitle();
+                if ((title == null || title.isEmpty()) && categories != null) {
+                    // completed items keep their category's title even if
+                    // the category is deleted later
+                    item.setCategoryTitle(categories.titleOf(item.getCategoryId()));
+                }
+            }
+            return item;
+        }).whenComplete((item, error) -> {
+            if (error != null) {
+                callback.onFailed();
+                return;
+            }
+            if (item == null) {
+                callback.onUnavailable();
+                return;
+            }
+
+            // a transaction that aborts on "completed" cannot complete the
+            // item twice, so only this one moves the category count
+            boolean completed = "completed".equals(item.getStatus());
+            if (completed) {
+                CategoryCounters.sendStatusChange(item.getCategoryId(), "pending", "completed");
+            }
+            callback.onConfirmed(item, completed);
+        });
+    }
+}
@@ -9,8 +9,9 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
+
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * This screen shows all the details about a single item.
@@ -29,10 +30,8 @@ public class ItemDetailActivity extends AppCompatActivity {
     // buttons for actions
     private Button actionButton, editButton, deleteButton;
 
-    // references to different parts of the Firebase database
-    private DatabaseReference itemsRef;
-    private DatabaseReference usersRef;
-    private DatabaseReference categoriesRef;
+    // the items node of the database
+    private DataSource.Ref<Item> itemsRef;
 
     // key of the item we are showing
     private String itemKey;
@@ -64,9 +63,8 @@ public class ItemDetailActivity extends AppCompatActivity {
         deleteButton = findViewById(R.id.detailDeleteButton);
 
         // get database references
-        itemsRef = FirebaseDatabase.getInstance().getReference("items");
-        usersRef = FirebaseDatabase.getInstance().getReference("users");
-        categoriesRef = FirebaseDatabase.getInstance().getReference("categories");
+        itemsRef = DataSources.get().items();
+        LocalMirror.init(this);
         currentUid = FirebaseAuth.getInstance().getUid();
 
         // get the itemKey passed from the previous screen
@@ -91,25 +89,41 @@ public class ItemDetailActivity extends AppCompatActivity {
     /**
      * Loads the item from Firebase using itemKey,
      * then binds it to the screen and loads seller info.
+     * The local mirror's copy is shown first if there is one, so the
+     * screen is not empty while waiting for the network.
      */
     private void loadItemDetails() {
-        itemsRef.child(itemKey)
-                .get()
-                .addOnSuccessListener(snapshot -> {
-                    Item item = snapshot.getValue(Item.class);
+        LocalMirror mirror = LocalMirror.get();
+        boolean[] remoteDone = { false };
+        if (mirror != null && currentItem == null) {
+            mirror.loadItem(itemKey, item -> {
+                if (item == null || remoteDone[0] || isFinishing()) return;
+                currentItem = item;
+                bindItemToUI();
+                loadSellerInfo(item.getSellerId());
+            });
+        }
+
+        itemsRef.get(itemKey)
+                .whenComplete((item, error) -> {
+                    remoteDone[0] = true;
+                    if (error != null) {
+                        Toast.makeText(this, "Failed to load item", Toast.LENGTH_SHORT).show();
+                        // keep showing the mirror's copy if there is one
+                        if (currentItem == null) finish();
+                        return;
+                    }
                     if (item == null) {
+                        if (mirror != null) mirror.deleteItem(itemKey);
                         Toast.makeText(this, "Item not found", Toast.LENGTH_SHORT).show();
                         finish();
                         return;
                     }
                     item.setKey(itemKey);
+                    if (mirror != null) mirror.putItem(item);
                     currentItem = item;
                     bindItemToUI();
                     loadSellerInfo(item.getSellerId());
-                })
-                .addOnFailureListener(e -> {
-                    Toast.makeText(this, "Failed to load item", Toast.LENGTH_SHORT).show();
-                    finish();
                 });
     }
 
@@ -127,15 +141,10 @@ public class ItemDetailActivity extends AppCompatActivity {
         if (catId == null || catId.isEmpty()) {
             categoryTV.setText("Category: None");
         } else {
-            categoriesRef.child(catId).child("title")
-                    .get()
-                    .addOnSuccessListener(snap -> {
-                        String title = snap.getValue(String.class);
-                        if (title == null) title = "Unknown";
-                        categoryTV.setText("Category: " + title);
-                    })
-                    .addOnFailureListener(e ->
-                            categoryTV.setText("Category: Unknown"));
+            CategoryRepository.get().lookupTitle(catId, title -> {
+                if (isFinishing()) return;
+                categoryTV.setText("Category: " + (title == null ? "Unknown" : title));
+            });
         }
 
         // show price or "Free"
@@ -166,34 +175,16 @@ public class ItemDetailActivity extends AppCompatActivity {
     }
 
     /**
-     * Loads the seller's name and email from Firebase
-     * and shows them under the item details.
+     * Loads the seller's name and email from the shared UserDirectory
+     * and shows them under the item details. A seller already seen in a
+     * list is shown right away without reading Firebase again.
      */
     private void loadSellerInfo(String sellerId) {
-        if (sellerId == null) {
-            sellerNameTV.setText("Seller: Unknown");
-            sellerEmailTV.setText("Email: Unknown");
-            return;
-        }
-
-        usersRef.child(sellerId)
-                .get()
-                .addOnSuccessListener(snapshot -> {
-                    User user = snapshot.getValue(User.class);
-                    if (user == null) {
-                        sellerNameTV.setText("Seller: Unknown");
-                        sellerEmailTV.setText("Email: Unknown");
-                    } else {
-                        String name = user.getName() != null ? user.getName() : "Unknown";
-                        String email = user.getEmail() != null ? user.getEmail() : "Unknown";
-                        sellerNameTV.setText("Seller: " + name);
-                        sellerEmailTV.setText("Email: " + email);
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    sellerNameTV.setText("Seller: Unknown");
-                    sellerEmailTV.setText("Email: Unknown");
-                });
+        UserDirectory.get().lookup(sellerId, user -> {
+            if (isFinishing()) return;
+            sellerNameTV.setText("Seller: " + UserDirectory.displayName(user));
+            sellerEmailTV.setText("Email: " + UserDirectory.displayEmail(user));
+        });
     }
 
     /**
@@ -302,27 +293,35 @@ public class ItemDetailActivity extends AppCompatActivity {
     private void requestItem() {
         if (currentUid == null || currentItem == null) return;
 
-        DatabaseReference itemRef = itemsRef.child(currentItem.getKey());
+        // one atomic write that only succeeds while the item is available
+        ItemRequest.send(currentItem.getKey(), currentUid, new ItemRequest.Callback() {
+            @Override
+            public void onRequested(Item item) {
+                if (isFinishing()) return;
+                Toast.makeText(ItemDetailActivity.this,
+                        "Item requested",
+                        Toast.LENGTH_SHORT).show();
+                // show the values that were committed
+                currentItem = item;
+                bindItemToUI();
+            }
 
-        itemRef.child("buyerId").setValue(currentUid);
-        itemRef.child("status").setValue("pending");
-        itemRef.child("buyerConfirmed").setValue(false);
-        itemRef.child("sellerConfirmed").setValue(false)
-                .addOnSuccessListener(aVoid -> {
-                    Toast.makeText(this,
-                            "Item requested",
-                            Toast.LENGTH_SHORT).show();
-                    // update local copy and refresh UI
-                    currentItem.setBuyerId(currentUid);
-                    currentItem.setStatus("pending");
-                    currentItem.setBuyerConfirmed(false);
-                    currentItem.setSellerConfirmed(false);
-                    bindItemToUI();
-                })
-                .addOnFailureListener(e ->
-                        Toast.makeText(this,
-                                "Failed to request item",
-                                Toast.LENGTH_SHORT).show());
+            @Override
+            public void onUnavailable() {
+                if (isFinishing()) return;
+                Toast.makeText(ItemDetailActivity.this,
+                        "Item is no longer available",
+                        Toast.LENGTH_SHORT).show();
+                reloadItem();
+            }
+
+            @Override
+            public void onFailed() {
+                Toast.makeText(ItemDetailActivity.this,
+                        "Failed to request item",
+                        Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     /**
@@ -333,44 +332,39 @@ public class ItemDetailActivity extends AppCompatActivity {
     private void completeTransaction() {
         if (currentItem == null || currentUid == null) return;
 
-        DatabaseReference itemRef = itemsRef.child(currentItem.getKey());
-
         boolean isSeller = currentUid.equals(currentItem.getSellerId());
-        String flagField = isSeller ? "sellerConfirmed" : "buyerConfirmed";
-
-        itemRef.child(flagField).setValue(true)
-                .addOnSuccessListener(aVoid ->
-                        itemRef.get().addOnSuccessListener(snap -> {
-                            Boolean buyerConf =
-                                    snap.child("buyerConfirmed").getValue(Boolean.class);
-                            Boolean sellerConf =
-                                    snap.child("sellerConfirmed").getValue(Boolean.class);
-
-                            if (buyerConf == null) buyerConf = false;
-                            if (sellerConf == null) sellerConf = false;
-
-                            currentItem.setBuyerConfirmed(buyerConf);
-                            currentItem.setSellerConfirmed(sellerConf);
-
-                            if (buyerConf && sellerConf) {
-                                itemRef.child("status").setValue("completed");
-                                currentItem.setStatus("completed");
-                                Toast.makeText(this,
-                                        "Transaction completed",
-                                        Toast.LENGTH_SHORT).show();
-                            } else {
-                                String other = isSeller ? "buyer" : "seller";
-                                Toast.makeText(this,
-                                        "Your side is confirmed. Waiting for " + other + ".",
-                                        Toast.LENGTH_SHORT).show();
-                            }
-
-                            bindItemToUI();
-                        }))
-                .addOnFailureListener(e ->
-                        Toast.makeText(this,
-                                "Failed to confirm transaction",
-                                Toast.LENGTH_SHORT).show());
+        ItemConfirm.send(currentItem.getKey(), isSeller, new ItemConfirm.Callback() {
+            @Override
+            public void onConfirmed(Item item, boolean completed) {
+                currentItem = item;
+                if ("completed".equals(item.getStatus())) {
+                    Toast.makeText(ItemDetailActivity.this,
+                            "Transaction completed",
+                            Toast.LENGTH_SHORT).show();
+                } else {
+                    String other = isSeller ? "buyer" : "seller";
+                    Toast.makeText(ItemDetailActivity.this,
+                            "Your side is confirmed. Waiting for " + other + ".",
+                            Toast.LENGTH_SHORT).show();
+                }
+                bindItemToUI();
+            }
+
+            @Override
+            public void onUnavailable() {
+                Toast.makeText(ItemDetailActivity.this,
+                        "This transaction is no longer pending",
+                        Toast.LENGTH_SHORT).show();
+                reloadItem();
+            }
+
+            @Override
+            public void onFailed() {
+                Toast.makeText(ItemDetailActivity.this,
+                        "Failed to confirm transaction",
+                        Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     /**
@@ -387,17 +381,22 @@ public class ItemDetailActivity extends AppCompatActivity {
             return;
         }
 
-        itemsRef.child(currentItem.getKey())
-                .removeValue()
-                .addOnSuccessListener(aVoid -> {
-                    Toast.makeText(this,
-                            "Item deleted",
-                            Toast.LENGTH_SHORT).show();
-                    finish();
-                })
-                .addOnFailureListener(e ->
-                        Toast.makeText(this,
-                                "Failed to delete item",
-                                Toast.LENGTH_SHORT).show());
+        // remove the item & lower its category's count in one update
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("items/" + currentItem.getKey(), null);
+        CategoryCounters.addStatusChange(updates, currentItem.getCategoryId(), "available", null);
+
+        DataSources.get().update(updates).whenComplete((unused, error) -> {
+            if (error != null) {
+                Toast.makeText(this,
+                        "Failed to delete item",
+                        Toast.LENGTH_SHORT).show();
+                return;
+            }
+            Toast.makeText(this,
+                    "Item deleted",
+                    Toast.LENGTH_SHORT).show();
+            finish();
+        });
     }
 }
@@ -0,0 +1,22 @@
+package edu.uga.cs.tradeit;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+
+/**
+ * ItemDiffCallback tells the list adapters how to compare two versions of
+ * a list of items. Rows are matched by their database key & only redrawn
+ * when one of the item's stored fields changed.
+ */
+public class ItemDiffCallback extends DiffUtil.ItemCallback<Item> {
+
+    @Override
+    public boolean areItemsTheSame(@NonNull Item oldItem, @NonNull Item newItem) {
+        return oldItem.getKey() != null && oldItem.getKey().equals(newItem.getKey());
+    }
+
+    @Override
+    public boolean areContentsTheSame(@NonNull Item oldItem, @NonNull Item newItem) {
+        return oldItem.sameContentAs(newItem);
+    }
+}
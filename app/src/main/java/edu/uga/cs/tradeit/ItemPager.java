@@ -0,0 +1,265 @@
+package edu.uga.cs.tradeit;
+
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+/**
+ * ItemPager loads the items with a given status one page at a time instead of
+ * downloading the whole catalog. Pages are ordered by one of the composite
+ * index fields on Item ("statusTime" or "statusName") & each new page starts
+ * after the last item of the previous page (keyset pagination).
+ *
+ * The sellers of each page are loaded before the page is handed on, so
+ * its rows can be shown with the sellers' names.
+ *
+ * Pages are read once Migrations.indexes() is done, so items stored before
+ * the index fields existed are not skipped.
+ *
+ * Everything loaded so far, from the start of the order to the last loaded
+ * item, is one range attached to an ItemStore, so edits, new items &
+ * requested items still show up immediately as single-item changes. Each
+ * page widens that range instead of adding a listener of its own.
+ */
+public class ItemPager {
+
+    /**
+     * Listener is told when a page has been read or could not be read.
+     * Changes to the items themselves are reported by the ItemStore.
+     */
+    public interface Listener {
+        // page holds every item after (from, fromKey) & up to (to, toKey) in
+        // the order; a null key takes in every item with that order value
+        void onPageLoaded(List<Item> page, String from, String fromKey, String to, String toKey);
+        void onLoadFailed();
+    }
+
+    public static final int PAGE_SIZE = 20;
+
+    // index fields that can be used to order pages
+    public static final String ORDER_NEWEST = "statusTime";
+    public static final String ORDER_NAME = "statusName";
+
+    // a prefetched first page is only used if it is younger than this
+    private static final long PREFETCH_MAX_AGE_MS = 30_000;
+
+    /**
+     * Prefetch is a first page read that was started before its pager existed.
+     */
+    private static class Prefetch {
+        final CompletableFuture<Map<String, Item>> read;
+        final long startedAt;
+
+        Prefetch(CompletableFuture<Map<String, Item>> read) {
+            this.read = read;
+            this.startedAt = SystemClock.elapsedRealtime();
+        }
+
+        // still running, or finished successfully not too long ago
+        boolean usable() {
+            if (!read.isDone()) return true;
+            return !read.isCompletedExceptionally()
+                    && SystemClock.elapsedRealtime() - startedAt < PREFETCH_MAX_AGE_MS;
+        }
+    }
+
+    // prefetched first pages by status & order field, used up by the first pager
+    private static final Map<String, Prefetch> prefetched = new HashMap<>();
+
+    private final DataSource.Ref<Item> itemsRef = DataSources.get().items();
+
+    private final String status;
+    private final String orderField;
+    private final String rangeStart;
+    private final String rangeEnd;
+    private final ItemStore store;
+    private final Listener listener;
+    // the range of every loaded page, so close() only detaches its own
+    private DataSource.ChildListener<Item> range;
+
+    private String lastValue = null;
+    private String lastKey = null;
+    // the last loaded item, the cursor coverage() compares against
+    private Item lastItem = null;
+    private boolean loading = false;
+    private boolean hasMore = true;
+    private boolean closed = false;
+
+    /**
+     * Creates a pager over all items with the given status.
+     * @param status the item status to page through, e.g. "available"
+     * @param orderField ORDER_NEWEST or ORDER_NAME
+     * @param store the store that every loaded page range is attached to
+     * @param listener told when a page is loaded or fails to load
+     */
+    public ItemPager(String status, String orderField, ItemStore store, Listener listener) {
+        this.status = status;
+        this.orderField = orderField;
+        this.rangeStart = Item.indexPrefix(status);
+        this.rangeEnd = rangeStart + "\uf8ff";
+        this.store = store;
+        this.listener = listener;
+    }
+
+    /**
+     * prefetch starts reading the first page of a pager that will be created
+     * soon, e.g. while the activity showing it is still being inflated. The
+     * first pager with the same status & order field uses this read instead
+     * of starting its own. Must be called on the main thread.
+     */
+    public static void prefetch(String status, String orderField) {
+        String key = prefetchKey(status, orderField);
+        Prefetch existing = prefetched.get(key);
+        if (existing != null && existing.usable()) return;
+
+        String rangeStart = Item.indexPrefix(status);
+        CompletableFuture<Map<String, Item>> read = Migrations.indexes().thenCompose(v ->
+                DataSources.get().items()
+                        .orderByChild(orderField)
+                        .startAt(rangeStart)
+                        .endAt(rangeStart + "\uf8ff")
+                        .limitToFirst(PAGE_SIZE)
+                        .get());
+        prefetched.put(key, new Prefetch(read));
+    }
+
+    public boolean hasMore() { return hasMore; }
+
+    public boolean isLoading() { return loading; }
+
+    /**
+     * coverage returns a check for the items up to & including the last
+     * loaded one in this pager's order. An item after it may have been
+     * loaded by another pager, but the items between are not loaded yet,
+     * so it must not be shown in this order. The check keeps the current
+     * cursor, so it can be used from any thread. It compares items the way
+     * the feed sorts them, so no index value is built per item.
+     */
+    public Predicate<Item> coverage() {
+        if (!hasMore) return item -> true;
+        if (lastItem == null) return item -> false;
+        final Item cursor = lastItem;
+        final Comparator<Item> order = ORDER_NAME.equals(orderField)
+                ? Item.BY_NAME : Item.NEWEST_FIRST;
+        return item -> order.compare(item, cursor) <= 0;
+    }
+
+    /**
+     * loadNextPage fetches the next PAGE_SIZE items after the current cursor.
+     * Calls while a page is already loading or after the last page are ignored.
+     */
+    public void loadNextPage() {
+        if (closed || loading || !hasMore) return;
+        loading = true;
+
+        DataSource.Query<Item> start = startQuery();
+        CompletableFuture<Map<String, Item>> read = null;
+        if (lastValue == null) {
+            read = takePrefetch(prefetchKey(status, orderField));
+        }
+        if (read == null) {
+            // items from older versions only show up once they have their index fields
+            read = Migrations.indexes().thenCompose(v ->
+                    start.endAt(rangeEnd).limitToFirst(PAGE_SIZE).get());
+        }
+        read.whenComplete((result, error) -> {
+            if (error != null) {
+                loading = false;
+                if (!closed) listener.onLoadFailed();
+                return;
+            }
+            if (closed) return;
+
+            List<Item> page = new ArrayList<>(result.values());
+
+            String from = (lastValue == null) ? rangeStart : lastValue;
+            String fromKey = lastKey;
+            // from the start of the order to the end of this page
+            DataSource.Query<Item> loaded = itemsRef.orderByChild(orderField).startAt(rangeStart);
+            if (page.size() < PAGE_SIZE) {
+                // last page: keep the range open so items added at the
+                // end of the ordering still appear
+                hasMore = false;
+                loaded = loaded.endAt(rangeEnd);
+            } else {
+                Item last = page.get(page.size() - 1);
+                lastValue = indexValue(last);
+                lastKey = last.getKey();
+                lastItem = last;
+                loaded = loaded.endAt(lastValue, lastKey);
+            }
+
+            String to = hasMore ? lastValue : rangeEnd;
+            String toKey = hasMore ? lastKey : null;
+            DataSource.Query<Item> loadedRange = loaded;
+            // load the page's sellers together first, so its rows are
+            // shown with their names instead of each row reading its own
+            UserDirectory.get().prefetch(sellerIds(page), UserDirectory.PREFETCH_DEADLINE_MS, () -> {
+                loading = false;
+                if (closed) return;
+                // one listener for every loaded page, handed the items of
+                // the narrower one it replaces
+                range = (range == null)
+                        ? store.attach(loadedRange, page)
+                        : store.replace(range, loadedRange, page);
+                listener.onPageLoaded(page, from, fromKey, to, toKey);
+            });
+        });
+    }
+
+    /**
+     * close stops loading pages & detaches this pager's range from the
+     * store. Items also held by another pager stay in the store. The pager
+     * cannot be used afterwards.
+     */
+    public void close() {
+        closed = true;
+        if (range != null) {
+            store.detach(range);
+            range = null;
+        }
+    }
+
+    private static String prefetchKey(String status, String orderField) {
+        return status + "/" + orderField;
+    }
+
+    /**
+     * takePrefetch removes & returns a usable prefetched read, or null.
+     */
+    private static CompletableFuture<Map<String, Item>> takePrefetch(String key) {
+        Prefetch p = prefetched.remove(key);
+        return (p != null && p.usable()) ? p.read : null;
+    }
+
+    /**
+     * startQuery returns the ordered query beginning right after the cursor,
+     * or at the start of the status range for the first page.
+     */
+    private DataSource.Query<Item> startQuery() {
+        DataSource.Query<Item> ordered = itemsRef.orderByChild(orderField);
+        if (lastValue == null) {
+            return ordered.startAt(rangeStart);
+        }
+        return ordered.startAfter(lastValue, lastKey);
+    }
+
+    private String indexValue(Item item) {
+        return ORDER_NAME.equals(orderField) ? item.getStatusName() : item.getStatusTime();
+    }
+
+    private static List<String> sellerIds(List<Item> page) {
+        List<String> ids = new ArrayList<>(page.size());
+        for (Item item : page) {
+            // items carrying the seller's name need no lookup
+            if (item.getSellerName() == null) ids.add(item.getSellerId());
+        }
+        return ids;
+    }
+}
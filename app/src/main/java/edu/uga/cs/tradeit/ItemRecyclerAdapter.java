@@ -1,5 +1,6 @@
 package edu.uga.cs.tradeit;
 
+import android.view.Choreographer;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -8,37 +9,97 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
 
 /**
  * ItemRecyclerAdapter is used to display the list of all items in the
  * HomeFragment. The adapter reuses row views as the user scrolls to
- * improve performance.
+ * improve performance. New lists are given with submitList() & diffed
+ * against the shown list on a background thread, so only the rows whose
+ * item actually changed are rebound.
  */
-public class ItemRecyclerAdapter extends RecyclerView.Adapter<ItemRecyclerAdapter.ItemHolder> {
+public class ItemRecyclerAdapter extends ListAdapter<Item, ItemRecyclerAdapter.ItemHolder> {
+
+    // redraws the rows when category titles change
+    private final CategoryRepository.Listener categoryListener =
+            snapshot -> notifyItemRangeChanged(0, getItemCount());
+
+    // the list submitOnNextFrame() shows next, null while none is waiting
+    private List<Item> nextRows;
+    private final Choreographer.FrameCallback submitNext = frameTimeNanos -> {
+        List<Item> rows = nextRows;
+        nextRows = null;
+        if (rows != null) super.submitList(new ArrayList<>(rows));
+    };
+
+    public ItemRecyclerAdapter() {
+        super(new ItemDiffCallback());
+        setHasStableIds(true);
+    }
+
+    /**
+     * onAttachedToRecyclerView starts listening to category titles, so rows
+     * are redrawn when a category is added or renamed.
+     */
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        CategoryRepository.get().subscribe(categoryListener);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        CategoryRepository.get().unsubscribe(categoryListener);
+    }
+
+    /**
+     * submitOnNextFrame shows a copy of rows on the next frame. Calls made
+     * before then are merged, so a burst of single item changes is copied
+     * & diffed once, with the newest contents of rows. Must be called on
+     * the main thread.
+     */
+    public void submitOnNextFrame(List<Item> rows) {
+        if (nextRows == null) Choreographer.getInstance().postFrameCallback(submitNext);
+        nextRows = rows;
+    }
 
-    // initialize variables
-    private List<Item> itemsList;
+    // a list submitted directly replaces one still waiting for its frame
+    @Override
+    public void submitList(@Nullable List<Item> list) {
+        cancelNextFrame();
+        super.submitList(list);
+    }
 
-    private DatabaseReference usersRef =
-            FirebaseDatabase.getInstance().getReference("users");
-    private DatabaseReference itemsRef =
-            FirebaseDatabase.getInstance().getReference("items");
-    private DatabaseReference categoriesRef =
-            FirebaseDatabase.getInstance().getReference("categories");
+    @Override
+    public void submitList(@Nullable List<Item> list, @Nullable Runnable commitCallback) {
+        cancelNextFrame();
+        super.submitList(list, commitCallback);
+    }
 
-    private Map<String, String> categoryCache = new HashMap<>();
+    private void cancelNextFrame() {
+        if (nextRows == null) return;
+        Choreographer.getInstance().removeFrameCallback(submitNext);
+        nextRows = null;
+    }
 
-    public ItemRecyclerAdapter(List<Item> itemsList) {
-        this.itemsList = itemsList;
+    /**
+     * getItemId returns an id that stays the same for an item's key, so
+     * RecyclerView can keep a row's view when the item moves.
+     * @param position the row's position in the current list
+     * @return the stable id of the row's item key
+     */
+    @Override
+    public long getItemId(int position) {
+        return StableIds.of(getItem(position).getKey());
     }
 
     /**
@@ -82,7 +143,7 @@ public class ItemRecyclerAdapter extends RecyclerView.Adapter<ItemRecyclerAdapte
      */
     @Override
     public void onBindViewHolder(@NonNull ItemHolder holder, int position) {
-        Item item = itemsList.get(position);
+        Item item = getItem(position);
 
         holder.name.setText(item.getName());
 
@@ -91,30 +152,34 @@ public class ItemRecyclerAdapter extends RecyclerView.Adapter<ItemRecyclerAdapte
                 ? "Price: Free"
                 : "Price: $" + String.format("%.2f", p));
 
-        usersRef.child(item.getSellerId()).child("name")
-                .get()
-                .addOnSuccessListener(snapshot -> {
-                    String seller = snapshot.getValue(String.class);
-                    if (seller == null) seller = "Unknown";
-                    holder.person.setText("Seller: " + seller);
-                });
+        // the view is tagged with the uid so a recycled row ignores late replies
+        String sellerId = item.getSellerId();
+        holder.person.setTag(sellerId);
+        if (item.getSellerName() != null) {
+            // stored with the item, no lookup needed
+            holder.person.setText("Seller: " + item.getSellerName());
+        } else {
+            holder.person.setText("Seller: ");
+            UserDirectory.get().lookup(sellerId, user -> {
+                if (!Objects.equals(holder.person.getTag(), sellerId)) return;
+                holder.person.setText("Seller: " + UserDirectory.displayName(user));
+            });
+        }
 
         String catId = item.getCategoryId();
+        String storedTitle = item.getCategoryTitle();
+        CategoryRepository.Snapshot categories = CategoryRepository.get().current();
         if (catId == null || catId.isEmpty()) {
             holder.category.setText("Category: None");
-        } else if (categoryCache.containsKey(catId)) {
-            holder.category.setText("Category: " + categoryCache.get(catId));
+        } else if (storedTitle != null && !storedTitle.isEmpty()) {
+            // written with the item & kept in sync when the category is renamed
+            holder.category.setText("Category: " + storedTitle);
+        } else if (categories == null) {
+            // filled in when the categories arrive & the rows are redrawn
+            holder.category.setText("Category: ");
         } else {
-            categoriesRef.child(catId).child("title")
-                    .get()
-                    .addOnSuccessListener(snap -> {
-                        String title = snap.getValue(String.class);
-                        if (title == null) title = "Unknown";
-                        categoryCache.put(catId, title);
-                        holder.category.setText("Category: " + title);
-                    })
-                    .addOnFailureListener(e ->
-                            holder.category.setText("Category: Unknown"));
+            String title = categories.titleOf(catId);
+            holder.category.setText("Category: " + (title == null ? "Unknown" : title));
         }
 
         // initialize click listener
@@ -149,29 +214,32 @@ public class ItemRecyclerAdapter extends RecyclerView.Adapter<ItemRecyclerAdapte
                     return;
                 }
 
-                DatabaseReference itemRef = itemsRef.child(item.getKey());
-                itemRef.child("buyerId").setValue(currentUid);
-                itemRef.child("status").setValue("pending");
-                itemRef.child("buyerConfirmed").setValue(false);
-                itemRef.child("sellerConfirmed").setValue(false)
-                        .addOnSuccessListener(aVoid ->
-                                Toast.makeText(holder.itemView.getContext(),
-                                        "Item requested",
-                                        Toast.LENGTH_SHORT).show())
-                        .addOnFailureListener(e ->
-                                Toast.makeText(holder.itemView.getContext(),
-                                        "Failed to request item",
-                                        Toast.LENGTH_SHORT).show());
+                // one atomic write that only succeeds while the item is available
+                holder.actionButton.setEnabled(false);
+                ItemRequest.send(item.getKey(), currentUid, new ItemRequest.Callback() {
+                    @Override
+                    public void onRequested(Item updated) {
+                        Toast.makeText(holder.itemView.getContext(),
+                                "Item requested",
+                                Toast.LENGTH_SHORT).show();
+                    }
+
+                    @Override
+                    public void onUnavailable() {
+                        Toast.makeText(holder.itemView.getContext(),
+                                "Item is no longer available",
+                                Toast.LENGTH_SHORT).show();
+                    }
+
+                    @Override
+                    public void onFailed() {
+                        holder.actionButton.setEnabled(true);
+                        Toast.makeText(holder.itemView.getContext(),
+                                "Failed to request item",
+                                Toast.LENGTH_SHORT).show();
+                    }
+                });
             });
         }
     }
-
-    /**
-     * getItemCount returns the total number of items in the itemsList
-     * @return
-     */
-    @Override
-    public int getItemCount() {
-        return (itemsList == null) ? 0 : itemsList.size();
-    }
 }
@@ -0,0 +1,60 @@
+package edu.uga.cs.tradeit;
+
+/**
+ * ItemRequest marks an item as requested by a buyer in one atomic step.
+ *
+ * The item is changed in a transaction that only goes through while
+ * the item is still "available", so two buyers requesting at the same time
+ * cannot both win or mix their fields. Buyer, status, both confirm flags &
+ * the index fields are all written in that one commit, so other phones see
+ * a single change instead of one per field. The category count can only
+ * follow in a second write; one lost when the app dies in between is
+ * fixed by CounterBackfill's periodic recount.
+ */
+public class ItemRequest {
+
+    /**
+     * Callback is told how the request ended, on the main thread.
+     */
+    public interface Callback {
+        // the request went through; item holds the new values
+        void onRequested(Item item);
+        // someone else requested it first, or it was deleted
+        void onUnavailable();
+        void onFailed();
+    }
+
+    private ItemRequest() { }
+
+    /**
+     * send requests the item with the given key for the buyer.
+     */
+    public static void send(String itemKey, String buyerUid, Callback callback) {
+        DataSources.get().items().transact(itemKey, item -> {
+            if (!"available".equals(item.getStatus())
+                    || buyerUid.equals(item.getSellerId())) {
+                return null;
+            }
+            item.setKey(itemKey);
+            item.setBuyerId(buyerUid);
+            item.setStatus("pending");
+            item.setBuyerConfirmed(false);
+            item.setSellerConfirmed(false);
+            item.updateIndexes();
+            return item;
+        }).whenComplete((item, error) -> {
+            if (error != null) {
+                callback.onFailed();
+                return;
+            }
+            if (item == null || !buyerUid.equals(item.getBuyerId())) {
+                callback.onUnavailable();
+                return;
+            }
+
+            // only the winning request moves the category count
+            CategoryCounters.sendStatusChange(item.getCategoryId(), "available", "pending");
+            callback.onRequested(item);
+        });
+    }
+}
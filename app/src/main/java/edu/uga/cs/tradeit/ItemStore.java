@@ -0,0 +1,221 @@
+package edu.uga.cs.tradeit;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ItemStore keeps a keyed map of items that is updated one child at a time
+ * by DataSource child listeners, instead of clearing & re-reading a whole snapshot
+ * on every change. Only the item that changed is deserialized & passed on
+ * to the listeners, so the cost of an update depends on the size of the
+ * change rather than the size of the catalog.
+ *
+ * Several queries (for example the pages of the home feed) can feed the
+ * same store. Each item remembers every query that currently holds it & is
+ * only removed once none of them do, so an item that moves from one query's
+ * range to another, or is in the ranges of two pagers, is not dropped early.
+ */
+public class ItemStore {
+
+    /**
+     * Listener is told about every single change to the store.
+     */
+    public interface Listener {
+        void onItemAdded(Item item);
+        void onItemChanged(Item item);
+        // the item left a query's results, e.g. it was deleted or its
+        // status changed
+        void onItemRemoved(Item item);
+        // detach() dropped the last query holding the item; it is still
+        // stored remotely
+        default void onItemReleased(Item item) { onItemRemoved(item); }
+        default void onLoadFailed() { }
+    }
+
+    private final Map<String, Item> items = new LinkedHashMap<>();
+    private final Map<String, Set<DataSource.ChildListener<Item>>> owners = new HashMap<>();
+    private final Map<DataSource.ChildListener<Item>, Subscriptions.Subscription> sources =
+            new LinkedHashMap<>();
+    private final List<Listener> listeners = new ArrayList<>();
+
+    public void addListener(Listener listener) { listeners.add(listener); }
+
+    public void removeListener(Listener listener) { listeners.remove(listener); }
+
+    /**
+     * attach starts feeding the store with the children of the given query.
+     * @return a handle that can be passed to detach()
+     */
+    public DataSource.ChildListener<Item> attach(DataSource.Query<Item> query) {
+        return attach(query, Collections.emptyList());
+    }
+
+    /**
+     * attach starts feeding the store with the children of the given query,
+     * first adding items that were already read for it (for example by a
+     * one-time get()) so they show up without waiting for the listener.
+     * @return a handle that can be passed to detach()
+     */
+    public DataSource.ChildListener<Item> attach(DataSource.Query<Item> query,
+                                                 Collection<Item> initialItems) {
+        return start(query, newListener(), initialItems);
+    }
+
+    /**
+     * replace swaps the query feeding the store through source for one
+     * that covers at least the same children, e.g. a pager's range grown by
+     * a page. The items source held are handed over, so none of them is
+     * removed in between, & initialItems are added like for attach().
+     * @return a handle that can be passed to detach()
+     */
+    public DataSource.ChildListener<Item> replace(DataSource.ChildListener<Item> source,
+                                                  DataSource.Query<Item> query,
+                                                  Collection<Item> initialItems) {
+        DataSource.ChildListener<Item> childListener = newListener();
+        Subscriptions.Subscription old = sources.remove(source);
+        if (old != null) old.cancel();
+        for (Set<DataSource.ChildListener<Item>> holders : owners.values()) {
+            if (holders.remove(source)) holders.add(childListener);
+        }
+        return start(query, childListener, initialItems);
+    }
+
+    private DataSource.ChildListener<Item> start(DataSource.Query<Item> query,
+                                                 DataSource.ChildListener<Item> childListener,
+                                                 Collection<Item> initialItems) {
+        Subscriptions.Subscription subscription = Subscriptions.child(query, childListener);
+        sources.put(childListener, subscription);
+        for (Item item : initialItems) {
+            put(item, childListener);
+        }
+        subscription.start();
+        return childListener;
+    }
+
+    private DataSource.ChildListener<Item> newListener() {
+        return new DataSource.ChildListener<Item>() {
+            @Override
+            public void onChildAdded(String key, Item item) {
+                put(item, this);
+            }
+
+            @Override
+            public void onChildChanged(String key, Item item) {
+                put(item, this);
+            }
+
+            @Override
+            public void onChildRemoved(String key, Item item) {
+                remove(key, this);
+            }
+
+            @Override
+            public void onCancelled(Exception error) {
+                for (Listener l : new ArrayList<>(listeners)) {
+                    l.onLoadFailed();
+                }
+            }
+        };
+    }
+
+    /**
+     * detach stops one query from feeding the store. Items that no other
+     * query holds are removed & the listeners are told with
+     * onItemReleased().
+     */
+    public void detach(DataSource.ChildListener<Item> source) {
+        Subscriptions.Subscription subscription = sources.remove(source);
+        if (subscription == null) return;
+        subscription.cancel();
+
+        List<String> orphans = new ArrayList<>();
+        Iterator<Map.Entry<String, Set<DataSource.ChildListener<Item>>>> it =
+                owners.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Set<DataSource.ChildListener<Item>>> e = it.next();
+            if (e.getValue().remove(source) && e.getValue().isEmpty()) {
+                it.remove();
+                orphans.add(e.getKey());
+            }
+        }
+        for (String key : orphans) {
+            Item removed = items.remove(key);
+            if (removed == null) continue;
+            for (Listener l : new ArrayList<>(listeners)) {
+                l.onItemReleased(removed);
+            }
+        }
+    }
+
+    /**
+     * close detaches every query feeding the store & forgets all items.
+     */
+    public void close() {
+        for (Subscriptions.Subscription subscription : sources.values()) {
+            subscription.cancel();
+        }
+        sources.clear();
+        owners.clear();
+        items.clear();
+    }
+
+    @Nullable
+    public Item get(String key) { return items.get(key); }
+
+    public int size() { return items.size(); }
+
+    /**
+     * items returns a read-only view of every item currently in the store.
+     */
+    public Collection<Item> items() {
+        return Collections.unmodifiableCollection(items.values());
+    }
+
+    private void put(Item item, DataSource.ChildListener<Item> source) {
+        String key = item.getKey();
+        Item previous = items.get(key);
+        Set<DataSource.ChildListener<Item>> holders = owners.get(key);
+        if (holders == null) {
+            holders = new HashSet<>();
+            owners.put(key, holders);
+        }
+        holders.add(source);
+        // e.g. the listener re-sending the items attach() was given, or the
+        // same item arriving from a second query; nothing to tell
+        if (previous != null && previous.sameContentAs(item)) return;
+
+        boolean existed = (previous != null);
+        items.put(key, item);
+        for (Listener l : new ArrayList<>(listeners)) {
+            if (existed) {
+                l.onItemChanged(item);
+            } else {
+                l.onItemAdded(item);
+            }
+        }
+    }
+
+    private void remove(String key, DataSource.ChildListener<Item> source) {
+        Set<DataSource.ChildListener<Item>> holders = owners.get(key);
+        if (holders == null || !holders.remove(source)) return;
+        // another query still holds this item, so keep it
+        if (!holders.isEmpty()) return;
+
+        owners.remove(key);
+        Item removed = items.remove(key);
+        if (removed == null) return;
+        for (Listener l : new ArrayList<>(listeners)) {
+            l.onItemRemoved(removed);
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package edu.uga.cs.tradeit;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * LocalMirror is an on-device SQLite copy of /items, /categories & /users.
+ *
+ * Screens first show what the mirror has, so something appears right away
+ * even without a network, & then reconcile as Firebase replies arrive:
+ * - single item changes are written with putItem() / deleteItem()
+ * - a full query result replaces the mirror's rows for that same query
+ *   (replaceSellerItems(), replaceIndexItems(), replaceItemRange()), which
+ *   also drops rows that were deleted remotely while the app was closed
+ *
+ * The items table has indexes on status, sellerId, buyerId & categoryId,
+ * plus the buyerStatus / sellerStatus index fields, so every query the app
+ * sends to Firebase, including the transaction tabs, can be answered here.
+ *
+ * All database work runs in order on one background thread; read results
+ * are handed back on the main thread.
+ */
+public class LocalMirror extends SQLiteOpenHelper {
+
+    /**
+     * Callback receives a read result on the main thread.
+     */
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    private static final String DB_NAME = "tradeit_mirror.db";
+    private static final int DB_VERSION = 2;
+
+    private static final String ITEMS = "items";
+    private static final String CATEGORIES = "categories";
+    private static final String USERS = "users";
+
+    private static final String[] ITEM_COLUMNS = {
+            "key", "sellerId", "name", "categoryId", "creationTime", "price", "buyerId",
+            "status", "description", "buyerConfirmed", "sellerConfirmed", "categoryTitle",
+            "statusTime", "statusName", "buyerStatus", "sellerStatus", "sellerName"
+    };
+
+    private static LocalMirror instance;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private LocalMirror(Context context) {
+        super(context, DB_NAME, null, DB_VERSION);
+    }
+
+    /**
+     * init opens the mirror once per process. Activities call it in
+     * onCreate, since any of them can be the first one after a restart.
+     */
+    public static synchronized void init(Context context) {
+        if (instance == null) {
+            instance = new LocalMirror(context.getApplicationContext());
+        }
+    }
+
+    /**
+     * get returns the mirror, or null if init() has not been called yet.
+     */
+    @Nullable
+    public static synchronized LocalMirror get() {
+        return instance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + ITEMS + " ("
+                + "key TEXT PRIMARY KEY, sellerId TEXT, name TEXT, categoryId TEXT, "
+                + "creationTime INTEGER, price REAL, buyerId TEXT, status TEXT, "
+                + "description TEXT, buyerConfirmed INTEGER, sellerConfirmed INTEGER, "
+                + "categoryTitle TEXT, statusTime TEXT, statusName TEXT, "
+                + "buyerStatus TEXT, sellerStatus TEXT, sellerName TEXT)");
+        db.execSQL("CREATE INDEX idx_items_status ON " + ITEMS + " (status, creationTime)");
+        db.execSQL("CREATE INDEX idx_items_seller ON " + ITEMS + " (sellerId)");
+        db.execSQL("CREATE INDEX idx_items_buyer ON " + ITEMS + " (buyerId)");
+        db.execSQL("CREATE INDEX idx_items_category ON " + ITEMS + " (categoryId)");
+        db.execSQL("CREATE INDEX idx_items_status_time ON " + ITEMS + " (statusTime)");
+        db.execSQL("CREATE INDEX idx_items_status_name ON " + ITEMS + " (statusName)");
+        db.execSQL("CREATE INDEX idx_items_buyer_status ON " + ITEMS + " (buyerStatus)");
+        db.execSQL("CREATE INDEX idx_items_seller_status ON " + ITEMS + " (sellerStatus)");
+
+        db.execSQL("CREATE TABLE " + CATEGORIES + " ("
+                + "key TEXT PRIMARY KEY, creatorId TEXT, title TEXT, dateTime INTEGER)");
+        db.execSQL("CREATE INDEX idx_categories_title ON " + CATEGORIES + " (title)");
+        db.execSQL("CREATE INDEX idx_categories_creator ON " + CATEGORIES + " (creatorId)");
+
+        db.execSQL("CREATE TABLE " + USERS + " ("
+                + "uid TEXT PRIMARY KEY, name TEXT, email TEXT)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // the mirror is only a cache, so it is simply rebuilt
+        db.execSQL("DROP TABLE IF EXISTS " + ITEMS);
+        db.execSQL("DROP TABLE IF EXISTS " + CATEGORIES);
+        db.execSQL("DROP TABLE IF EXISTS " + USERS);
+        onCreate(db);
+    }
+
+    // ---------------------------------------------------------------- items
+
+    public void putItem(Item item) {
+        write(db -> db.insertWithOnConflict(ITEMS, null, itemValues(item),
+                SQLiteDatabase.CONFLICT_REPLACE));
+    }
+
+    public void deleteItem(String key) {
+        write(db -> db.delete(ITEMS, "key = ?", new String[] { key }));
+    }
+
+    /**
+     * replaceSellerItems makes the mirror's items for this seller match
+     * the given full result of the sellerId query.
+     */
+    public void replaceSellerItems(String sellerId, Collection<Item> items) {
+        replaceItems("sellerId = ?", new String[] { sellerId }, items);
+    }
+
+    /**
+     * replaceIndexItems makes the mirror's items whose index field
+     * ("buyerStatus" or "sellerStatus") equals value match the given full
+     * result of the same Firebase query.
+     */
+    public void replaceIndexItems(String field, String value, Collection<Item> items) {
+        replaceItems(checkIndexField(field) + " = ?", new String[] { value }, items);
+    }
+
+    /**
+     * replaceItemRange makes the mirror's items whose sort field
+     * ("statusTime" or "statusName") & key lie after (from, fromKey) & up
+     * to (to, toKey) match the given page, which Firebase returned for that
+     * same range. Like Firebase, equal values are ordered by key, & a null
+     * key takes in every item with that value.
+     */
+    public void replaceItemRange(String field, String from, @Nullable String fromKey,
+                                 String to, @Nullable String toKey, Collection<Item> items) {
+        String column = checkIndexField(field);
+        List<String> args = new ArrayList<>();
+        StringBuilder where = new StringBuilder();
+        if (fromKey == null) {
+            where.append(column).append(" >= ?");
+            args.add(from);
+        } else {
+            where.append("(").append(column).append(" > ? OR (")
+                    .append(column).append(" = ? AND key > ?))");
+            Collections.addAll(args, from, from, fromKey);
+        }
+        if (toKey == null) {
+            where.append(" AND ").append(column).append(" <= ?");
+            args.add(to);
+        } else {
+            where.append(" AND (").append(column).append(" < ? OR (")
+                    .append(column).append(" = ? AND key <= ?))");
+            Collections.addAll(args, to, to, toKey);
+        }
+        replaceItems(where.toString(), args.toArray(new String[0]), items);
+    }
+
+    /**
+     * loadItemsByStatus reads up to limit items with the given status,
+     * newest first or by name, like a first page of the home feed.
+     */
+    public void loadItemsByStatus(String status, boolean byName, int limit,
+                                  Callback<List<Item>> callback) {
+        String order = byName ? "statusName, key" : "statusTime, key";
+        read(() -> queryItems("status = ?", new String[] { status }, order, limit), callback);
+    }
+
+    public void loadItemsBySeller(String sellerId, Callback<List<Item>> callback) {
+        read(() -> queryItems("sellerId = ?", new String[] { sellerId }, "key", 0), callback);
+    }
+
+    /**
+     * loadItemsByIndex reads the items whose index field equals value, the
+     * local version of the transaction tabs' equalTo() queries.
+     */
+    public void loadItemsByIndex(String field, String value, Callback<List<Item>> callback) {
+        String where = checkIndexField(field) + " = ?";
+        read(() -> queryItems(where, new String[] { value }, "key", 0), callback);
+    }
+
+    public void loadItem(String key, Callback<Item> callback) {
+        read(() -> {
+            List<Item> found = queryItems("key = ?", new String[] { key }, null, 1);
+            return found.isEmpty() ? null : found.get(0);
+        }, callback);
+    }
+
+    // ----------------------------------------------------------- categories
+
+    /**
+     * replaceCategories makes the mirror's categories match a full read.
+     */
+    public void replaceCategories(Collection<Category> categories) {
+        write(db -> {
+            db.delete(CATEGORIES, null, null);
+            for (Category c : categories) {
+                ContentValues v = new ContentValues();
+                v.put("key", c.getKey());
+                v.put("creatorId", c.getCreatorId());
+                v.put("title", c.getTitle());
+                v.put("dateTime", c.getDateTime());
+                db.insertWithOnConflict(CATEGORIES, null, v, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+        });
+    }
+
+    /**
+     * loadCategories reads every category ordered by title.
+     */
+    public void loadCategories(Callback<List<Category>> callback) {
+        read(() -> {
+            List<Category> result = new ArrayList<>();
+            try (Cursor c = getReadableDatabase().query(CATEGORIES,
+                    new String[] { "key", "creatorId", "title", "dateTime" },
+                    null, null, null, null, "title")) {
+                while (c.moveToNext()) {
+                    Category category = new Category(c.getString(1), c.getString(2), c.getLong(3));
+                    category.setKey(c.getString(0));
+                    result.add(category);
+                }
+            }
+            return result;
+        }, callback);
+    }
+
+    // ---------------------------------------------------------------- users
+
+    /**
+     * putUser stores a user's profile, or removes it if user is null.
+     */
+    public void putUser(String uid, @Nullable User user) {
+        write(db -> {
+            if (user == null) {
+                db.delete(USERS, "uid = ?", new String[] { uid });
+                return;
+            }
+            ContentValues v = new ContentValues();
+            v.put("uid", uid);
+            v.put("name", user.getName());
+            v.put("email", user.getEmail());
+            db.insertWithOnConflict(USERS, null, v, SQLiteDatabase.CONFLICT_REPLACE);
+        });
+    }
+
+    public void loadUser(String uid, Callback<User> callback) {
+        read(() -> {
+            try (Cursor c = getReadableDatabase().query(USERS, new String[] { "name", "email" },
+                    "uid = ?", new String[] { uid }, null, null, null)) {
+                return c.moveToFirst() ? new User(c.getString(0), c.getString(1)) : null;
+            }
+        }, callback);
+    }
+
+    // -------------------------------------------------------------- helpers
+
+    private interface Write {
+        void run(SQLiteDatabase db);
+    }
+
+    private void write(Write work) {
+        executor.execute(() -> {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                work.run(db);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        });
+    }
+
+    private <T> void read(Supplier<T> work, Callback<T> callback) {
+        executor.execute(() -> {
+            T result = work.get();
+            mainHandler.post(() -> callback.onResult(result));
+        });
+    }
+
+    private void replaceItems(String where, String[] args, Collection<Item> items) {
+        // copy now, the caller's list may change before the write runs
+        List<ContentValues> rows = new ArrayList<>();
+        for (Item item : items) {
+            rows.add(itemValues(item));
+        }
+        write(db -> {
+            db.delete(ITEMS, where, args);
+            for (ContentValues row : rows) {
+                db.insertWithOnConflict(ITEMS, null, row, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+        });
+    }
+
+    private List<Item> queryItems(String where, String[] args, @Nullable String order, int limit) {
+        List<Item> result = new ArrayList<>();
+        try (Cursor c = getReadableDatabase().query(ITEMS, ITEM_COLUMNS, where, args,
+                null, null, order, (limit > 0) ? String.valueOf(limit) : null)) {
+            while (c.moveToNext()) {
+                result.add(readItem(c));
+            }
+        }
+        return result;
+    }
+
+    private static String checkIndexField(String field) {
+        switch (field) {
+            case "statusTime":
+            case "statusName":
+            case "buyerStatus":
+            case "sellerStatus":
+                return field;
+            default:
+                throw new IllegalArgumentException("Not an index field: " + field);
+        }
+    }
+
+    private static ContentValues itemValues(Item item) {
+        ContentValues v = new ContentValues();
+        v.put("key", item.getKey());
+        v.put("sellerId", item.getSellerId());
+        v.put("name", item.getName());
+        v.put("categoryId", item.getCategoryId());
+        v.put("creationTime", item.getCreationTime());
+        v.put("price", item.getPrice());
+        v.put("buyerId", item.getBuyerId());
+        v.put("status", item.getStatus());
+        v.put("description", item.getDescription());
+        v.put("buyerConfirmed", item.isBuyerConfirmed() ? 1 : 0);
+        v.put("sellerConfirmed", item.isSellerConfirmed() ? 1 : 0);
+        v.put("categoryTitle", item.getCategoryTitle());
+        v.put("statusTime", item.getStatusTime());
+        v.put("statusName", item.getStatusName());
+        v.put("buyerStatus", item.getBuyerStatus());
+        v.put("sellerStatus", item.getSellerStatus());
+        v.put("sellerName", item.getSellerName());
+        return v;
+    }
+
+    private static Item readItem(Cursor c) {
+        Item item = new Item();
+        item.setKey(c.getString(0));
+        item.setSellerId(c.getString(1));
+        item.setName(c.getString(2));
+        item.setCategoryId(c.getString(3));
+        item.setCreationTime(c.getLong(4));
+        item.setPrice(c.getDouble(5));
+        item.setBuyerId(c.getString(6));
+        item.setStatus(c.getString(7));
+        item.setDescription(c.getString(8));
+        item.setBuyerConfirmed(c.getInt(9) != 0);
+        item.setSellerConfirmed(c.getInt(10) != 0);
+        item.setCategoryTitle(c.getString(11));
+        item.setStatusTime(c.getString(12));
+        item.setStatusName(c.getString(13));
+        item.setBuyerStatus(c.getString(14));
+        item.setSellerStatus(c.getString(15));
+        item.setSellerName(c.getString(16));
+        return item;
+    }
+}
@@ -109,6 +109,10 @@ public class LoginFragment extends Fragment {
                                 "Login successful",
                                 Toast.LENGTH_SHORT).show();
 
+                        // start loading the home screen's data while it inflates
+                        ItemPager.prefetch("available", ItemPager.ORDER_NEWEST);
+                        CategoryRepository.get().preload();
+
                         // Go to the user/home activity
                         Intent intent = new Intent(getActivity(), UserActivity.class);
                         intent.putExtra("fragmentType", "Home");
@@ -11,9 +11,13 @@ import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
+import com.google.firebase.auth.FirebaseAuth;
+
 /**
  * MainActivity is the initial view that is displayed that
- * prompts the user to create an account or login.
+ * prompts the user to create an account or login. If the user is
+ * still signed in from an earlier session, it goes straight to the
+ * home screen instead.
  */
 public class MainActivity extends AppCompatActivity {
 
@@ -22,7 +26,8 @@ public class MainActivity extends AppCompatActivity {
     Button signUpB;
 
     /**
-     * onCreate connects the UI elements & sets up the button listeners.
+     * onCreate skips to the home screen for a restored session, otherwise
+     * it connects the UI elements & sets up the button listeners.
      * @param savedInstanceState If the activity is being re-initialized after
      *     previously being shut down then this Bundle contains the data it most
      *     recently supplied in {@link #onSaveInstanceState}.  <b><i>Note: Otherwise it is null.</i></b>
@@ -31,6 +36,17 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        LocalMirror.init(this);
+
+        // Firebase keeps the signed in user between launches, so there is
+        // no need to log in again
+        boolean restoredSession = FirebaseAuth.getInstance().getCurrentUser() != null;
+        StartupTrace.launch(restoredSession);
+        if (restoredSession) {
+            openHome();
+            return;
+        }
+
         EdgeToEdge.enable(this);
         setContentView(R.layout.activity_main);
         ViewCompat.setOnApplyWindowInsetsListener(findViewById(R.id.main), (v, insets) -> {
@@ -59,4 +75,20 @@ public class MainActivity extends AppCompatActivity {
         signUpB.setOnClickListener(listener);
 
     }
-}
\ No newline at end of file
+
+    /**
+     * openHome starts loading the first page of items & the categories,
+     * then opens the home screen. Both reads run while UserActivity &
+     * HomeFragment are being inflated, & HomeFragment picks them up.
+     */
+    private void openHome() {
+        ItemPager.prefetch("available", ItemPager.ORDER_NEWEST);
+        CategoryRepository.get().preload();
+
+        Intent intent = new Intent(this, UserActivity.class);
+        intent.putExtra("fragmentType", "Home");
+        intent.putExtra("restoredSession", true);
+        startActivity(intent);
+        finish();
+    }
+}
@@ -0,0 +1,60 @@
+package edu.uga.cs.tradeit;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Migrations brings records written by older versions of the app up to
+ * date. Each migration is started once per app run, when the user's
+ * screens open or by the first screen that needs it, & those screens wait
+ * for it before trusting data it has not fixed yet.
+ *
+ * A migration that fails is not retried until the next run; the screens
+ * then go ahead & show what their queries find.
+ *
+ * All methods must be called on the main thread.
+ */
+public class Migrations {
+
+    // identifies this app run when claiming a migration
+    private static final String RUN_ID = UUID.randomUUID().toString();
+
+    private static CompletableFuture<Void> indexes;
+    private static CompletableFuture<Boolean> counters;
+
+    private Migrations() { }
+
+    /**
+     * start begins every migration that has not been started in this run.
+     */
+    public static void start() {
+        indexes();
+        counters();
+    }
+
+    /**
+     * indexes completes once every item has its composite index fields
+     * (see IndexBackfill), which the feed & transaction queries order by.
+     */
+    public static CompletableFuture<Void> indexes() {
+        if (indexes == null) {
+            indexes = new IndexBackfill(DataSources.get()).run()
+                    .handle((fixed, error) -> null);
+        }
+        return indexes;
+    }
+
+    /**
+     * counters completes with true once the category counters are known to
+     * be complete (see CounterBackfill), or false if they may not be yet,
+     * e.g. another phone is still building them. Counters last counted more
+     * than CounterBackfill.RECOUNT_MS ago are counted again in this run.
+     */
+    public static CompletableFuture<Boolean> counters() {
+        if (counters == null) {
+            counters = new CounterBackfill(DataSources.get(), RUN_ID).run()
+                    .handle((done, error) -> error == null && done);
+        }
+        return counters;
+    }
+}
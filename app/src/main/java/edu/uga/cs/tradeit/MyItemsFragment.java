@@ -14,11 +14,6 @@ import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -41,6 +36,10 @@ public class MyItemsFragment extends Fragment {
     private ItemRecyclerAdapter adapter;
     // list of the user's own items
     private List<Item> myItems = new ArrayList<>();
+    // keyed copy of the user's items, updated one change at a time
+    private final ItemStore itemStore = new ItemStore();
+    // set once Firebase has answered, so a late mirror read is ignored
+    private boolean loadedRemote = false;
 
     // button that opens the categories fragment
     private Button categoriesButton;
@@ -74,7 +73,7 @@ public class MyItemsFragment extends Fragment {
         recyclerView.setLayoutManager(new GridLayoutManager(requireContext(), spanCount));
 
         // set up adapter with the list of items and attach it
-        adapter = new ItemRecyclerAdapter(myItems);
+        adapter = new ItemRecyclerAdapter();
         recyclerView.setAdapter(adapter);
 
         // load all items where the current user is the seller
@@ -93,7 +92,21 @@ public class MyItemsFragment extends Fragment {
     }
 
     /**
-     * Loads the items for the current user from Firebase.
+     * Stops listening to the user's items when the view goes away.
+     */
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        itemStore.removeListener(storeListener);
+        itemStore.close();
+        loadedRemote = false;
+        myItems.clear();
+    }
+
+    /**
+     * Loads the items for the current user. The local mirror's copy is
+     * shown first, then the items are read from Firebase once, the mirror
+     * is brought in line with them, and the store keeps them up to date.
      * Only items that are NOT completed are shown.
      */
     private void loadMyItems() {
@@ -104,42 +117,117 @@ public class MyItemsFragment extends Fragment {
             return;
         }
 
-        DatabaseReference db = FirebaseDatabase.getInstance().getReference("items");
-
-        // find items where sellerId equals this user's id
-        db.orderByChild("sellerId").equalTo(currentUid)
-                .addValueEventListener(new ValueEventListener() {
-                    @Override
-                    public void onDataChange(@NonNull DataSnapshot snapshot) {
-                        myItems.clear();
-
-                        // loop over each item from Firebase
-                        for (DataSnapshot itemSnapshot : snapshot.getChildren()) {
-                            Item item = itemSnapshot.getValue(Item.class);
-                            if (item != null) {
-                                // make sure item has a key set
-                                if (item.getKey() == null || item.getKey().isEmpty()) {
-                                    item.setKey(itemSnapshot.getKey());
-                                }
-
-                                String status = item.getStatus();
-                                // Only add if NOT completed (available or pending)
-                                if (status == null || !status.equals("completed")) {
-                                    myItems.add(item);
-                                }
-                            }
-                        }
-
-                        // tell adapter that the data changed so the UI updates
-                        adapter.notifyDataSetChanged();
-                    }
+        DataSource.Query<Item> query =
+                DataSources.get().items().orderByChild("sellerId").equalTo(currentUid);
+        LocalMirror mirror = LocalMirror.get();
+
+        // show the last known items right away
+        if (mirror != null) {
+            mirror.loadItemsBySeller(currentUid, items -> {
+                if (!isAdded() || loadedRemote) return;
+                myItems.clear();
+                for (Item item : items) {
+                    if (isActive(item)) myItems.add(item);
+                }
+                adapter.submitList(new ArrayList<>(myItems));
+            });
+        }
 
-                    @Override
-                    public void onCancelled(@NonNull DatabaseError error) {
+        // find items where sellerId equals this user's id; the store then
+        // only reports the items that actually change
+        query.get()
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        if (!isAdded()) return;
                         Toast.makeText(requireContext(),
                                 "Failed to load your items",
                                 Toast.LENGTH_SHORT).show();
+                        return;
                     }
+                    // the view may be gone while the fragment is on the back
+                    // stack; attaching then would leave a listener behind
+                    if (!isAdded() || getView() == null) return;
+                    List<Item> items = new ArrayList<>(result.values());
+                    if (mirror != null) mirror.replaceSellerItems(currentUid, items);
+
+                    // the remote items replace the mirror's copy
+                    loadedRemote = true;
+                    myItems.clear();
+                    adapter.submitOnNextFrame(myItems);
+                    itemStore.addListener(storeListener);
+                    itemStore.attach(query, items);
                 });
     }
+
+    /**
+     * Applies each single item change to the list. The list is handed to
+     * the adapter once per frame, which diffs it against the old one, so
+     * only the changed rows update.
+     */
+    private final ItemStore.Listener storeListener = new ItemStore.Listener() {
+        @Override
+        public void onItemAdded(Item item) {
+            mirrorPut(item);
+            // Only add if NOT completed (available or pending)
+            if (isActive(item)) {
+                myItems.add(item);
+                adapter.submitOnNextFrame(myItems);
+            }
+        }
+
+        @Override
+        public void onItemChanged(Item item) {
+            mirrorPut(item);
+            int pos = indexOfKey(item.getKey());
+            if (pos < 0) {
+                onItemAdded(item);
+            } else if (isActive(item)) {
+                myItems.set(pos, item);
+                adapter.submitOnNextFrame(myItems);
+            } else {
+                // item was completed, so it leaves this screen
+                myItems.remove(pos);
+                adapter.submitOnNextFrame(myItems);
+            }
+        }
+
+        @Override
+        public void onItemRemoved(Item item) {
+            LocalMirror mirror = LocalMirror.get();
+            if (mirror != null) mirror.deleteItem(item.getKey());
+            int pos = indexOfKey(item.getKey());
+            if (pos >= 0) {
+                myItems.remove(pos);
+                adapter.submitOnNextFrame(myItems);
+            }
+        }
+
+        @Override
+        public void onLoadFailed() {
+            if (!isAdded()) return;
+            Toast.makeText(requireContext(),
+                    "Failed to load your items",
+                    Toast.LENGTH_SHORT).show();
+        }
+    };
+
+    private static void mirrorPut(Item item) {
+        LocalMirror mirror = LocalMirror.get();
+        if (mirror != null) mirror.putItem(item);
+    }
+
+    // items still on this screen: available or pending, never completed
+    private static final ItemQueryEngine.Query ACTIVE =
+            ItemQueryEngine.newQuery().withoutStatus("completed").build();
+
+    private static boolean isActive(Item item) {
+        return ACTIVE.matches(item);
+    }
+
+    private int indexOfKey(String key) {
+        for (int i = 0; i < myItems.size(); i++) {
+            if (myItems.get(i).getKey().equals(key)) return i;
+        }
+        return -1;
+    }
 }
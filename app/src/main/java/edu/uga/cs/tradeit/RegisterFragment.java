@@ -13,8 +13,6 @@ import androidx.fragment.app.Fragment;
 
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseAuthUserCollisionException;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
 
 public class RegisterFragment extends Fragment {
 
@@ -22,9 +20,9 @@ public class RegisterFragment extends Fragment {
     private EditText nameInput, emailInput, passwInput;
     private Button registerB, loginB;
 
-    // Firebase
+    // Firebase auth & the users node
     private FirebaseAuth auth;
-    private DatabaseReference usersDbRef;
+    private DataSource.Ref<User> usersDbRef;
 
     // Empty default constructor
     public RegisterFragment() { }
@@ -38,7 +36,7 @@ public class RegisterFragment extends Fragment {
 
         // Firebase setup
         auth = FirebaseAuth.getInstance();
-        usersDbRef = FirebaseDatabase.getInstance().getReference("users");
+        usersDbRef = DataSources.get().users();
 
         // Hook up UI
         nameInput   = view.findViewById(R.id.nameEditText);
@@ -118,13 +116,13 @@ public class RegisterFragment extends Fragment {
                     User user = new User(name, email);
 
                     // Save user under /users/uid in Realtime Database
-                    usersDbRef.child(uid).setValue(user)
-                            .addOnCompleteListener(saveTask -> {
+                    usersDbRef.set(uid, user)
+                            .whenComplete((saved, error) -> {
 
                                 registerB.setEnabled(true);
                                 loginB.setEnabled(true);
 
-                                if (saveTask.isSuccessful()) {
+                                if (error == null) {
                                     Toast.makeText(getContext(),
                                             "Account created. Please log in.",
                                             Toast.LENGTH_SHORT).show();
@@ -134,7 +132,7 @@ public class RegisterFragment extends Fragment {
                                 } else {
                                     Toast.makeText(getContext(),
                                             "Failed to save user: " +
-                                                    saveTask.getException().getMessage(),
+                                                    error.getMessage(),
                                             Toast.LENGTH_LONG).show();
                                 }
                             });
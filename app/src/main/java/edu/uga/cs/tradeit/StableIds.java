@@ -0,0 +1,30 @@
+package edu.uga.cs.tradeit;
+
+/**
+ * StableIds turns item keys into RecyclerView stable ids. The id is a
+ * 64 bit hash of the key, so the same key always gets the same id without
+ * remembering every key ever shown. Two keys sharing an id is about as
+ * likely as 2^-64 per pair, far below what a list can hold.
+ */
+public final class StableIds {
+
+    // 64 bit FNV-1a
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private StableIds() { }
+
+    /**
+     * of returns the stable id of an item key.
+     */
+    public static long of(String key) {
+        long hash = OFFSET_BASIS;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            hash = (hash ^ (c & 0xff)) * PRIME;
+            hash = (hash ^ (c >>> 8)) * PRIME;
+        }
+        // RecyclerView.NO_ID is -1
+        return (hash == -1L) ? 0L : hash;
+    }
+}
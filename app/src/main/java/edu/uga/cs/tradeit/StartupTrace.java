@@ -0,0 +1,59 @@
+package edu.uga.cs.tradeit;
+
+import android.app.Activity;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * StartupTrace measures the time from launching the app to the first item
+ * listing on the home screen, so cold & warm starts can be compared.
+ *
+ * - a cold start (first launch in this process) is measured from the moment
+ *   the process was started
+ * - a warm start (process already running) is measured from the moment the
+ *   launcher activity was created
+ *
+ * The result is written to logcat under the "StartupTrace" tag &
+ * reportFullyDrawn() is called, so it also shows up as "Fully drawn" in the
+ * ActivityManager log.
+ */
+public class StartupTrace {
+
+    private static final String TAG = "StartupTrace";
+
+    private static boolean launchedBefore = false;
+    private static long launchStart = -1;
+    private static boolean cold = false;
+    private static String path = "";
+
+    private StartupTrace() { }
+
+    /**
+     * launch marks the start of a launch from the launcher activity.
+     * @param restoredSession true if the login screen was skipped because
+     *     the user was still signed in
+     */
+    public static void launch(boolean restoredSession) {
+        cold = !launchedBefore;
+        launchedBefore = true;
+        launchStart = cold ? Process.getStartElapsedRealtime() : SystemClock.elapsedRealtime();
+        path = restoredSession ? "restored session" : "login screen";
+    }
+
+    /**
+     * firstListing reports the time to the first listing once per launch.
+     * Later calls do nothing until the next launch.
+     */
+    public static void firstListing(Activity activity) {
+        if (launchStart < 0) return;
+        long elapsed = SystemClock.elapsedRealtime() - launchStart;
+        launchStart = -1;
+
+        Log.i(TAG, "time to first listing: " + elapsed + " ms ("
+                + (cold ? "cold" : "warm") + " start, " + path + ")");
+        if (activity != null) {
+            activity.reportFullyDrawn();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package edu.uga.cs.tradeit;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Subscriptions is the one place DataSource listeners are attached
+ * through, so none of them can be forgotten & keep downloading for a
+ * screen that is gone.
+ *
+ * - a Subscription pairs a query with its listener & can be started,
+ *   stopped & cancelled
+ * - untilDestroyed() ties it to a lifecycle (usually a fragment's view
+ *   lifecycle) & detaches it when that lifecycle is destroyed
+ * - whileStarted() only keeps it attached while the lifecycle is started
+ * - activeCounts() tells how many listeners are attached per database path,
+ *   which makes a leak show up as a count that keeps growing
+ *
+ * All methods must be called on the main thread.
+ */
+public class Subscriptions {
+
+    // attached listeners per database path, for diagnostics
+    private static final Map<String, Integer> active = new TreeMap<>();
+
+    private Subscriptions() { }
+
+    /**
+     * value makes a subscription for one child of a DataSource node. It is
+     * not attached until it is started.
+     */
+    public static <T> Subscription value(DataSource.Ref<T> ref, String key,
+                                         DataSource.ValueListener<T> listener) {
+        return new Subscription(ref.path() + "/" + key,
+                new RegistrationSource(() -> ref.addValueListener(key, listener)));
+    }
+
+    /**
+     * value makes a subscription for all children of a DataSource query.
+     * It is not attached until it is started.
+     */
+    public static <T> Subscription value(DataSource.Query<T> query,
+                                         DataSource.ValueListener<Map<String, T>> listener) {
+        return new Subscription(query.path(),
+                new RegistrationSource(() -> query.addValueListener(listener)));
+    }
+
+    /**
+     * child makes a subscription for the single children of a DataSource
+     * query. It is not attached until it is started.
+     */
+    public static <T> Subscription child(DataSource.Query<T> query,
+                                         DataSource.ChildListener<T> listener) {
+        return new Subscription(query.path(),
+                new RegistrationSource(() -> query.addChildListener(listener)));
+    }
+
+    /**
+     * activeCounts returns the number of attached listeners per database
+     * path, e.g. {"/categories": 1, "/items": 3}.
+     */
+    public static Map<String, Integer> activeCounts() {
+        return Collections.unmodifiableMap(new TreeMap<>(active));
+    }
+
+    /**
+     * Source attaches & detaches one listener.
+     */
+    private interface Source {
+        void attach();
+        void detach();
+    }
+
+    /**
+     * RegistrationSource attaches a DataSource listener & keeps its
+     * registration until it is detached.
+     */
+    private static class RegistrationSource implements Source {
+        private final Supplier<DataSource.Registration> register;
+        private DataSource.Registration registration;
+
+        RegistrationSource(Supplier<DataSource.Registration> register) {
+            this.register = register;
+        }
+
+        @Override
+        public void attach() { registration = register.get(); }
+
+        @Override
+        public void detach() {
+            if (registration != null) {
+                registration.remove();
+                registration = null;
+            }
+        }
+    }
+
+    /**
+     * Subscription is one listener on one query.
+     */
+    public static class Subscription implements DefaultLifecycleObserver {
+        private final Source source;
+        private final String path;
+
+        private Lifecycle lifecycle;
+        private boolean stopWithLifecycle = false;
+        private boolean attached = false;
+        private boolean cancelled = false;
+
+        private Subscription(String path, Source source) {
+            this.path = path;
+            this.source = source;
+        }
+
+        public boolean isAttached() { return attached; }
+
+        /**
+         * start attaches the listener, unless it is already attached or the
+         * subscription was cancelled.
+         */
+        public Subscription start() {
+            if (attached || cancelled) return this;
+            attached = true;
+            source.attach();
+            active.merge(path, 1, Integer::sum);
+            return this;
+        }
+
+        /**
+         * stop detaches the listener; it can be started again later. Note
+         * that a restarted child listener gets every child added again.
+         */
+        public void stop() {
+            if (!attached) return;
+            attached = false;
+            source.detach();
+            active.computeIfPresent(path, (p, n) -> (n <= 1) ? null : n - 1);
+        }
+
+        /**
+         * cancel detaches the listener for good & stops following any
+         * lifecycle.
+         */
+        public void cancel() {
+            cancelled = true;
+            stop();
+            if (lifecycle != null) {
+                lifecycle.removeObserver(this);
+                lifecycle = null;
+            }
+        }
+
+        /**
+         * untilDestroyed starts the subscription now & cancels it when the
+         * owner's lifecycle is destroyed. If it already is, nothing is
+         * attached.
+         */
+        public Subscription untilDestroyed(LifecycleOwner owner) {
+            return follow(owner, false);
+        }
+
+        /**
+         * whileStarted keeps the subscription attached only while the
+         * owner's lifecycle is at least started & cancels it when the
+         * lifecycle is destroyed.
+         */
+        public Subscription whileStarted(LifecycleOwner owner) {
+            return follow(owner, true);
+        }
+
+        private Subscription follow(LifecycleOwner owner, boolean onlyWhileStarted) {
+            Lifecycle l = owner.getLifecycle();
+            if (cancelled || l.getCurrentState() == Lifecycle.State.DESTROYED) {
+                cancelled = true;
+                return this;
+            }
+            if (lifecycle != null) lifecycle.removeObserver(this);
+            lifecycle = l;
+            stopWithLifecycle = onlyWhileStarted;
+            if (!onlyWhileStarted) start();
+            // replays the events up to the current state, so a lifecycle that
+            // is already started attaches the listener right away
+            l.addObserver(this);
+            return this;
+        }
+
+        @Override
+        public void onStart(@NonNull LifecycleOwner owner) {
+            if (stopWithLifecycle) start();
+        }
+
+        @Override
+        public void onStop(@NonNull LifecycleOwner owner) {
+            if (stopWithLifecycle) stop();
+        }
+
+        @Override
+        public void onDestroy(@NonNull LifecycleOwner owner) {
+            cancel();
+        }
+    }
+}
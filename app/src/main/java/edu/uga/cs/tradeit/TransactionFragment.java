@@ -14,12 +14,14 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * This fragment shows the user's transactions in three tabs:
@@ -37,6 +39,10 @@ public class TransactionFragment extends Fragment {
     private List<Item> transactionsList = new ArrayList<>();
     private String currentUId;
     private String currTab = "pending";
+    // increases on every load, so replies for an older tab can be ignored
+    private int loadToken = 0;
+    // the last load that Firebase has answered
+    private int remoteToken = 0;
 
     /**
      * Called to create the view for this fragment.
@@ -57,7 +63,7 @@ public class TransactionFragment extends Fragment {
         completedBtn = view.findViewById(R.id.completedButton);
         recyclerView = view.findViewById(R.id.transactionRecyclerView);
         currentUId = FirebaseAuth.getInstance().getUid();
-        adapter = new TransactionRecyclerAdapter(transactionsList, currentUId, currTab);
+        adapter = new TransactionRecyclerAdapter(currentUId, currTab);
 
         recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
         recyclerView.setAdapter(adapter);
@@ -102,27 +108,17 @@ public class TransactionFragment extends Fragment {
 
     /**
      * Loads "pending" transactions where the current user is the buyer.
-     * These are items with status = pending and buyerId = current user.
+     * These are items with status = pending and buyerId = current user,
+     * found with one indexed query on the item's buyerStatus field.
      */
     private void loadPending() {
         if (currentUId == null) return;
-        // remove existing list
-        transactionsList.clear();
-
-        DatabaseReference itemsDbRef = FirebaseDatabase.getInstance().getReference("items");
-        itemsDbRef
-                .get()
-                .addOnSuccessListener(snapshot -> {
-                    for (DataSnapshot s : snapshot.getChildren()) {
-                        Item item = s.getValue(Item.class);
-                        if (item != null && "pending".equals(item.getStatus()) && item.getBuyerId().equals(currentUId)) {
-                            transactionsList.add(item);
-                        }
-                    }
-                    adapter.notifyDataSetChanged();
-                })
-                .addOnFailureListener(e -> Toast.makeText(getContext(),
-                        "Failed to load pending transactions", Toast.LENGTH_SHORT).show());
+
+        loadTransactions(
+                Collections.singletonList(
+                        new IndexQuery("buyerStatus", Item.userIndex(currentUId, "pending"))),
+                ItemQueryEngine.newQuery().withStatus("pending").boughtBy(currentUId).build(),
+                "Failed to load pending transactions");
     }
 
     /**
@@ -132,47 +128,144 @@ public class TransactionFragment extends Fragment {
      */
     private void loadConfirmSale() {
         if (currentUId == null) return;
-        // remove existing list
-        transactionsList.clear();
-
-        DatabaseReference itemsDbRef = FirebaseDatabase.getInstance().getReference("items");
-        itemsDbRef
-                .get()
-                .addOnSuccessListener(snapshot -> {
-                    for (DataSnapshot s : snapshot.getChildren()) {
-                        Item item = s.getValue(Item.class);
-                        if (item != null && "pending".equals(item.getStatus()) && item.getSellerId().equals(currentUId)) {
-                            transactionsList.add(item);
-                        }
-                    }
-                    adapter.notifyDataSetChanged();
-                })
-                .addOnFailureListener(e -> Toast.makeText(getContext(),
-                        "Failed to load transactions to confirm sale", Toast.LENGTH_SHORT).show());
+
+        loadTransactions(
+                Collections.singletonList(
+                        new IndexQuery("sellerStatus", Item.userIndex(currentUId, "pending"))),
+                ItemQueryEngine.newQuery().withStatus("pending").soldBy(currentUId).build(),
+                "Failed to load transactions to confirm sale");
     }
 
     /**
      * Loads completed transactions where the current user was either
-     * the buyer or the seller.
+     * the buyer or the seller. One query is sent for each side and the
+     * results are merged.
      */
     private void loadCompleted() {
         if (currentUId == null) return;
-        // remove existing list
-        transactionsList.clear();
-
-        DatabaseReference itemsDbRef = FirebaseDatabase.getInstance().getReference("items");
-        itemsDbRef
-                .get()
-                .addOnSuccessListener(snapshot -> {
-                    for (DataSnapshot s : snapshot.getChildren()) {
-                        Item item = s.getValue(Item.class);
-                        if (item != null && "completed".equals(item.getStatus()) && (currentUId.equals(item.getBuyerId()) || currentUId.equals(item.getSellerId()))) {
-                            transactionsList.add(item);
+
+        loadTransactions(
+                Arrays.asList(
+                        new IndexQuery("buyerStatus", Item.userIndex(currentUId, "completed")),
+                        new IndexQuery("sellerStatus", Item.userIndex(currentUId, "completed"))),
+                ItemQueryEngine.newQuery().withStatus("completed").involvingUser(currentUId).build(),
+                "Failed to load completed transactions");
+    }
+
+    /**
+     * IndexQuery is a query for the items whose composite index field
+     * equals the given value. Firebase answers it from the server-side
+     * index, so only the user's own transactions are downloaded, and the
+     * local mirror can answer the same query from its own index.
+     */
+    private static class IndexQuery {
+        final String field;
+        final String value;
+
+        IndexQuery(String field, String value) {
+            this.field = field;
+            this.value = value;
+        }
+
+        DataSource.Query<Item> query() {
+            return DataSources.get().items()
+                    .orderByChild(field)
+                    .equalTo(value);
+        }
+    }
+
+    /**
+     * Runs the given queries, merges their items by key and shows them.
+     * The local mirror's answer is shown first and replaced when Firebase
+     * replies; the reply also updates the mirror for the next time.
+     * If the user switched tabs before a reply came back, the reply is
+     * ignored so an old tab's items are never shown on the new tab.
+     * @param filter checked again on the merged items, so a stale mirror
+     *               row whose status has changed is not shown on this tab
+     */
+    private void loadTransactions(List<IndexQuery> queries, ItemQueryEngine.Query filter,
+                                  String failureMessage) {
+        int token = ++loadToken;
+        LocalMirror mirror = LocalMirror.get();
+        if (mirror != null) {
+            showFromMirror(mirror, queries, filter, token);
+        }
+
+        // items from older versions only match once they have their index fields
+        List<CompletableFuture<Map<String, Item>>> reads = new ArrayList<>();
+        for (IndexQuery q : queries) {
+            reads.add(Migrations.indexes().thenCompose(v -> q.query().get()));
+        }
+
+        CompletableFuture.allOf(reads.toArray(new CompletableFuture<?>[0]))
+                .whenComplete((done, error) -> {
+                    if (error != null) {
+                        if (token != loadToken || !isAdded()) return;
+                        Toast.makeText(getContext(), failureMessage, Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    if (!isAdded()) return;
+
+                    // sorted by key, which is the order items were created in
+                    Map<String, Item> merged = new TreeMap<>();
+                    for (int i = 0; i < reads.size(); i++) {
+                        List<Item> items = new ArrayList<>(reads.get(i).join().values());
+                        if (mirror != null) {
+                            mirror.replaceIndexItems(queries.get(i).field, queries.get(i).value, items);
+                        }
+                        for (Item item : items) {
+                            merged.put(item.getKey(), item);
                         }
                     }
-                    adapter.notifyDataSetChanged();
-                })
-                .addOnFailureListener(e -> Toast.makeText(getContext(),
-                        "Failed to load completed transactions", Toast.LENGTH_SHORT).show());
+
+                    if (token != loadToken) return;
+                    remoteToken = token;
+                    show(merged, filter, token, true);
+                });
+    }
+
+    /**
+     * showFromMirror answers the queries from the local mirror, unless
+     * Firebase has already answered them.
+     */
+    private void showFromMirror(LocalMirror mirror, List<IndexQuery> queries,
+                                ItemQueryEngine.Query filter, int token) {
+        Map<String, Item> merged = new TreeMap<>();
+        int[] remaining = { queries.size() };
+        for (IndexQuery q : queries) {
+            mirror.loadItemsByIndex(q.field, q.value, items -> {
+                for (Item item : items) {
+                    merged.put(item.getKey(), item);
+                }
+                if (--remaining[0] > 0) return;
+                if (token != loadToken || remoteToken == token || !isAdded()) return;
+                show(merged, filter, token, false);
+            });
+        }
+    }
+
+    /**
+     * Shows the merged items once their buyers' & sellers' names are
+     * loaded (or a short deadline passed), so every row binds with its
+     * names instead of reading them one row at a time. A newer load, or
+     * Firebase's reply for a mirror answer, wins if it finishes first.
+     */
+    private void show(Map<String, Item> merged, ItemQueryEngine.Query filter,
+                      int token, boolean remote) {
+        // still in key order, which is the order items were created in
+        List<Item> matching = filter.run(merged.values());
+        List<String> people = new ArrayList<>();
+        for (Item item : matching) {
+            // a seller name stored on the item needs no lookup
+            if (item.getSellerName() == null) people.add(item.getSellerId());
+            people.add(item.getBuyerId());
+        }
+        UserDirectory.get().prefetch(people, UserDirectory.PREFETCH_DEADLINE_MS, () -> {
+            if (token != loadToken || !isAdded()) return;
+            if (!remote && remoteToken == token) return;
+            transactionsList.clear();
+            transactionsList.addAll(matching);
+            adapter.submitList(new ArrayList<>(transactionsList));
+        });
     }
 }
@@ -8,15 +8,12 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Objects;
 
 /**
  * RecyclerView adapter for the Transactions screen.
@@ -27,12 +24,12 @@ import java.util.Map;
  * - completed: finished transactions where the user was buyer or seller
  *
  * The UI behavior changes slightly based on which tab is active.
+ *
+ * Lists are given with submitList() & diffed on a background thread,
+ * so only rows whose item changed are rebound.
  */
 public class TransactionRecyclerAdapter
-        extends RecyclerView.Adapter<TransactionRecyclerAdapter.TransactionHolder> {
-
-    /** List of items (transactions) to display. */
-    private List<Item> itemsList;
+        extends ListAdapter<Item, TransactionRecyclerAdapter.TransactionHolder> {
 
     /** Which tab is currently active: "pending", "confirm", or "completed". */
     private String currentTab = "pending";
@@ -40,31 +37,49 @@ public class TransactionRecyclerAdapter
     /** ID of the currently logged-in user. */
     private String currentUId = FirebaseAuth.getInstance().getUid();
 
-    /** Firebase reference to the categories node, used to look up category titles. */
-    private DatabaseReference categoriesRef =
-            FirebaseDatabase.getInstance().getReference("categories");
-
-    /**
-     * Cache from categoryId -> category title, so we do not fetch the same
-     * category over and over from Firebase.
-     */
-    private Map<String, String> categoryCache = new HashMap<>();
+    /** Redraws the rows when category titles change. */
+    private final CategoryRepository.Listener categoryListener =
+            snapshot -> notifyItemRangeChanged(0, getItemCount());
 
     /**
      * Creates a new adapter.
      *
-     * @param itemsList list of Item objects that represent transactions
      * @param currentUId ID of the current user
      * @param tab which tab is active at the moment: "pending", "confirm", or "completed"
      */
-    public TransactionRecyclerAdapter(List<Item> itemsList,
-                                      String currentUId,
+    public TransactionRecyclerAdapter(String currentUId,
                                       String tab) {
-        this.itemsList = itemsList;
+        super(new ItemDiffCallback());
+        setHasStableIds(true);
         this.currentUId = currentUId;
         this.currentTab = tab;
     }
 
+    /**
+     * onAttachedToRecyclerView starts listening to category titles, so rows
+     * are redrawn when a category is added or renamed.
+     */
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        CategoryRepository.get().subscribe(categoryListener);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        CategoryRepository.get().unsubscribe(categoryListener);
+    }
+
+    /**
+     * Returns an id that stays the same for an item's key, so a row keeps
+     * its view when the list is updated.
+     */
+    @Override
+    public long getItemId(int position) {
+        return StableIds.of(getItem(position).getKey());
+    }
+
     /**
      * Called when the fragment switches tabs.
      * We just update the current tab name and tell the RecyclerView to redraw.
@@ -96,6 +111,41 @@ public class TransactionRecyclerAdapter
         }
     }
 
+    /**
+     * Shows the name of a buyer or seller in the row. Names come from the
+     * shared UserDirectory, so a user is only read from Firebase once.
+     * The view is tagged with the uid so a recycled row ignores late replies.
+     *
+     * @param holder the row to fill in
+     * @param label "Seller: " or "Buyer: "
+     * @param uid ID of the user to show
+     */
+    private void bindPerson(TransactionHolder holder, String label, String uid) {
+        bindPerson(holder, label, uid, null);
+    }
+
+    /**
+     * Shows the seller of the item, using the name stored on the item when
+     * there is one so no lookup is needed.
+     */
+    private void bindSeller(TransactionHolder holder, Item item) {
+        bindPerson(holder, "Seller: ", item.getSellerId(), item.getSellerName());
+    }
+
+    private void bindPerson(TransactionHolder holder, String label, String uid,
+                            String storedName) {
+        holder.person.setTag(uid);
+        if (storedName != null) {
+            holder.person.setText(label + storedName);
+            return;
+        }
+        holder.person.setText(label);
+        UserDirectory.get().lookup(uid, user -> {
+            if (!Objects.equals(holder.person.getTag(), uid)) return;
+            holder.person.setText(label + UserDirectory.displayName(user));
+        });
+    }
+
     /**
      * Creates a new row/card view when needed.
      */
@@ -113,7 +163,7 @@ public class TransactionRecyclerAdapter
      */
     @Override
     public void onBindViewHolder(@NonNull TransactionHolder holder, int position) {
-        Item item = itemsList.get(position);
+        Item item = getItem(position);
 
         // Item name
         holder.name.setText(item.getName());
@@ -126,35 +176,25 @@ public class TransactionRecyclerAdapter
             holder.price.setText("Price: $" + String.format("%.2f", p));
         }
 
-        // Category display: prefer stored categoryTitle (saved when completed),
-        // otherwise fall back to live category node (if it still exists).
+        // Category display: prefer stored categoryTitle (written with the item
+        // & kept when completed), otherwise fall back to the live category.
         String storedTitle = item.getCategoryTitle();
         String catId = item.getCategoryId();
+        CategoryRepository.Snapshot categories = CategoryRepository.get().current();
 
         if (storedTitle != null && !storedTitle.isEmpty()) {
             // Completed items keep this even if category is deleted
             holder.category.setText("Category: " + storedTitle);
         } else if (catId == null || catId.isEmpty()) {
             holder.category.setText("Category: None");
-        } else if (categoryCache.containsKey(catId)) {
-            holder.category.setText("Category: " + categoryCache.get(catId));
+        } else if (categories == null) {
+            // filled in when the categories arrive & the rows are redrawn
+            holder.category.setText("Category: ");
         } else {
-            categoriesRef.child(catId).child("title")
-                    .get()
-                    .addOnSuccessListener(snap -> {
-                        String title = snap.getValue(String.class);
-                        if (title == null) title = "Unknown";
-                        categoryCache.put(catId, title);
-                        holder.category.setText("Category: " + title);
-                    })
-                    .addOnFailureListener(e ->
-                            holder.category.setText("Category: Unknown"));
+            String title = categories.titleOf(catId);
+            holder.category.setText("Category: " + (title == null ? "Unknown" : title));
         }
 
-        // Reference to users node, used to show buyer/seller names
-        DatabaseReference usersDbRef =
-                FirebaseDatabase.getInstance().getReference("users");
-
         // By default, hide and disable the action button.
         holder.actionButton.setVisibility(View.GONE);
         holder.actionButton.setEnabled(false);
@@ -164,25 +204,13 @@ public class TransactionRecyclerAdapter
         switch (currentTab) {
             case "pending":
                 // User is the buyer; show the seller's name.
-                usersDbRef.child(item.getSellerId()).child("name")
-                        .get()
-                        .addOnSuccessListener(snapshot -> {
-                            String seller = snapshot.getValue(String.class);
-                            if (seller == null) seller = "Unknown";
-                            holder.person.setText("Seller: " + seller);
-                        });
+                bindSeller(holder, item);
                 // Action is handled via detail screen, so no button here.
                 break;
 
             case "confirm":
                 // User is the seller; show the buyer's name.
-                usersDbRef.child(item.getBuyerId()).child("name")
-                        .get()
-                        .addOnSuccessListener(snapshot -> {
-                            String buyer = snapshot.getValue(String.class);
-                            if (buyer == null) buyer = "Unknown";
-                            holder.person.setText("Buyer: " + buyer);
-                        });
+                bindPerson(holder, "Buyer: ", item.getBuyerId());
 
                 holder.actionButton.setVisibility(View.VISIBLE);
 
@@ -203,63 +231,40 @@ public class TransactionRecyclerAdapter
                     holder.actionButton.setText("Confirm Sale");
 
                     holder.actionButton.setOnClickListener(v -> {
-                        DatabaseReference itemsDbRef =
-                                FirebaseDatabase.getInstance().getReference("items");
-                        DatabaseReference itemRef = itemsDbRef.child(item.getKey());
-
-                        // Mark sellerConfirmed = true in Firebase.
-                        itemRef.child("sellerConfirmed").setValue(true)
-                                .addOnSuccessListener(aVoid ->
-                                        itemRef.get().addOnSuccessListener(snap -> {
-                                            Boolean bConf =
-                                                    snap.child("buyerConfirmed").getValue(Boolean.class);
-                                            Boolean sConf =
-                                                    snap.child("sellerConfirmed").getValue(Boolean.class);
-
-                                            if (bConf == null) bConf = false;
-                                            if (sConf == null) sConf = false;
-
-                                            item.setBuyerConfirmed(bConf);
-                                            item.setSellerConfirmed(sConf);
-
-                                            // If both sides confirmed, mark status completed
-                                            // and store the category title on the Item itself.
-                                            if (bConf && sConf) {
-                                                String catTitleToSave = item.getCategoryTitle();
-
-                                                // If we don't already have categoryTitle set,
-                                                // try to pull it from the cache for this categoryId.
-                                                if (catTitleToSave == null || catTitleToSave.isEmpty()) {
-                                                    String catIdInner = item.getCategoryId();
-                                                    if (catIdInner != null &&
-                                                            categoryCache.containsKey(catIdInner)) {
-                                                        catTitleToSave = categoryCache.get(catIdInner);
-                                                    }
-                                                }
-
-                                                Map<String, Object> updates = new HashMap<>();
-                                                updates.put("status", "completed");
-                                                if (catTitleToSave != null && !catTitleToSave.isEmpty()) {
-                                                    // Save the categoryTitle so completed items
-                                                    // remember their category even if the category
-                                                    // is later deleted.
-                                                    updates.put("categoryTitle", catTitleToSave);
-                                                }
-                                                itemRef.updateChildren(updates);
-                                            }
-
-                                            // Update button label after confirm.
-                                            holder.actionButton.setEnabled(false);
-                                            if (bConf && sConf) {
-                                                holder.actionButton.setText("Completed");
-                                            } else {
-                                                holder.actionButton.setText("Waiting for Buyer");
-                                            }
-
-                                            Toast.makeText(holder.itemView.getContext(),
-                                                    "Your side confirmed",
-                                                    Toast.LENGTH_SHORT).show();
-                                        }));
+                        holder.actionButton.setEnabled(false);
+                        ItemConfirm.send(item.getKey(), true, new ItemConfirm.Callback() {
+                            @Override
+                            public void onConfirmed(Item stored, boolean completed) {
+                                item.setBuyerConfirmed(stored.isBuyerConfirmed());
+                                item.setSellerConfirmed(stored.isSellerConfirmed());
+
+                                // Update button label after confirm.
+                                if ("completed".equals(stored.getStatus())) {
+                                    holder.actionButton.setText("Completed");
+                                } else {
+                                    holder.actionButton.setText("Waiting for Buyer");
+                                }
+
+                                Toast.makeText(holder.itemView.getContext(),
+                                        "Your side confirmed",
+                                        Toast.LENGTH_SHORT).show();
+                            }
+
+                            @Override
+                            public void onUnavailable() {
+                                Toast.makeText(holder.itemView.getContext(),
+                                        "This transaction is no longer pending",
+                                        Toast.LENGTH_SHORT).show();
+                            }
+
+                            @Override
+                            public void onFailed() {
+                                holder.actionButton.setEnabled(true);
+                                Toast.makeText(holder.itemView.getContext(),
+                                        "Failed to confirm sale",
+                                        Toast.LENGTH_SHORT).show();
+                            }
+                        });
                     });
                 }
                 break;
@@ -268,22 +273,10 @@ public class TransactionRecyclerAdapter
                 // Show the *other* party in the transaction.
                 if (currentUId.equals(item.getBuyerId())) {
                     // You were the buyer -> show seller.
-                    usersDbRef.child(item.getSellerId()).child("name")
-                            .get()
-                            .addOnSuccessListener(snapshot -> {
-                                String seller = snapshot.getValue(String.class);
-                                if (seller == null) seller = "Unknown";
-                                holder.person.setText("Seller: " + seller);
-                            });
+                    bindSeller(holder, item);
                 } else {
                     // You were the seller -> show buyer.
-                    usersDbRef.child(item.getBuyerId()).child("name")
-                            .get()
-                            .addOnSuccessListener(snapshot -> {
-                                String buyer = snapshot.getValue(String.class);
-                                if (buyer == null) buyer = "Unknown";
-                                holder.person.setText("Buyer: " + buyer);
-                            });
+                    bindPerson(holder, "Buyer: ", item.getBuyerId());
                 }
                 break;
         }
@@ -309,12 +302,4 @@ public class TransactionRecyclerAdapter
             });
         }
     }
-
-    /**
-     * Returns the number of items in the current list.
-     */
-    @Override
-    public int getItemCount() {
-        return itemsList.size();
-    }
 }
@@ -1,6 +1,6 @@
 package edu.uga.cs.tradeit;
 
-import android.content.res.Configuration;
+import android.content.Intent;
 import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -11,6 +11,10 @@ import androidx.appcompat.widget.Toolbar;
 import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
 
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseAuthInvalidUserException;
+import com.google.firebase.auth.FirebaseUser;
+
 /**
  * UserActivity hosts all fragments available to a logged in user.
  * After logging in, the home fragment is created allowing the user to view
@@ -32,6 +36,9 @@ public class UserActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_user);
+        LocalMirror.init(this);
+        // fix up data written by older versions before screens query it
+        Migrations.start();
 
         // setup toolbar
         Toolbar toolbar = findViewById(R.id.toolbar);
@@ -67,16 +74,36 @@ public class UserActivity extends AppCompatActivity {
                     .replace(R.id.fragmentContainerView2, fragment)
                     .commit();
         }
+
+        if (savedInstanceState == null && getIntent().getBooleanExtra("restoredSession", false)) {
+            checkRestoredSession();
+        }
     } // onCreate
 
     /**
-     * onConfigurationChanged handles rotation by forcing layout recreation.
-     * This ensures the correct orientation layout (portrait/land) loads immediately.
+     * checkRestoredSession makes sure a session restored from an earlier
+     * launch is still valid, without holding up the home screen. If the
+     * account was deleted or disabled in the meantime, the user is signed
+     * out & sent back to the login screen.
      */
-    @Override
-    public void onConfigurationChanged(@NonNull Configuration newConfig) {
-        super.onConfigurationChanged(newConfig);
-        recreate(); // reloads layout in the new orientation
+    private void checkRestoredSession() {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) {
+            backToLogin();
+            return;
+        }
+        // other failures (e.g. offline) keep the session
+        user.reload().addOnFailureListener(e -> {
+            if (e instanceof FirebaseAuthInvalidUserException && !isFinishing()) {
+                FirebaseAuth.getInstance().signOut();
+                backToLogin();
+            }
+        });
+    }
+
+    private void backToLogin() {
+        startActivity(new Intent(this, MainActivity.class));
+        finish();
     }
 
     /**
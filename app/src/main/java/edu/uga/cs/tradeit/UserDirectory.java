@@ -0,0 +1,279 @@
+package edu.uga.cs.tradeit;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * UserDirectory is a process-wide cache of user profiles (name & email) so
+ * that list rows do not read the same user from Firebase over & over.
+ *
+ * - at most MAX_ENTRIES users are kept, the least recently used is dropped
+ * - several lookups for the same uid while it is loading share one read
+ * - users that do not exist are cached too, so they are not read again
+ * - each cached user keeps a listener, so a changed name is picked up
+ * - prefetch() loads the users of a whole batch of rows before they are
+ *   shown, a few at a time, so rows bind with their names already known
+ *
+ * All methods must be called on the main thread, which is also where
+ * Firebase delivers its callbacks.
+ */
+public class UserDirectory {
+
+    /**
+     * Callback receives the user, or null if there is no such user.
+     */
+    public interface Callback {
+        void onUserLoaded(@Nullable User user);
+    }
+
+    private static final int MAX_ENTRIES = 200;
+
+    // how many users one prefetch reads at the same time
+    private static final int PREFETCH_PARALLEL = 6;
+    // how long a batch waits for names before it is shown anyway
+    public static final long PREFETCH_DEADLINE_MS = 300;
+
+    private static UserDirectory instance;
+
+    private final DataSource.Ref<User> usersRef = DataSources.get().users();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // access ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> entries =
+            new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    if (size() <= MAX_ENTRIES) return false;
+                    // drop the least recently used loaded user; users that
+                    // lookups are still waiting on are skipped, not kept
+                    // in the way of every later eviction
+                    Iterator<Entry> it = values().iterator();
+                    while (it.hasNext()) {
+                        Entry entry = it.next();
+                        if (!entry.loaded) continue;
+                        entry.detach();
+                        it.remove();
+                        break;
+                    }
+                    // removed here already, if at all
+                    return false;
+                }
+            };
+
+    /**
+     * Entry is one cached user & the listener keeping it up to date.
+     */
+    private class Entry {
+        final String uid;
+        User user;
+        boolean loaded = false;
+        List<Callback> waiting = new ArrayList<>();
+        Subscriptions.Subscription subscription;
+
+        Entry(String uid) { this.uid = uid; }
+
+        void detach() {
+            if (subscription != null) {
+                subscription.cancel();
+                subscription = null;
+            }
+        }
+    }
+
+    private UserDirectory() { }
+
+    public static UserDirectory get() {
+        if (instance == null) {
+            instance = new UserDirectory();
+        }
+        return instance;
+    }
+
+    /**
+     * displayName returns the user's name, or "Unknown" if there is none.
+     */
+    public static String displayName(@Nullable User user) {
+        return (user == null || user.getName() == null) ? "Unknown" : user.getName();
+    }
+
+    /**
+     * displayEmail returns the user's email, or "Unknown" if there is none.
+     */
+    public static String displayEmail(@Nullable User user) {
+        return (user == null || user.getEmail() == null) ? "Unknown" : user.getEmail();
+    }
+
+    /**
+     * lookup gives the user with the given uid to the callback. If the user
+     * is already cached the callback runs right away, otherwise it runs
+     * once the (possibly shared) read finishes.
+     */
+    public void lookup(@Nullable String uid, Callback callback) {
+        if (uid == null || uid.isEmpty()) {
+            callback.onUserLoaded(null);
+            return;
+        }
+
+        Entry entry = entries.get(uid);
+        if (entry != null) {
+            if (entry.loaded) {
+                callback.onUserLoaded(entry.user);
+            } else {
+                // a read for this uid is already running, wait for it
+                entry.waiting.add(callback);
+            }
+            return;
+        }
+
+        entry = new Entry(uid);
+        entry.waiting.add(callback);
+        entries.put(uid, entry);
+        attach(entry);
+        loadFromMirror(entry);
+    }
+
+    /**
+     * prefetch loads every user in uids that is not cached yet, at most
+     * PREFETCH_PARALLEL at a time, then runs onReady once all of them are
+     * loaded or timeoutMs has passed, whichever is first. Users still
+     * loading after the deadline keep loading, so their rows fill in when
+     * they arrive. onReady runs right away if every user is cached.
+     */
+    public void prefetch(Collection<String> uids, long timeoutMs, Runnable onReady) {
+        Deque<String> missing = new ArrayDeque<>();
+        Set<String> seen = new LinkedHashSet<>();
+        for (String uid : uids) {
+            if (uid == null || uid.isEmpty() || !seen.add(uid)) continue;
+            Entry entry = entries.get(uid);
+            if (entry == null || !entry.loaded) missing.add(uid);
+        }
+        if (missing.isEmpty()) {
+            onReady.run();
+            return;
+        }
+        new Prefetch(missing, timeoutMs, onReady).start();
+    }
+
+    /**
+     * Prefetch is one batch of users being loaded by prefetch().
+     */
+    private class Prefetch {
+        final Deque<String> queue;
+        final Runnable onReady;
+        final Runnable deadline;
+        int remaining;
+        boolean done = false;
+
+        Prefetch(Deque<String> queue, long timeoutMs, Runnable onReady) {
+            this.queue = queue;
+            this.onReady = onReady;
+            this.remaining = queue.size();
+            this.deadline = this::ready;
+            mainHandler.postDelayed(deadline, timeoutMs);
+        }
+
+        void start() {
+            for (int i = 0; i < PREFETCH_PARALLEL && !queue.isEmpty(); i++) {
+                next();
+            }
+        }
+
+        // starts the next read; its reply starts the one after it
+        void next() {
+            String uid = queue.poll();
+            if (uid == null) return;
+            lookup(uid, user -> {
+                remaining--;
+                if (remaining == 0) {
+                    ready();
+                } else {
+                    next();
+                }
+            });
+        }
+
+        void ready() {
+            if (done) return;
+            done = true;
+            mainHandler.removeCallbacks(deadline);
+            onReady.run();
+        }
+    }
+
+    /**
+     * peek returns the cached user without starting a read.
+     */
+    @Nullable
+    public User peek(String uid) {
+        Entry entry = (uid == null) ? null : entries.get(uid);
+        return (entry != null && entry.loaded) ? entry.user : null;
+    }
+
+    /**
+     * attach starts listening to one user. The first reply finishes all
+     * waiting lookups & later replies just refresh the cached copy.
+     */
+    private void attach(Entry entry) {
+        DataSource.ValueListener<User> listener = new DataSource.ValueListener<User>() {
+            @Override
+            public void onValue(@Nullable User user) {
+                // a missing user is cached as null so it is not read again
+                entry.user = user;
+                entry.loaded = true;
+                LocalMirror mirror = LocalMirror.get();
+                if (mirror != null) mirror.putUser(entry.uid, entry.user);
+                finish(entry);
+            }
+
+            @Override
+            public void onCancelled(Exception error) {
+                // do not cache failures, the next lookup will try again
+                entry.detach();
+                if (entries.get(entry.uid) == entry) {
+                    entries.remove(entry.uid);
+                }
+                entry.user = null;
+                finish(entry);
+            }
+        };
+        entry.subscription = Subscriptions.value(usersRef, entry.uid, listener).start();
+    }
+
+    /**
+     * loadFromMirror answers the waiting lookups with the user saved in the
+     * local mirror, if Firebase has not answered first. The listener still
+     * refreshes the cached copy when Firebase replies.
+     */
+    private void loadFromMirror(Entry entry) {
+        LocalMirror mirror = LocalMirror.get();
+        if (mirror == null) return;
+        mirror.loadUser(entry.uid, user -> {
+            if (user == null || entry.loaded || entries.get(entry.uid) != entry) return;
+            entry.user = user;
+            entry.loaded = true;
+            finish(entry);
+        });
+    }
+
+    private void finish(Entry entry) {
+        if (entry.waiting.isEmpty()) return;
+        List<Callback> callbacks = entry.waiting;
+        entry.waiting = new ArrayList<>();
+        for (Callback c : callbacks) {
+            c.onUserLoaded(entry.user);
+        }
+    }
+}
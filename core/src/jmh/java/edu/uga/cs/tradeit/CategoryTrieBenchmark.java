@@ -0,0 +1,74 @@
+package edu.uga.cs.tradeit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CategoryTrieBenchmark measures the category dropdown's suggestions for
+ * short & long prefixes, & a suggestion right after a count changed, when
+ * the cached top lists along that path have to be recomputed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CategoryTrieBenchmark {
+
+    private static final int LIMIT = 20;
+
+    @Param({ "1000", "50000" })
+    public int size;
+
+    private List<Category> categories;
+    private CategoryTrie trie;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        categories = SyntheticData.categories(size, 42);
+        trie = new CategoryTrie(50);
+        trie.update(categories);
+        random = new Random(7);
+        for (Category c : categories) {
+            trie.setActiveItems(c.getKey(), random.nextInt(200));
+        }
+    }
+
+    @Benchmark
+    public List<CategoryTrie.Suggestion> suggestEmpty() {
+        return trie.suggest("", LIMIT);
+    }
+
+    @Benchmark
+    public List<CategoryTrie.Suggestion> suggestOneLetter() {
+        return trie.suggest("l", LIMIT);
+    }
+
+    @Benchmark
+    public List<CategoryTrie.Suggestion> suggestWord() {
+        return trie.suggest("lamp", LIMIT);
+    }
+
+    @Benchmark
+    public List<CategoryTrie.Suggestion> suggestLong() {
+        return trie.suggest("lamp 1", LIMIT);
+    }
+
+    // an item was posted or sold, then the user typed one letter
+    @Benchmark
+    public List<CategoryTrie.Suggestion> countChangedThenSuggest() {
+        Category c = categories.get(random.nextInt(categories.size()));
+        trie.setActiveItems(c.getKey(), random.nextInt(200));
+        return trie.suggest("l", LIMIT);
+    }
+}
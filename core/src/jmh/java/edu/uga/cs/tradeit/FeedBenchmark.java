@@ -0,0 +1,159 @@
+package edu.uga.cs.tradeit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FeedBenchmark measures the home feed's hot paths on synthetic data:
+ * filtering by category, by name & by several clauses at once, price
+ * ranges from the index & by a scan, sorting both ways & deduplicating
+ * category titles. Run with ./gradlew :core:jmh;
+ * the gc profiler adds the allocation rate next to each throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FeedBenchmark {
+
+    @Param({ "1000", "10000", "100000", "1000000" })
+    public int size;
+
+    private List<Category> categories;
+    private List<Item> items;
+    private List<Item> newestSorted;
+    private NameIndex names;
+    private PriceIndex prices;
+    private BitSet allowed;
+    private Set<String> allowedKeys;
+    private String categoryQuery;
+    private ItemQueryEngine.Query combined;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // one category per 20 items, like a busy campus marketplace
+        categories = SyntheticData.categories(Math.max(10, size / 20), 42);
+        items = SyntheticData.items(size, categories, 7);
+
+        newestSorted = new ArrayList<>(items);
+        newestSorted.sort(Item.NEWEST_FIRST);
+
+        names = new NameIndex();
+        prices = new PriceIndex();
+        for (Item item : items) {
+            names.put(item.getKey(), item.getName());
+            prices.put(item.getKey(), item.getPrice());
+            // build the name keys up front, as the app does on insert
+            item.nameKey();
+        }
+
+        categoryQuery = FeedFilter.normalize("lamp 1");
+        allowed = FeedFilter.allowedCategories(categories, categoryQuery, null);
+        allowedKeys = new HashSet<>();
+        for (int i = allowed.nextSetBit(0); i >= 0; i = allowed.nextSetBit(i + 1)) {
+            allowedKeys.add(CategoryOrdinals.get().key(i));
+        }
+        for (Item item : items) {
+            // ordinals are looked up when items are read in, as the app does
+            item.categoryOrdinal();
+        }
+
+        // added text first, so it only runs first if cost ordering is broken
+        combined = ItemQueryEngine.newQuery()
+                .nameContains("lamp", names)
+                .inCategories(allowed)
+                .priceBetween(0, 20)
+                .postedSince(1_700_000_000_000L + Integer.MAX_VALUE / 2)
+                .build();
+    }
+
+    @Benchmark
+    public List<Item> filterByCategory() {
+        return FeedFilter.filter(newestSorted, FeedFilter.MODE_CATEGORY, categoryQuery,
+                allowed, names, () -> false);
+    }
+
+    // the bare category check, which should allocate nothing
+    @Benchmark
+    public int countByCategoryBits() {
+        int count = 0;
+        for (Item item : newestSorted) {
+            int ordinal = item.categoryOrdinal();
+            if (ordinal >= 0 && allowed.get(ordinal)) count++;
+        }
+        return count;
+    }
+
+    // the same check hashing each id string, as the feed used to
+    @Benchmark
+    public int countByCategoryKeys() {
+        int count = 0;
+        for (Item item : newestSorted) {
+            if (allowedKeys.contains(item.getCategoryId())) count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public List<Item> filterByName() {
+        return FeedFilter.filter(newestSorted, FeedFilter.MODE_ITEM, "lamp",
+                new BitSet(), names, () -> false);
+    }
+
+    @Benchmark
+    public List<Item> filterCombined() {
+        return combined.run(newestSorted);
+    }
+
+    @Benchmark
+    public List<String> priceRangeFromIndex() {
+        return prices.keysBetween(0, 20, false);
+    }
+
+    @Benchmark
+    public List<Item> priceRangeByScan() {
+        List<Item> result = new ArrayList<>();
+        for (Item item : items) {
+            if (item.getPrice() >= 0 && item.getPrice() <= 20) result.add(item);
+        }
+        result.sort(Item.PRICE_LOW_FIRST);
+        return result;
+    }
+
+    @Benchmark
+    public BitSet allowedCategories() {
+        return FeedFilter.allowedCategories(categories, categoryQuery, null);
+    }
+
+    @Benchmark
+    public List<Item> sortNewest() {
+        List<Item> copy = new ArrayList<>(items);
+        copy.sort(Item.NEWEST_FIRST);
+        return copy;
+    }
+
+    @Benchmark
+    public List<Item> sortByName() {
+        List<Item> copy = new ArrayList<>(items);
+        copy.sort(Item.BY_NAME);
+        return copy;
+    }
+
+    @Benchmark
+    public CategoryTitles dedupeTitles() {
+        return CategoryTitles.build(categories);
+    }
+}
@@ -0,0 +1,78 @@
+package edu.uga.cs.tradeit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ItemTableBenchmark runs the same filter & sort over a List of Items &
+ * over an ItemTable's columns; both hand back the same Items. The heap the
+ * table adds over the items is printed by ./gradlew :core:itemTableMemory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ItemTableBenchmark {
+
+    @Param({ "1000", "10000", "100000", "1000000" })
+    public int size;
+
+    private List<Item> items;
+    private ItemTable table;
+    private BitSet allowed;
+    private ItemQueryEngine.Query objectQuery;
+    private ItemTable.Filter columnFilter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Category> categories = SyntheticData.categories(Math.max(10, size / 20), 42);
+        items = SyntheticData.items(size, categories, 7);
+        table = new ItemTable();
+        for (Item item : items) {
+            table.put(item);
+        }
+
+        allowed = FeedFilter.allowedCategories(categories, "lamp", null);
+        objectQuery = ItemQueryEngine.newQuery()
+                .withStatus("available")
+                .inCategories(allowed)
+                .priceBetween(0, 100)
+                .orderBy(Item.NEWEST_FIRST)
+                .build();
+        columnFilter = new ItemTable.Filter()
+                .withStatus("available")
+                .inCategories(allowed)
+                .priceBetween(0, 100);
+    }
+
+    @Benchmark
+    public List<Item> objectsFilterNewest() {
+        return objectQuery.run(items);
+    }
+
+    @Benchmark
+    public List<Item> columnsFilterNewest() {
+        return table.selectItems(columnFilter, ItemTable.ORDER_NEWEST);
+    }
+
+    @Benchmark
+    public List<Item> columnsSortAllByPrice() {
+        return table.selectItems(new ItemTable.Filter(), ItemTable.ORDER_PRICE_LOW);
+    }
+
+    @Benchmark
+    public List<Item> columnsPriceRange() {
+        return table.selectItems(new ItemTable.Filter().priceBetween(10, 20),
+                ItemTable.ORDER_PRICE_HIGH);
+    }
+}
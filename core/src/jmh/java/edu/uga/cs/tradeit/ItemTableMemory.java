@@ -0,0 +1,90 @@
+package edu.uga.cs.tradeit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * ItemTableMemory measures how much heap the home feed's loaded items take:
+ * the Items themselves, & what an ItemTable over them adds on top. The
+ * table's rows point at the same Items, so the second column is its whole
+ * cost, not a smaller copy of the first. Run with
+ * ./gradlew :core:itemTableMemory.
+ *
+ * Each size is measured by the growth of the used heap after full
+ * collections, so run it with nothing else going on (the Gradle task uses
+ * the serial collector) & treat the numbers as estimates.
+ */
+public class ItemTableMemory {
+
+    private static final int[] SIZES = { 10_000, 100_000, 1_000_000 };
+
+    public static void main(String[] args) {
+        // one untimed round first, so loading classes is not counted
+        measure(SIZES[0], false);
+        System.out.println("items           Items  + ItemTable     added");
+        for (int size : SIZES) {
+            measure(size, true);
+        }
+    }
+
+    private static void measure(int size, boolean print) {
+        List<Category> categories = SyntheticData.categories(Math.max(10, size / 20), 42);
+
+        long base = usedHeap();
+        List<Item> items = fullItems(size, categories);
+        long listBytes = usedHeap() - base;
+
+        ItemTable table = tableOf(items);
+        // the table keeps the Items alive through its rows, so dropping the
+        // list leaves the items plus the table's arrays & key map
+        items = null;
+        long tableBytes = usedHeap() - base - listBytes;
+        // keeps the table reachable until it has been measured
+        if (table.size() != size) throw new IllegalStateException("lost rows");
+
+        if (!print) return;
+        System.out.println(String.format(Locale.US, "%-10d %10.1f MB %10.1f MB %8.0f%%",
+                size, listBytes / 1e6, tableBytes / 1e6,
+                100.0 * tableBytes / listBytes));
+    }
+
+    /**
+     * fullItems makes items with every field the app fills in, including
+     * the stored titles, names & composite index fields.
+     */
+    private static List<Item> fullItems(int size, List<Category> categories) {
+        List<Item> items = SyntheticData.items(size, categories, 7);
+        List<Item> result = new ArrayList<>(items.size());
+        for (Item item : items) {
+            item.setCategoryTitle("category " + item.getCategoryId());
+            item.setSellerName("Seller " + item.getSellerId());
+            item.updateIndexes();
+            item.nameKey();
+            result.add(item);
+        }
+        return result;
+    }
+
+    // built in its own frame, so no hidden iterator keeps the list alive
+    private static ItemTable tableOf(List<Item> items) {
+        ItemTable table = new ItemTable();
+        for (Item item : items) {
+            table.put(item);
+        }
+        return table;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,128 @@
+package edu.uga.cs.tradeit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MarketplaceLoad seeds an InMemoryDataSource with a synthetic marketplace,
+ * keeps the queries of the feed, transaction & category screens listening
+ * & replays a stream of operations against it. Run with
+ *
+ *   ./gradlew :core:marketplaceLoad -Pload="rate=5000 seconds=60"
+ *
+ * Settings are name=value pairs; unset ones keep the defaults below. mix
+ * is the weights of create, edit, request & confirm.
+ */
+public class MarketplaceLoad {
+
+    private static final Map<String, String> DEFAULTS = new HashMap<>();
+    static {
+        DEFAULTS.put("users", "5000");
+        DEFAULTS.put("categories", "300");
+        DEFAULTS.put("items", "100000");
+        DEFAULTS.put("rate", "2000");
+        DEFAULTS.put("seconds", "30");
+        DEFAULTS.put("mix", "20,30,30,20");
+        // how many of the busiest users have their transaction tabs open
+        DEFAULTS.put("watchers", "20");
+        DEFAULTS.put("seed", "42");
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> settings = new HashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0 || !DEFAULTS.containsKey(arg.substring(0, eq))) {
+                throw new IllegalArgumentException("unknown setting " + arg
+                        + ", expected one of " + DEFAULTS.keySet());
+            }
+            settings.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        long seed = Long.parseLong(settings.get("seed"));
+        double rate = Double.parseDouble(settings.get("rate"));
+        int operations = (int) (rate * Double.parseDouble(settings.get("seconds")));
+
+        long t0 = System.nanoTime();
+        MarketplaceSeeder.Marketplace market = new MarketplaceSeeder(seed)
+                .users(Integer.parseInt(settings.get("users")))
+                .categories(Integer.parseInt(settings.get("categories")))
+                .items(Integer.parseInt(settings.get("items")))
+                .generate();
+        InMemoryDataSource source = new InMemoryDataSource();
+        market.writeTo(source).join();
+        System.out.println(String.format(Locale.US,
+                "seeded %d users, %d categories & %d items %s in %.1f s",
+                market.users.size(), market.categories.size(), market.items.size(),
+                market.countByStatus(), (System.nanoTime() - t0) / 1e9));
+
+        AtomicLong events = new AtomicLong();
+        List<DataSource.Registration> screens = openScreens(source, market,
+                Integer.parseInt(settings.get("watchers")), events);
+
+        String[] mix = settings.get("mix").split(",");
+        if (mix.length != 4) throw new IllegalArgumentException("mix needs 4 weights");
+        LoadReplay replay = new LoadReplay(source, market, seed + 1).mix(
+                Integer.parseInt(mix[0].trim()), Integer.parseInt(mix[1].trim()),
+                Integer.parseInt(mix[2].trim()), Integer.parseInt(mix[3].trim()));
+
+        System.out.println(String.format(Locale.US, "replaying %d ops at %.0f ops/s", operations, rate));
+        LoadReplay.Report report = replay.run(rate, operations);
+        System.out.print(report);
+        System.out.println(String.format(Locale.US, "%d listener events on %d screen queries, %d items stored",
+                events.get(), screens.size(), source.size(DataSource.Type.ITEM)));
+
+        for (DataSource.Registration screen : screens) {
+            screen.remove();
+        }
+    }
+
+    /**
+     * openScreens attaches the queries the app keeps open: the first page
+     * of the home feed in both orders, the transaction tabs of the busiest
+     * users, their own categories & the busiest categories' items.
+     */
+    private static List<DataSource.Registration> openScreens(DataSource source,
+            MarketplaceSeeder.Marketplace market, int watchers, AtomicLong events) {
+        DataSource.ChildListener<Item> itemEvents = counting(events);
+        DataSource.ChildListener<Category> categoryEvents = counting(events);
+
+        List<DataSource.Registration> screens = new ArrayList<>();
+        DataSource.Ref<Item> items = source.items();
+        String available = Item.indexPrefix("available");
+        for (String order : new String[] { "statusTime", "statusName" }) {
+            screens.add(items.orderByChild(order).startAt(available).endAt(available + "\uf8ff")
+                    .limitToFirst(20).addChildListener(itemEvents));
+        }
+
+        List<String> uids = market.uids();
+        for (String uid : uids.subList(0, Math.min(watchers, uids.size()))) {
+            for (String status : new String[] { "pending", "completed" }) {
+                screens.add(items.orderByChild("buyerStatus").equalTo(Item.userIndex(uid, status))
+                        .addChildListener(itemEvents));
+                screens.add(items.orderByChild("sellerStatus").equalTo(Item.userIndex(uid, status))
+                        .addChildListener(itemEvents));
+            }
+            screens.add(source.categories().orderByChild("creatorId").equalTo(uid)
+                    .addChildListener(categoryEvents));
+        }
+
+        for (Category category : market.categories.subList(0, Math.min(5, market.categories.size()))) {
+            screens.add(items.orderByChild("categoryId").equalTo(category.getKey())
+                    .addChildListener(itemEvents));
+        }
+        return screens;
+    }
+
+    // a listener that only counts the events it gets
+    private static <T> DataSource.ChildListener<T> counting(AtomicLong events) {
+        return new DataSource.ChildListener<T>() {
+            @Override public void onChildAdded(String key, T value) { events.incrementAndGet(); }
+            @Override public void onChildChanged(String key, T value) { events.incrementAndGet(); }
+            @Override public void onChildRemoved(String key, T value) { events.incrementAndGet(); }
+        };
+    }
+}
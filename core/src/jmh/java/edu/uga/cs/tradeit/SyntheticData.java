@@ -0,0 +1,65 @@
+package edu.uga.cs.tradeit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * SyntheticData makes repeatable fake items & categories for benchmarks.
+ * The same seed always gives the same records.
+ */
+public class SyntheticData {
+
+    private static final String[] WORDS = {
+            "desk", "lamp", "chair", "bike", "textbook", "calculator", "monitor",
+            "jacket", "guitar", "kettle", "backpack", "printer", "sofa", "poster",
+            "headphones", "mirror", "shelf", "rug", "camera", "skateboard"
+    };
+    private static final String[] ADJECTIVES = {
+            "used", "new", "vintage", "small", "large", "blue", "red", "wooden",
+            "portable", "broken", "classic", "electric"
+    };
+
+    private SyntheticData() { }
+
+    /**
+     * categories makes count categories. About one in ten repeats an
+     * earlier title in a different case, so deduplication has work to do.
+     */
+    public static List<Category> categories(int count, long seed) {
+        Random random = new Random(seed);
+        List<Category> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String title;
+            if (i > 0 && random.nextInt(10) == 0) {
+                title = result.get(random.nextInt(i)).getTitle().toUpperCase();
+            } else {
+                title = WORDS[random.nextInt(WORDS.length)] + " " + i;
+            }
+            Category c = new Category("user" + random.nextInt(1000), title, 1_700_000_000_000L + i);
+            c.setKey(String.format("c%08d", i));
+            result.add(c);
+        }
+        return result;
+    }
+
+    /**
+     * items makes count available items spread over the given categories.
+     */
+    public static List<Item> items(int count, List<Category> categories, long seed) {
+        Random random = new Random(seed);
+        List<Item> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " "
+                    + WORDS[random.nextInt(WORDS.length)] + " " + random.nextInt(10_000);
+            String categoryId = categories.get(random.nextInt(categories.size())).getKey();
+            double price = random.nextInt(5) == 0 ? 0.0 : random.nextInt(50_000) / 100.0;
+            Item item = new Item("user" + random.nextInt(5_000), name, categoryId,
+                    1_700_000_000_000L + random.nextInt(Integer.MAX_VALUE),
+                    price, "available", "description " + i);
+            item.setKey(String.format("i%08d", i));
+            result.add(item);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,133 @@
+package edu.uga.cs.tradeit;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * BeanMapper turns a record (Item, Category, User) into the flat map of
+ * fields Firebase would store for it & back, the way Firebase's own mapper
+ * does: every public getX() / isX() is a field & is read back with setX().
+ *
+ * Numbers are stored as Long or Double, like the Realtime Database does,
+ * so a query compares them the same way whatever type they were set as.
+ * Setters run in field name order, so of two names for the same value
+ * ("category" & "categoryId") the longer, canonical one is applied last.
+ */
+final class BeanMapper<T> {
+
+    private final Class<T> type;
+    private final Constructor<T> constructor;
+    private final Map<String, Method> getters = new TreeMap<>();
+    private final Map<String, Method> setters = new TreeMap<>();
+
+    BeanMapper(Class<T> type) {
+        this.type = type;
+        try {
+            this.constructor = type.getConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(type.getName() + " needs a public no-arg constructor", e);
+        }
+        for (Method m : type.getMethods()) {
+            if (Modifier.isStatic(m.getModifiers()) || m.getDeclaringClass() == Object.class) continue;
+            String name = m.getName();
+            if (m.getParameterCount() == 0 && m.getReturnType() != void.class) {
+                if (name.startsWith("get") && name.length() > 3) {
+                    getters.put(fieldName(name, 3), m);
+                } else if (name.startsWith("is") && name.length() > 2
+                        && (m.getReturnType() == boolean.class || m.getReturnType() == Boolean.class)) {
+                    getters.put(fieldName(name, 2), m);
+                }
+            } else if (m.getParameterCount() == 1 && name.startsWith("set") && name.length() > 3) {
+                setters.put(fieldName(name, 3), m);
+            }
+        }
+    }
+
+    /**
+     * toMap returns the fields of a value, leaving out null ones. The map
+     * is not changed afterwards, so it can be shared.
+     */
+    Map<String, Object> toMap(T value) {
+        Map<String, Object> row = new HashMap<>();
+        for (Map.Entry<String, Method> e : getters.entrySet()) {
+            Object field = invoke(e.getValue(), value);
+            if (field != null) row.put(e.getKey(), normalize(field));
+        }
+        return Collections.unmodifiableMap(row);
+    }
+
+    /**
+     * fromMap makes a new value from stored fields. Fields without a
+     * setter are ignored.
+     */
+    T fromMap(Map<String, Object> row) {
+        T value;
+        try {
+            value = constructor.newInstance();
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("cannot create " + type.getName(), e);
+        }
+        for (Map.Entry<String, Method> e : setters.entrySet()) {
+            Object field = row.get(e.getKey());
+            if (field == null) continue;
+            Method setter = e.getValue();
+            invoke(setter, value, convert(field, setter.getParameterTypes()[0], e.getKey()));
+        }
+        return value;
+    }
+
+    /**
+     * normalize turns a value into the form it is stored in: String,
+     * Boolean, Long or Double.
+     */
+    static Object normalize(Object value) {
+        if (value == null || value instanceof String || value instanceof Boolean
+                || value instanceof Long || value instanceof Double) {
+            return value;
+        }
+        if (value instanceof Float) return ((Float) value).doubleValue();
+        if (value instanceof Number) return ((Number) value).longValue();
+        if (value instanceof Character || value instanceof Enum) return value.toString();
+        throw new IllegalArgumentException("cannot store a " + value.getClass().getName());
+    }
+
+    private static Object convert(Object field, Class<?> target, String name) {
+        if (target == String.class) {
+            if (field instanceof String) return field;
+        } else if (target == boolean.class || target == Boolean.class) {
+            if (field instanceof Boolean) return field;
+        } else if (field instanceof Number) {
+            Number n = (Number) field;
+            if (target == long.class || target == Long.class) return n.longValue();
+            if (target == int.class || target == Integer.class) return n.intValue();
+            if (target == double.class || target == Double.class) return n.doubleValue();
+            if (target == float.class || target == Float.class) return n.floatValue();
+        }
+        throw new IllegalArgumentException(String.format(Locale.US,
+                "field %s holds a %s, not a %s", name, field.getClass().getSimpleName(),
+                target.getSimpleName()));
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static String fieldName(String methodName, int prefix) {
+        return Character.toLowerCase(methodName.charAt(prefix)) + methodName.substring(prefix + 1);
+    }
+}
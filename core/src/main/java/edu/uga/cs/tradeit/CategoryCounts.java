@@ -0,0 +1,49 @@
+package edu.uga.cs.tradeit;
+
+/**
+ * CategoryCounts holds the number of items of each status in one category,
+ * as stored under /categoryCounts/{categoryId}.
+ */
+public class CategoryCounts {
+
+    public static final String PATH = "categoryCounts";
+
+    private long available;
+    private long pending;
+    private long completed;
+
+    public CategoryCounts() {
+        // needed for the database
+    }
+
+    public CategoryCounts(long available, long pending, long completed) {
+        this.available = available;
+        this.pending = pending;
+        this.completed = completed;
+    }
+
+    public long getAvailable() { return available; }
+
+    public void setAvailable(long available) { this.available = available; }
+
+    public long getPending() { return pending; }
+
+    public void setPending(long pending) { this.pending = pending; }
+
+    public long getCompleted() { return completed; }
+
+    public void setCompleted(long completed) { this.completed = completed; }
+
+    /**
+     * active is the number of items that are not completed yet.
+     */
+    public long active() { return available + pending; }
+
+    /**
+     * path returns the root path of one counter, e.g.
+     * categoryCounts/{categoryId}/pending.
+     */
+    public static String path(String categoryId, String status) {
+        return PATH + "/" + categoryId + "/" + status;
+    }
+}
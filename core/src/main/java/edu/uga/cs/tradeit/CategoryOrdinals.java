@@ -0,0 +1,59 @@
+package edu.uga.cs.tradeit;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * CategoryOrdinals gives every category key a small, dense int (its
+ * ordinal) the first time it is seen, when categories or items are read in.
+ * A set of categories can then be a BitSet & checking an item's category is
+ * one bit test instead of hashing its id string.
+ *
+ * There is one shared instance, so ordinals mean the same thing in every
+ * index & filter. Ordinals are never reused, so they stay valid for as long
+ * as the app runs.
+ */
+public class CategoryOrdinals {
+
+    public static final int NONE = StringDictionary.NONE;
+
+    private static final CategoryOrdinals INSTANCE = new CategoryOrdinals();
+
+    private final StringDictionary keys = new StringDictionary();
+
+    private CategoryOrdinals() { }
+
+    public static CategoryOrdinals get() {
+        return INSTANCE;
+    }
+
+    /**
+     * ordinal returns the ordinal of a category key, giving it the next one
+     * if it is new, or NONE for null.
+     */
+    public synchronized int ordinal(String categoryKey) {
+        return keys.encode(categoryKey);
+    }
+
+    /**
+     * key returns the category key with the given ordinal.
+     */
+    public synchronized String key(int ordinal) {
+        return keys.decode(ordinal);
+    }
+
+    public synchronized int size() { return keys.size(); }
+
+    /**
+     * fill clears bits & sets the ordinal of each of the given keys.
+     * @return bits, for chaining
+     */
+    public synchronized BitSet fill(BitSet bits, Collection<String> categoryKeys) {
+        bits.clear();
+        for (String key : categoryKeys) {
+            int ordinal = keys.encode(key);
+            if (ordinal != NONE) bits.set(ordinal);
+        }
+        return bits;
+    }
+}
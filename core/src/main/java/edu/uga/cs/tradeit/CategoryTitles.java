@@ -0,0 +1,92 @@
+package edu.uga.cs.tradeit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * CategoryTitles is an immutable view of a list of categories with their
+ * titles deduplicated (ignoring case & surrounding spaces) & an
+ * id -> title map for O(1) lookups. It is built once per change of the
+ * categories instead of every screen deduplicating the list itself.
+ */
+public class CategoryTitles {
+
+    private final List<Category> categories;
+    private final List<String> titles;
+    private final Set<String> lowerTitles;
+    private final Map<String, String> titlesById;
+
+    private CategoryTitles(List<Category> categories, List<String> titles,
+                           Set<String> lowerTitles, Map<String, String> titlesById) {
+        this.categories = Collections.unmodifiableList(categories);
+        this.titles = Collections.unmodifiableList(titles);
+        this.lowerTitles = Collections.unmodifiableSet(lowerTitles);
+        this.titlesById = Collections.unmodifiableMap(titlesById);
+    }
+
+    /**
+     * build deduplicates the given categories, keeping the first category
+     * of each title in the given order.
+     */
+    public static CategoryTitles build(List<Category> all) {
+        List<Category> categories = new ArrayList<>();
+        List<String> titles = new ArrayList<>();
+        Set<String> lowerTitles = new HashSet<>();
+        Map<String, String> titlesById = new HashMap<>();
+
+        CategoryOrdinals ordinals = CategoryOrdinals.get();
+        for (Category c : all) {
+            // numbered as they are read in, so filters can use bit sets
+            ordinals.ordinal(c.getKey());
+            String title = c.getTitle();
+            if (title == null) continue;
+
+            titlesById.put(c.getKey(), title);
+            if (lowerTitles.add(normalize(title))) {
+                categories.add(c);
+                titles.add(title);
+            }
+        }
+        return new CategoryTitles(categories, titles, lowerTitles, titlesById);
+    }
+
+    // categories with a unique title (ignoring case), in the given order
+    public List<Category> categories() { return categories; }
+
+    // the titles of categories(), in the same order
+    public List<String> titles() { return titles; }
+
+    /**
+     * containsTitle checks if a category with this title already exists,
+     * ignoring case & surrounding spaces.
+     */
+    public boolean containsTitle(String title) {
+        return title != null && lowerTitles.contains(normalize(title));
+    }
+
+    /**
+     * titleOf returns the title of any category by id (duplicates
+     * included), or null if there is no such category.
+     */
+    public String titleOf(String categoryId) {
+        return (categoryId == null) ? null : titlesById.get(categoryId);
+    }
+
+    /**
+     * sameTitlesAs checks if both views give every category the same title,
+     * i.e. nothing shown to the user differs.
+     */
+    public boolean sameTitlesAs(CategoryTitles other) {
+        return other != null && titlesById.equals(other.titlesById);
+    }
+
+    private static String normalize(String title) {
+        return title.trim().toLowerCase(Locale.US);
+    }
+}
@@ -0,0 +1,300 @@
+package edu.uga.cs.tradeit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * CategoryTrie answers "which categories start with what was typed" for the
+ * category dropdowns, ranked by how many active items each category has.
+ *
+ * Titles are normalized (trimmed & lowercase) & stored in a prefix trie, one
+ * character per level. Nodes with many categories under them keep their
+ * best suggestions & only recompute them (from their children's) after
+ * something below them changed. Nodes with only a few categories under them
+ * are simply searched, so short & long prefixes are both fast.
+ *
+ * update() & setActiveItems() only touch the categories that changed.
+ * Methods are synchronized, since dropdowns filter on a background thread.
+ */
+public class CategoryTrie {
+
+    // nodes with more categories than this under them keep their own best
+    // suggestions; smaller ones are searched when asked
+    private static final int SEARCH_LIMIT = 64;
+
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    // most active items first, then by title & key so the order is stable
+    private static final Comparator<Suggestion> RANK = (a, b) -> {
+        int c = Long.compare(b.activeItems, a.activeItems);
+        if (c == 0) c = a.normalized.compareTo(b.normalized);
+        return (c != 0) ? c : a.key.compareTo(b.key);
+    };
+
+    /**
+     * Suggestion is one category offered by the dropdown.
+     */
+    public static final class Suggestion {
+        private final String key;
+        private final String title;
+        private final String normalized;
+        private final long activeItems;
+
+        Suggestion(String key, String title, long activeItems) {
+            this.key = key;
+            this.title = title;
+            this.normalized = normalize(title);
+            this.activeItems = activeItems;
+        }
+
+        public String key() { return key; }
+
+        public String title() { return title; }
+
+        public long activeItems() { return activeItems; }
+
+        @Override
+        public String toString() { return title; }
+    }
+
+    private static final class Node {
+        final Node parent;
+        final char label;
+        char[] labels = NO_LABELS;
+        Node[] children = NO_CHILDREN;
+        int childCount = 0;
+        // how many categories are at or below this node
+        int size = 0;
+        // categories whose whole normalized title ends here
+        List<Suggestion> entries;
+        // best suggestions under this node, null until (re)computed
+        List<Suggestion> top;
+
+        Node(Node parent, char label) {
+            this.parent = parent;
+            this.label = label;
+        }
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(labels, 0, childCount, c);
+            return (i >= 0) ? children[i] : null;
+        }
+
+        Node addChild(char c) {
+            int i = Arrays.binarySearch(labels, 0, childCount, c);
+            if (i >= 0) return children[i];
+            i = -(i + 1);
+            if (childCount == labels.length) {
+                int capacity = Math.max(2, childCount * 2);
+                labels = Arrays.copyOf(labels, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(labels, i, labels, i + 1, childCount - i);
+            System.arraycopy(children, i, children, i + 1, childCount - i);
+            Node node = new Node(this, c);
+            labels[i] = c;
+            children[i] = node;
+            childCount++;
+            return node;
+        }
+
+        void removeChild(Node node) {
+            int i = Arrays.binarySearch(labels, 0, childCount, node.label);
+            if (i < 0) return;
+            System.arraycopy(labels, i + 1, labels, i, childCount - i - 1);
+            System.arraycopy(children, i + 1, children, i, childCount - i - 1);
+            childCount--;
+            children[childCount] = null;
+        }
+    }
+
+    private final int maxSuggestions;
+    private final Node root = new Node(null, '\0');
+    // category key -> its suggestion in the trie
+    private final Map<String, Suggestion> byKey = new HashMap<>();
+    // category key -> active items, kept even before the category arrives
+    private final Map<String, Long> activeItems = new HashMap<>();
+
+    /**
+     * @param maxSuggestions the most suggestions any suggest() call asks for
+     */
+    public CategoryTrie(int maxSuggestions) {
+        this.maxSuggestions = maxSuggestions;
+    }
+
+    /**
+     * update makes the trie hold exactly the given categories, adding new
+     * ones, moving renamed ones & removing the ones no longer there.
+     */
+    public synchronized void update(Collection<Category> categories) {
+        Set<String> seen = new HashSet<>();
+        for (Category c : categories) {
+            String key = c.getKey();
+            String title = c.getTitle();
+            if (key == null || title == null) continue;
+            seen.add(key);
+
+            Suggestion old = byKey.get(key);
+            if (old != null && old.title.equals(title)) continue;
+            if (old != null) remove(old);
+            add(new Suggestion(key, title, activeItemsOf(key)));
+        }
+
+        Iterator<Suggestion> it = byKey.values().iterator();
+        while (it.hasNext()) {
+            Suggestion s = it.next();
+            if (!seen.contains(s.key)) {
+                it.remove();
+                detach(s);
+            }
+        }
+    }
+
+    /**
+     * setActiveItems sets how many active items a category has, which moves
+     * it up or down in the suggestions.
+     */
+    public synchronized void setActiveItems(String key, long count) {
+        Long old = activeItems.put(key, count);
+        if (old != null && old == count) return;
+        Suggestion s = byKey.get(key);
+        if (s == null) return;
+        remove(s);
+        add(new Suggestion(s.key, s.title, count));
+    }
+
+    /**
+     * suggest returns up to limit categories whose title starts with prefix
+     * (ignoring case & surrounding spaces), most active first.
+     */
+    public synchronized List<Suggestion> suggest(String prefix, int limit) {
+        int k = Math.min(limit, maxSuggestions);
+        Node node = root;
+        String norm = normalize(prefix);
+        for (int i = 0; i < norm.length() && node != null; i++) {
+            node = node.child(norm.charAt(i));
+        }
+        if (node == null || k <= 0) return new ArrayList<>();
+
+        List<Suggestion> best = bestBelow(node);
+        return new ArrayList<>(best.subList(0, Math.min(k, best.size())));
+    }
+
+    public synchronized int size() { return byKey.size(); }
+
+    public synchronized void clear() {
+        root.labels = NO_LABELS;
+        root.children = NO_CHILDREN;
+        root.childCount = 0;
+        root.size = 0;
+        root.entries = null;
+        root.top = null;
+        byKey.clear();
+        activeItems.clear();
+    }
+
+    private long activeItemsOf(String key) {
+        Long count = activeItems.get(key);
+        return (count == null) ? 0 : count;
+    }
+
+    private void add(Suggestion s) {
+        byKey.put(s.key, s);
+        Node node = root;
+        for (int i = 0; i < s.normalized.length(); i++) {
+            node = node.addChild(s.normalized.charAt(i));
+        }
+        if (node.entries == null) node.entries = new ArrayList<>(1);
+        node.entries.add(s);
+        markChanged(node, 1);
+    }
+
+    private void remove(Suggestion s) {
+        byKey.remove(s.key);
+        detach(s);
+    }
+
+    // takes s out of the nodes, leaving byKey to the caller
+    private void detach(Suggestion s) {
+        Node node = root;
+        for (int i = 0; i < s.normalized.length() && node != null; i++) {
+            node = node.child(s.normalized.charAt(i));
+        }
+        if (node == null || node.entries == null || !node.entries.remove(s)) return;
+        markChanged(node, -1);
+
+        // drop nodes that no longer lead to any category
+        while (node.parent != null && node.childCount == 0
+                && (node.entries == null || node.entries.isEmpty())) {
+            node.parent.removeChild(node);
+            node = node.parent;
+        }
+    }
+
+    // adjusts the sizes of node & every node above it & forgets their
+    // cached suggestions
+    private void markChanged(Node node, int sizeChange) {
+        for (Node n = node; n != null; n = n.parent) {
+            n.size += sizeChange;
+            n.top = null;
+        }
+    }
+
+    /**
+     * bestBelow returns the best suggestions at or below node: cached for a
+     * large node (recomputed from its own entries & its children's best if
+     * something changed), searched for a small one.
+     */
+    private List<Suggestion> bestBelow(Node node) {
+        if (node.size <= SEARCH_LIMIT) return searchBelow(node);
+        if (node.top != null) return node.top;
+
+        List<Suggestion> candidates = new ArrayList<>();
+        if (node.entries != null) candidates.addAll(node.entries);
+        for (int i = 0; i < node.childCount; i++) {
+            candidates.addAll(bestBelow(node.children[i]));
+        }
+        node.top = best(candidates);
+        return node.top;
+    }
+
+    /**
+     * searchBelow returns the best suggestions at or below a small node by
+     * visiting every node under it.
+     */
+    private List<Suggestion> searchBelow(Node node) {
+        List<Suggestion> all = new ArrayList<>();
+        List<Node> stack = new ArrayList<>();
+        stack.add(node);
+        while (!stack.isEmpty()) {
+            Node n = stack.remove(stack.size() - 1);
+            if (n.entries != null) all.addAll(n.entries);
+            for (int i = 0; i < n.childCount; i++) {
+                stack.add(n.children[i]);
+            }
+        }
+        return best(all);
+    }
+
+    private List<Suggestion> best(List<Suggestion> candidates) {
+        candidates.sort(RANK);
+        if (candidates.size() > maxSuggestions) {
+            return new ArrayList<>(candidates.subList(0, maxSuggestions));
+        }
+        return candidates;
+    }
+
+    private static String normalize(String s) {
+        return (s == null) ? "" : s.trim().toLowerCase(Locale.US);
+    }
+}
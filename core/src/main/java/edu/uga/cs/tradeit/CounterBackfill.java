@@ -0,0 +1,153 @@
+package edu.uga.cs.tradeit;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongSupplier;
+
+/**
+ * CounterBackfill builds the per category item counts (CategoryCounts)
+ * from the items themselves, first for items written before the counters
+ * existed & then again every RECOUNT_MS. Until the first count is done a
+ * category's counters may only hold the changes made since, so they must
+ * not be trusted (see CategoryCounters.load()).
+ *
+ * - the phone that creates /migrations/categoryCounts first runs it; a
+ *   claim older than STALE_MS is taken over, e.g. if that app was closed
+ *   midway
+ * - the owner reads the stored counters & all items, counts each category
+ *   & status & sends the differences as increment()s in one update with
+ *   the "done" marker, so increments other phones send meanwhile are kept
+ * - an item written between the two reads (they are sent together, so
+ *   this is about one round trip) can be counted twice or missed
+ * - request & confirm move an item in a transaction & its counts in a
+ *   second write, which is lost if the app dies in between; the recount
+ *   puts such drift right. The counters stay trusted while it runs, & the
+ *   phone that first replaces the old "done" marker with its own does it
+ */
+public class CounterBackfill {
+
+    public static final String NAME = CategoryCounts.PATH;
+
+    static final long STALE_MS = 10 * 60 * 1000;
+
+    // done counters are counted again once the last count is this old
+    static final long RECOUNT_MS = 6 * 60 * 60 * 1000;
+
+    private static final String[] STATUSES = { "available", "pending", "completed" };
+
+    private final DataSource source;
+    // identifies this app run in the claim
+    private final String owner;
+    private final LongSupplier clock;
+
+    public CounterBackfill(DataSource source, String owner) {
+        this(source, owner, System::currentTimeMillis);
+    }
+
+    CounterBackfill(DataSource source, String owner, LongSupplier clock) {
+        this.source = source;
+        this.owner = owner;
+        this.clock = clock;
+    }
+
+    /**
+     * run builds the counters unless they are done, or counts them again
+     * if the last count is older than RECOUNT_MS. Completes with true once
+     * they are complete, or false if another phone is building them for
+     * the first time right now.
+     */
+    public CompletableFuture<Boolean> run() {
+        return source.migrations().get(NAME).thenCompose(state -> {
+            if (state != null && state.done()) {
+                if (clock.getAsLong() - state.getTime() < RECOUNT_MS) {
+                    return CompletableFuture.completedFuture(true);
+                }
+                // a failed recount leaves the last count, which is still complete
+                return takeOver(state, Migration.DONE).thenCompose(claimed -> claimed
+                        ? build().handle((done, error) -> true)
+                        : CompletableFuture.completedFuture(true));
+            }
+            return claim(state).thenCompose(claimed -> claimed
+                    ? build()
+                    : CompletableFuture.completedFuture(false));
+        });
+    }
+
+    private CompletableFuture<Boolean> claim(Migration seen) {
+        if (seen == null) {
+            Migration mine = new Migration(Migration.RUNNING, owner, clock.getAsLong());
+            return source.migrations().create(NAME, mine);
+        }
+        if (clock.getAsLong() - seen.getTime() < STALE_MS) {
+            return CompletableFuture.completedFuture(false);
+        }
+        // the owner went away
+        return takeOver(seen, Migration.RUNNING);
+    }
+
+    /**
+     * takeOver replaces the marker seen with this run's, in the given
+     * state, unless someone else replaced it first. Completes with true if
+     * this run holds the claim.
+     */
+    private CompletableFuture<Boolean> takeOver(Migration seen, String state) {
+        Migration mine = new Migration(state, owner, clock.getAsLong());
+        return source.migrations().transact(NAME, current -> (current.done() == seen.done()
+                        && current.getTime() == seen.getTime()
+                        && Objects.equals(current.getOwner(), seen.getOwner())) ? mine : null)
+                .thenApply(stored -> stored != null && owner.equals(stored.getOwner()));
+    }
+
+    private CompletableFuture<Boolean> build() {
+        CompletableFuture<Map<String, CategoryCounts>> stored = source.counters().get();
+        CompletableFuture<Map<String, Item>> items = source.items().get();
+        return stored.thenCombine(items, this::corrections)
+                .thenCompose(source::update)
+                .thenApply(v -> true);
+    }
+
+    /**
+     * corrections returns the update that brings the stored counters to
+     * the counts of the items & marks the migration done.
+     */
+    Map<String, Object> corrections(Map<String, CategoryCounts> stored, Map<String, Item> items) {
+        Map<String, long[]> counted = new HashMap<>();
+        for (Item item : items.values()) {
+            String categoryId = item.getCategoryId();
+            if (categoryId == null || categoryId.isEmpty()) continue;
+            long[] counts = counted.computeIfAbsent(categoryId, k -> new long[STATUSES.length]);
+            counts[slot(item.getStatus())]++;
+        }
+
+        Map<String, Object> updates = new HashMap<>();
+        Set<String> categoryIds = new HashSet<>(stored.keySet());
+        categoryIds.addAll(counted.keySet());
+        for (String categoryId : categoryIds) {
+            long[] want = counted.getOrDefault(categoryId, new long[STATUSES.length]);
+            CategoryCounts c = stored.get(categoryId);
+            long[] have = (c == null)
+                    ? new long[STATUSES.length]
+                    : new long[] { c.getAvailable(), c.getPending(), c.getCompleted() };
+            for (int i = 0; i < STATUSES.length; i++) {
+                if (want[i] != have[i]) {
+                    updates.put(CategoryCounts.path(categoryId, STATUSES[i]),
+                            DataSource.increment(want[i] - have[i]));
+                }
+            }
+        }
+        updates.put(DataSource.Type.MIGRATION.path() + "/" + NAME,
+                new Migration(Migration.DONE, owner, clock.getAsLong()));
+        return updates;
+    }
+
+    // a missing or unknown status counts as available, like the old check
+    private static int slot(String status) {
+        if ("completed".equals(status)) return 2;
+        if ("pending".equals(status)) return 1;
+        return 0;
+    }
+}
@@ -0,0 +1,268 @@
+package edu.uga.cs.tradeit;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * DataSource is where the app reads & writes its items, categories & users,
+ * so the same code can run against Firebase or against an in-memory engine
+ * (e.g. for load tests & benchmarks on a plain JVM, with no network).
+ *
+ * The shape follows the Realtime Database: each kind of record lives under
+ * one top level node ("items", "categories", "users") keyed by id, & a
+ * query orders those children by one field (orderByChild), optionally cut
+ * to a range (startAt / endAt / equalTo) & a count (limitToFirst / Last).
+ *
+ * - reads & writes return a CompletableFuture, completed on the source's
+ *   callback thread (the main thread for the app's sources)
+ * - listeners are called on that same thread, in the order changes happen,
+ *   & stop once their Registration is removed
+ * - values handed out are fresh copies with their key filled in, so they
+ *   can be changed freely
+ * - update(Map) writes several records atomically, like a multi-path
+ *   updateChildren() on the database root, & increment() adds to a number
+ *   field the way ServerValue.increment() does
+ */
+public interface DataSource {
+
+    Ref<Item> items();
+
+    Ref<Category> categories();
+
+    Ref<User> users();
+
+    /**
+     * counters are the per category item counts kept by CategoryCounters.
+     */
+    Ref<CategoryCounts> counters();
+
+    /**
+     * migrations record which data migrations have run, by name.
+     */
+    Ref<Migration> migrations();
+
+    /**
+     * update writes several paths at once: either all of them change or
+     * none do. A path is a whole record ("items/{key}", set to a record or
+     * null) or one field of it ("items/{key}/{field}"). A path may not be
+     * inside another path of the same update.
+     */
+    CompletableFuture<Void> update(Map<String, Object> updates);
+
+    /**
+     * increment is a field value that adds delta to the stored number (a
+     * missing field counts as 0), applied where the write is committed so
+     * concurrent increments all count.
+     */
+    static Object increment(long delta) {
+        return new Increment(delta);
+    }
+
+    /**
+     * Increment is the value increment() returns.
+     */
+    final class Increment {
+        private final long delta;
+
+        private Increment(long delta) {
+            this.delta = delta;
+        }
+
+        public long delta() { return delta; }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Increment && ((Increment) o).delta == delta;
+        }
+
+        @Override
+        public int hashCode() { return Long.hashCode(delta); }
+
+        @Override
+        public String toString() { return "increment(" + delta + ")"; }
+    }
+
+    /**
+     * Type describes one kind of record: the node it lives under, its class
+     * & how its key is stored on it (if it is).
+     */
+    final class Type<T> {
+        public static final Type<Item> ITEM =
+                new Type<>("items", Item.class, Item::getKey, Item::setKey);
+        public static final Type<Category> CATEGORY =
+                new Type<>("categories", Category.class, Category::getKey, Category::setKey);
+        public static final Type<User> USER = new Type<>("users", User.class, null, null);
+        public static final Type<CategoryCounts> COUNTS =
+                new Type<>(CategoryCounts.PATH, CategoryCounts.class, null, null);
+        public static final Type<Migration> MIGRATION =
+                new Type<>("migrations", Migration.class, null, null);
+
+        private final String path;
+        private final Class<T> type;
+        private final Function<T, String> keyGetter;
+        private final BiConsumer<T, String> keySetter;
+
+        private Type(String path, Class<T> type, Function<T, String> keyGetter,
+                     BiConsumer<T, String> keySetter) {
+            this.path = path;
+            this.type = type;
+            this.keyGetter = keyGetter;
+            this.keySetter = keySetter;
+        }
+
+        public String path() { return path; }
+
+        public Class<T> type() { return type; }
+
+        /**
+         * withKey stores the key on a value read from the source, unless it
+         * already has one, & returns the value.
+         */
+        public T withKey(T value, String key) {
+            if (value == null || keySetter == null) return value;
+            String stored = keyGetter.apply(value);
+            if (stored == null || stored.isEmpty()) keySetter.accept(value, key);
+            return value;
+        }
+    }
+
+    /**
+     * Query is an immutable, ordered view of the children of one node.
+     * Every method returns a new query. Without orderByChild() children are
+     * ordered by key. Values are ordered like the Realtime Database orders
+     * them: missing, false, true, numbers, then strings; ties by key.
+     */
+    interface Query<T> {
+
+        /**
+         * path returns the node the query reads, e.g. "/items".
+         */
+        String path();
+
+        Query<T> orderByChild(String field);
+
+        Query<T> startAt(Object value);
+
+        // from the child with this value & key on, for keyset pagination
+        Query<T> startAt(Object value, String key);
+
+        // from the first child after the one with this value & key
+        Query<T> startAfter(Object value, String key);
+
+        Query<T> endAt(Object value);
+
+        Query<T> endAt(Object value, String key);
+
+        Query<T> equalTo(Object value);
+
+        Query<T> limitToFirst(int limit);
+
+        Query<T> limitToLast(int limit);
+
+        /**
+         * get reads the matching children once, by key in query order.
+         */
+        CompletableFuture<Map<String, T>> get();
+
+        /**
+         * addChildListener reports every child that enters, changes in or
+         * leaves the query, starting with one onChildAdded per child that
+         * already matches.
+         */
+        Registration addChildListener(ChildListener<T> listener);
+
+        /**
+         * addValueListener hands over all matching children (by key, in
+         * query order) now & again after every change to them.
+         */
+        Registration addValueListener(ValueListener<Map<String, T>> listener);
+    }
+
+    /**
+     * Ref is one top level node. As a query it reads every child by key.
+     */
+    interface Ref<T> extends Query<T> {
+
+        Type<T> type();
+
+        /**
+         * newKey returns a new, unique key that sorts after the keys made
+         * before it, like a Firebase push id.
+         */
+        String newKey();
+
+        /**
+         * get reads one child, completing with null if there is none.
+         */
+        CompletableFuture<T> get(String key);
+
+        /**
+         * set replaces one child with the value (or removes it for null).
+         */
+        CompletableFuture<Void> set(String key, T value);
+
+        /**
+         * update sets some fields of one child, leaving the others as they
+         * are. A null value removes the field & an increment() adds to it.
+         */
+        CompletableFuture<Void> update(String key, Map<String, Object> fields);
+
+        CompletableFuture<Void> remove(String key);
+
+        /**
+         * create stores the value only if the child does not exist yet.
+         * Completes with true if it was stored, false if the child was
+         * already there.
+         */
+        CompletableFuture<Boolean> create(String key, T value);
+
+        /**
+         * transact changes one child atomically: change gets the current
+         * value & returns the new one, or null to leave it unchanged. It may
+         * run more than once, so it must not have side effects. Completes
+         * with the committed value, or null if the change was aborted or the
+         * child does not exist.
+         */
+        CompletableFuture<T> transact(String key, UnaryOperator<T> change);
+
+        /**
+         * addValueListener hands over one child (null if there is none) now
+         * & again after every change to it.
+         */
+        Registration addValueListener(String key, ValueListener<T> listener);
+    }
+
+    /**
+     * ChildListener is told about single children of a query.
+     */
+    interface ChildListener<T> {
+        void onChildAdded(String key, T value);
+
+        void onChildChanged(String key, T value);
+
+        // value is the child as it was last reported
+        void onChildRemoved(String key, T value);
+
+        // the source stopped the listener, e.g. it was denied access
+        default void onCancelled(Exception error) { }
+    }
+
+    /**
+     * ValueListener receives a whole value each time it changes.
+     */
+    interface ValueListener<V> {
+        void onValue(V value);
+
+        default void onCancelled(Exception error) { }
+    }
+
+    /**
+     * Registration is an attached listener; remove() detaches it.
+     */
+    interface Registration {
+        void remove();
+    }
+}
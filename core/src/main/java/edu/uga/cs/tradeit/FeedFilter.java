@@ -0,0 +1,122 @@
+package edu.uga.cs.tradeit;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BooleanSupplier;
+
+/**
+ * FeedFilter turns the home feed's search box into an ItemQueryEngine query,
+ * kept free of Android so it can be benchmarked on a plain JVM.
+ *
+ * - in MODE_CATEGORY an item matches if its category is one of the allowed
+ *   categories (or nothing is allowed, i.e. there is no category filter),
+ *   checked as one bit test on the category's ordinal
+ * - in MODE_ITEM an item matches if its name contains the query, which is
+ *   answered by a NameIndex
+ * - in both modes an item can also be limited to a price range
+ *
+ * The input is already sorted in the shown order, so the result is made in
+ * one pass & keeps that order without being sorted again.
+ */
+public class FeedFilter {
+
+    public static final int MODE_CATEGORY = 0;
+    public static final int MODE_ITEM = 1;
+
+    // the price range used when no price is typed
+    public static final double MIN_PRICE = 0.0;
+    public static final double MAX_PRICE = Double.POSITIVE_INFINITY;
+
+    private FeedFilter() { }
+
+    /**
+     * normalize turns typed search text into the form queries are matched in.
+     */
+    public static String normalize(String text) {
+        return (text == null) ? "" : text.trim().toLowerCase(Locale.US);
+    }
+
+    /**
+     * allowedCategories returns the CategoryOrdinals ordinals of the
+     * categories a category search allows: the one chosen from the dropdown
+     * (if any) & every category whose title contains the query. An empty
+     * set means no filter.
+     * @param query normalized search text
+     */
+    public static BitSet allowedCategories(List<Category> categories, String query,
+                                           String selectedKey) {
+        CategoryOrdinals ordinals = CategoryOrdinals.get();
+        BitSet allowed = new BitSet(ordinals.size());
+        if (selectedKey != null && !selectedKey.isEmpty()) {
+            allowed.set(ordinals.ordinal(selectedKey));
+        }
+        if (query.isEmpty()) return allowed;
+
+        for (Category c : categories) {
+            String title = c.getTitle();
+            if (title == null || c.getKey() == null) continue;
+            if (title.toLowerCase(Locale.US).contains(query)) {
+                allowed.set(ordinals.ordinal(c.getKey()));
+            }
+        }
+        return allowed;
+    }
+
+    /**
+     * parsePrice reads a typed price, returning fallback if the text is
+     * empty, not a number or negative.
+     */
+    public static double parsePrice(String text, double fallback) {
+        if (text == null || text.trim().isEmpty()) return fallback;
+        try {
+            double price = Double.parseDouble(text.trim());
+            return (price >= 0 && !Double.isNaN(price)) ? price : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * isPriceLimited tells if a range leaves any price out.
+     */
+    public static boolean isPriceLimited(double min, double max) {
+        return min > MIN_PRICE || max < MAX_PRICE;
+    }
+
+    /**
+     * builder starts the home feed's query for a search mode, so more
+     * clauses (such as a price range) can be added before it is built.
+     * @param query normalized search text
+     * @param allowed the result of allowedCategories(), used in MODE_CATEGORY
+     * @param names the index over the items' names, used in MODE_ITEM
+     */
+    public static ItemQueryEngine.Builder builder(int mode, String query, BitSet allowed,
+                                                  NameIndex names) {
+        ItemQueryEngine.Builder builder = ItemQueryEngine.newQuery();
+        if (mode == MODE_CATEGORY) {
+            builder.inCategories(allowed);
+        } else {
+            builder.nameContains(query, names);
+        }
+        return builder;
+    }
+
+    /**
+     * query builds the home feed's query for a search mode.
+     */
+    public static ItemQueryEngine.Query query(int mode, String query, BitSet allowed,
+                                              NameIndex names) {
+        return builder(mode, query, allowed, names).build();
+    }
+
+    /**
+     * filter returns the items of sorted that match, in the same order. It
+     * stops early (returning what it has) once isCancelled is true.
+     */
+    public static List<Item> filter(List<Item> sorted, int mode, String query,
+                                    BitSet allowed, NameIndex names,
+                                    BooleanSupplier isCancelled) {
+        return query(mode, query, allowed, names).run(sorted, isCancelled);
+    }
+}
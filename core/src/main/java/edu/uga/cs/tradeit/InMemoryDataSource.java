@@ -0,0 +1,920 @@
+package edu.uga.cs.tradeit;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.UnaryOperator;
+
+/**
+ * InMemoryDataSource is a DataSource kept entirely in memory, so the app's
+ * data code can be load tested & benchmarked on a plain JVM.
+ *
+ * - every node keeps its children as immutable field maps (see BeanMapper),
+ *   so a read hands out fresh copies & a write never changes what an
+ *   earlier reader got
+ * - the first query ordering by a field builds a sorted index on it (like
+ *   Firebase's .indexOn) that every later write keeps up to date, so a
+ *   range or equalTo() query is a sorted range lookup, not a scan
+ * - listeners get the same events Firebase sends, only for the children
+ *   that actually entered, changed in or left their query
+ *
+ * Methods can be called from any thread. Writes are applied one at a time
+ * under a single lock. Events & completions are queued in the order writes
+ * were applied & run one by one on the callback executor, outside the lock,
+ * so a listener may write again without deadlocking.
+ */
+public class InMemoryDataSource implements DataSource {
+
+    private static final String INVALID_KEY_CHARS = "/.#$[]";
+
+    private final Object lock = new Object();
+    private final Executor callbacks;
+
+    // events & completions waiting to run, in the order they happened
+    private final Deque<Runnable> pending = new ArrayDeque<>();
+    private boolean draining = false;
+
+    private long lastKeyStamp = 0;
+
+    private final Node<Item> items;
+    private final Node<Category> categories;
+    private final Node<User> users;
+    private final Node<CategoryCounts> counters;
+    private final Node<Migration> migrations;
+    // the nodes by path, for update(Map)
+    private final Map<String, Node<?>> nodes = new HashMap<>();
+
+    /**
+     * Creates a source that calls back on its own single daemon thread,
+     * like Firebase does on the main thread.
+     */
+    public InMemoryDataSource() {
+        this(Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "InMemoryDataSource");
+            t.setDaemon(true);
+            return t;
+        }));
+    }
+
+    /**
+     * Creates a source that calls back on the given executor. With
+     * Runnable::run callbacks run on the writing thread, before the write
+     * returns.
+     */
+    public InMemoryDataSource(Executor callbacks) {
+        this.callbacks = callbacks;
+        this.items = new Node<>(Type.ITEM);
+        this.categories = new Node<>(Type.CATEGORY);
+        this.users = new Node<>(Type.USER);
+        this.counters = new Node<>(Type.COUNTS);
+        this.migrations = new Node<>(Type.MIGRATION);
+        for (Node<?> node : Arrays.asList(items, categories, users, counters, migrations)) {
+            nodes.put(node.type.path(), node);
+        }
+    }
+
+    @Override
+    public Ref<Item> items() { return items; }
+
+    @Override
+    public Ref<Category> categories() { return categories; }
+
+    @Override
+    public Ref<User> users() { return users; }
+
+    @Override
+    public Ref<CategoryCounts> counters() { return counters; }
+
+    @Override
+    public Ref<Migration> migrations() { return migrations; }
+
+    @Override
+    public CompletableFuture<Void> update(Map<String, Object> updates) {
+        // every path is checked before anything is written, so a bad one
+        // leaves the source as it was
+        Map<Node<?>, Map<String, Change>> changes = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> e : updates.entrySet()) {
+            String path = e.getKey().startsWith("/") ? e.getKey().substring(1) : e.getKey();
+            String[] parts = path.split("/", -1);
+            Node<?> node = nodes.get(parts[0]);
+            if (node == null || parts.length < 2 || parts.length > 3) {
+                throw new IllegalArgumentException("not a record or field path: " + e.getKey());
+            }
+            Change change = changes.computeIfAbsent(node, n -> new LinkedHashMap<>())
+                    .computeIfAbsent(checkKey(parts[1]), k -> new Change());
+            if (change.replaced || (parts.length == 2 && !change.fields.isEmpty())) {
+                throw new IllegalArgumentException(e.getKey() + " overlaps another path");
+            }
+            if (parts.length == 2) {
+                change.replaced = true;
+                change.row = node.toRow(e.getValue());
+            } else {
+                change.fields.put(checkKey(parts[2]), fieldValue(e.getValue()));
+            }
+        }
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        synchronized (lock) {
+            for (Map.Entry<Node<?>, Map<String, Change>> n : changes.entrySet()) {
+                Node<?> node = n.getKey();
+                for (Map.Entry<String, Change> c : n.getValue().entrySet()) {
+                    Change change = c.getValue();
+                    node.commit(c.getKey(), change.replaced
+                            ? change.row : applyFields(node.rows.get(c.getKey()), change.fields));
+                }
+            }
+            enqueue(() -> result.complete(null));
+        }
+        schedule();
+        return result;
+    }
+
+    /**
+     * Change is what one update(Map) does to one child: replace it whole
+     * or change some of its fields.
+     */
+    private static final class Change {
+        boolean replaced = false;
+        Map<String, Object> row;
+        final Map<String, Object> fields = new HashMap<>();
+    }
+
+    // a field value as it is stored, or an Increment to apply on commit
+    private static Object fieldValue(Object value) {
+        return (value instanceof Increment) ? value : BeanMapper.normalize(value);
+    }
+
+    /**
+     * applyFields returns a row with the fields changed: a null value
+     * removes the field & an Increment adds to it.
+     */
+    private static Map<String, Object> applyFields(Map<String, Object> old, Map<String, Object> fields) {
+        Map<String, Object> next = (old == null) ? new HashMap<>() : new HashMap<>(old);
+        for (Map.Entry<String, Object> e : fields.entrySet()) {
+            Object value = e.getValue();
+            if (value instanceof Increment) {
+                value = add(next.get(e.getKey()), ((Increment) value).delta());
+            }
+            if (value == null) {
+                next.remove(e.getKey());
+            } else {
+                next.put(e.getKey(), value);
+            }
+        }
+        // like Firebase, a child left without fields is gone
+        return next.isEmpty() ? null : Collections.unmodifiableMap(next);
+    }
+
+    // like ServerValue.increment(), anything but a number counts as 0
+    private static Object add(Object current, long delta) {
+        if (current instanceof Long) return (Long) current + delta;
+        if (current instanceof Double) return (Double) current + delta;
+        return delta;
+    }
+
+    /**
+     * size returns how many children a node has, e.g. size(Type.ITEM).
+     */
+    public int size(Type<?> type) {
+        synchronized (lock) {
+            return node(type).rows.size();
+        }
+    }
+
+    private Node<?> node(Type<?> type) {
+        return nodes.get(type.path());
+    }
+
+    // ---------------------------------------------------------------------
+    // ordering
+
+    // stand-ins for "before every key" & "after every key" in range bounds
+    private static final String LOWEST = new String("lowest");
+    private static final String HIGHEST = new String("highest");
+
+    /**
+     * Slot is one child's place in an index: its value, then its key.
+     */
+    private static final class Slot {
+        final Object value;
+        final String key;
+
+        Slot(Object value, String key) {
+            this.value = value;
+            this.key = key;
+        }
+    }
+
+    private static final Comparator<Slot> SLOT_ORDER = (a, b) -> {
+        int c = compareValues(a.value, b.value);
+        if (c != 0 || a.key == b.key) return c;
+        if (a.key == LOWEST || b.key == HIGHEST) return -1;
+        if (a.key == HIGHEST || b.key == LOWEST) return 1;
+        return a.key.compareTo(b.key);
+    };
+
+    /**
+     * compareValues orders values like the Realtime Database: missing,
+     * false, true, numbers, strings.
+     */
+    static int compareValues(Object a, Object b) {
+        int c = Integer.compare(typeRank(a), typeRank(b));
+        if (c != 0 || a == null) return c;
+        if (a instanceof Boolean) return Boolean.compare((Boolean) a, (Boolean) b);
+        if (a instanceof Long && b instanceof Long) return Long.compare((Long) a, (Long) b);
+        if (a instanceof Number) {
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+        return ((String) a).compareTo((String) b);
+    }
+
+    private static int typeRank(Object value) {
+        if (value == null) return 0;
+        if (value instanceof Boolean) return 1;
+        if (value instanceof Number) return 2;
+        return 3;
+    }
+
+    // ---------------------------------------------------------------------
+    // queries
+
+    /**
+     * Spec is the immutable description of a query.
+     */
+    private static final class Spec {
+        static final Spec ALL = new Spec(null, null, null, false, 0, false);
+
+        // null orders by key
+        final String field;
+        final Slot start;
+        final boolean startExclusive;
+        final Slot end;
+        // 0 means no limit
+        final int limit;
+        final boolean fromLast;
+
+        Spec(String field, Slot start, Slot end, boolean startExclusive, int limit, boolean fromLast) {
+            this.field = field;
+            this.start = start;
+            this.end = end;
+            this.startExclusive = startExclusive;
+            this.limit = limit;
+            this.fromLast = fromLast;
+        }
+
+        Spec orderBy(String f) { return new Spec(f, start, end, startExclusive, limit, fromLast); }
+
+        Spec from(Slot s, boolean exclusive) { return new Spec(field, s, end, exclusive, limit, fromLast); }
+
+        Spec to(Slot e) { return new Spec(field, start, e, startExclusive, limit, fromLast); }
+
+        Spec limit(int n, boolean last) { return new Spec(field, start, end, startExclusive, n, last); }
+
+        boolean inRange(Slot slot) {
+            if (start != null) {
+                int c = SLOT_ORDER.compare(slot, start);
+                if (c < 0 || (c == 0 && startExclusive)) return false;
+            }
+            return end == null || SLOT_ORDER.compare(slot, end) <= 0;
+        }
+    }
+
+    private static String checkKey(String key) {
+        if (key == null || key.isEmpty()) {
+            throw new IllegalArgumentException("key must not be empty");
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (INVALID_KEY_CHARS.indexOf(key.charAt(i)) >= 0) {
+                throw new IllegalArgumentException("invalid key: " + key);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * QueryView is one query on a node.
+     */
+    private class QueryView<T> implements Query<T> {
+        final Node<T> node;
+        final Spec spec;
+
+        QueryView(Node<T> node, Spec spec) {
+            this.node = node;
+            this.spec = spec;
+        }
+
+        private QueryView<T> with(Spec s) { return new QueryView<>(node, s); }
+
+        @Override
+        public String path() { return "/" + node.type.path(); }
+
+        @Override
+        public Query<T> orderByChild(String field) {
+            checkKey(field);
+            return with(spec.orderBy(field));
+        }
+
+        @Override
+        public Query<T> startAt(Object value) {
+            return with(spec.from(new Slot(bound(value), LOWEST), false));
+        }
+
+        @Override
+        public Query<T> startAt(Object value, String key) {
+            return with(spec.from(new Slot(bound(value), key), false));
+        }
+
+        @Override
+        public Query<T> startAfter(Object value, String key) {
+            return with(spec.from(new Slot(bound(value), key), true));
+        }
+
+        @Override
+        public Query<T> endAt(Object value) {
+            return with(spec.to(new Slot(bound(value), HIGHEST)));
+        }
+
+        @Override
+        public Query<T> endAt(Object value, String key) {
+            return with(spec.to(new Slot(bound(value), key)));
+        }
+
+        @Override
+        public Query<T> equalTo(Object value) {
+            Object v = bound(value);
+            return with(spec.from(new Slot(v, LOWEST), false).to(new Slot(v, HIGHEST)));
+        }
+
+        @Override
+        public Query<T> limitToFirst(int limit) { return with(spec.limit(checkLimit(limit), false)); }
+
+        @Override
+        public Query<T> limitToLast(int limit) { return with(spec.limit(checkLimit(limit), true)); }
+
+        // ordering by key only compares keys, so bounds must be keys too
+        private Object bound(Object value) {
+            Object v = BeanMapper.normalize(value);
+            if (spec.field == null && !(v instanceof String)) {
+                throw new IllegalArgumentException("a query ordered by key needs string bounds");
+            }
+            return v;
+        }
+
+        private int checkLimit(int limit) {
+            if (limit <= 0) throw new IllegalArgumentException("limit must be positive");
+            return limit;
+        }
+
+        @Override
+        public CompletableFuture<Map<String, T>> get() {
+            CompletableFuture<Map<String, T>> result = new CompletableFuture<>();
+            synchronized (lock) {
+                Map<String, Map<String, Object>> rows = node.window(spec);
+                enqueue(() -> result.complete(node.read(rows)));
+            }
+            schedule();
+            return result;
+        }
+
+        @Override
+        public Registration addChildListener(ChildListener<T> listener) {
+            return node.watch(new ChildWatch<>(node, spec, listener));
+        }
+
+        @Override
+        public Registration addValueListener(ValueListener<Map<String, T>> listener) {
+            return node.watch(new ValueWatch<>(node, spec, listener));
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // listeners
+
+    /**
+     * Watch is one attached query listener. Its fields are guarded by lock.
+     */
+    private abstract static class Watch<T> implements Registration {
+        final Node<T> node;
+        final Spec spec;
+        volatile boolean removed = false;
+
+        Watch(Node<T> node, Spec spec) {
+            this.node = node;
+            this.spec = spec;
+        }
+
+        // queues the events for the current children
+        abstract void start();
+
+        // queues the events for one child going from oldRow to newRow
+        abstract void changed(String key, Map<String, Object> oldRow, Map<String, Object> newRow);
+
+        @Override
+        public void remove() {
+            removed = true;
+            node.unwatch(this);
+        }
+    }
+
+    private final class ChildWatch<T> extends Watch<T> {
+        final ChildListener<T> listener;
+        // the children reported so far & their last reported fields
+        final Map<String, Map<String, Object>> shown = new HashMap<>();
+
+        ChildWatch(Node<T> node, Spec spec, ChildListener<T> listener) {
+            super(node, spec);
+            this.listener = listener;
+        }
+
+        @Override
+        void start() {
+            for (Map.Entry<String, Map<String, Object>> e : node.window(spec).entrySet()) {
+                shown.put(e.getKey(), e.getValue());
+                added(e.getKey(), e.getValue());
+            }
+        }
+
+        @Override
+        void changed(String key, Map<String, Object> oldRow, Map<String, Object> newRow) {
+            if (spec.limit == 0) {
+                boolean was = shown.containsKey(key);
+                boolean is = newRow != null && spec.inRange(node.slot(key, newRow, spec.field));
+                if (is) {
+                    shown.put(key, newRow);
+                    if (was) changedRow(key, newRow); else added(key, newRow);
+                } else if (was) {
+                    removedRow(key, shown.remove(key));
+                }
+                return;
+            }
+            // a child outside the range before & after cannot move the window
+            if (!shown.containsKey(key)
+                    && (oldRow == null || !spec.inRange(node.slot(key, oldRow, spec.field)))
+                    && (newRow == null || !spec.inRange(node.slot(key, newRow, spec.field)))) {
+                return;
+            }
+            // a limited window can push other children in or out
+            Map<String, Map<String, Object>> window = node.window(spec);
+            Iterator<Map.Entry<String, Map<String, Object>>> it = shown.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Map<String, Object>> e = it.next();
+                if (!window.containsKey(e.getKey())) {
+                    it.remove();
+                    removedRow(e.getKey(), e.getValue());
+                }
+            }
+            for (Map.Entry<String, Map<String, Object>> e : window.entrySet()) {
+                Map<String, Object> before = shown.put(e.getKey(), e.getValue());
+                if (before == null) {
+                    added(e.getKey(), e.getValue());
+                } else if (before != e.getValue()) {
+                    changedRow(e.getKey(), e.getValue());
+                }
+            }
+        }
+
+        private void added(String key, Map<String, Object> row) {
+            enqueue(() -> {
+                if (!removed) listener.onChildAdded(key, node.read(key, row));
+            });
+        }
+
+        private void changedRow(String key, Map<String, Object> row) {
+            enqueue(() -> {
+                if (!removed) listener.onChildChanged(key, node.read(key, row));
+            });
+        }
+
+        private void removedRow(String key, Map<String, Object> row) {
+            enqueue(() -> {
+                if (!removed) listener.onChildRemoved(key, node.read(key, row));
+            });
+        }
+    }
+
+    private final class ValueWatch<T> extends Watch<T> {
+        final ValueListener<Map<String, T>> listener;
+        // the children last handed over, in query order
+        Map<String, Map<String, Object>> shown = Collections.emptyMap();
+
+        ValueWatch(Node<T> node, Spec spec, ValueListener<Map<String, T>> listener) {
+            super(node, spec);
+            this.listener = listener;
+        }
+
+        @Override
+        void start() {
+            shown = node.window(spec);
+            send(shown);
+        }
+
+        @Override
+        void changed(String key, Map<String, Object> oldRow, Map<String, Object> newRow) {
+            if (spec.limit == 0) {
+                boolean is = newRow != null && spec.inRange(node.slot(key, newRow, spec.field));
+                if (!is && !shown.containsKey(key)) return;
+            }
+            Map<String, Map<String, Object>> window = node.window(spec);
+            if (sameRows(shown, window)) return;
+            shown = window;
+            send(window);
+        }
+
+        private void send(Map<String, Map<String, Object>> rows) {
+            enqueue(() -> {
+                if (!removed) listener.onValue(node.read(rows));
+            });
+        }
+    }
+
+    // same keys in the same order, each with the very same (immutable) row
+    private static boolean sameRows(Map<String, Map<String, Object>> a,
+                                    Map<String, Map<String, Object>> b) {
+        if (a.size() != b.size()) return false;
+        Iterator<Map.Entry<String, Map<String, Object>>> ia = a.entrySet().iterator();
+        for (Map.Entry<String, Map<String, Object>> eb : b.entrySet()) {
+            Map.Entry<String, Map<String, Object>> ea = ia.next();
+            if (!ea.getKey().equals(eb.getKey()) || ea.getValue() != eb.getValue()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * KeyWatch is one attached listener on a single child.
+     */
+    private final class KeyWatch<T> implements Registration {
+        final Node<T> node;
+        final String key;
+        final ValueListener<T> listener;
+        volatile boolean removed = false;
+
+        KeyWatch(Node<T> node, String key, ValueListener<T> listener) {
+            this.node = node;
+            this.key = key;
+            this.listener = listener;
+        }
+
+        void send(Map<String, Object> row) {
+            enqueue(() -> {
+                if (!removed) listener.onValue(node.read(key, row));
+            });
+        }
+
+        @Override
+        public void remove() {
+            removed = true;
+            synchronized (lock) {
+                List<KeyWatch<?>> list = node.keyWatches.get(key);
+                if (list != null && list.remove(this) && list.isEmpty()) {
+                    node.keyWatches.remove(key);
+                }
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // nodes
+
+    /**
+     * Node is one top level node & its indexes. Everything but the mapper
+     * is guarded by lock.
+     */
+    private final class Node<T> implements Ref<T> {
+        final Type<T> type;
+        final BeanMapper<T> mapper;
+        final Map<String, Map<String, Object>> rows = new HashMap<>();
+        // field -> children ordered by that field; null orders by key
+        final Map<String, NavigableSet<Slot>> indexes = new HashMap<>();
+        final List<Watch<T>> watches = new ArrayList<>();
+        final Map<String, List<KeyWatch<?>>> keyWatches = new HashMap<>();
+        // the node as a query, ordered by key
+        private final QueryView<T> all = new QueryView<>(this, Spec.ALL);
+
+        Node(Type<T> type) {
+            this.type = type;
+            this.mapper = new BeanMapper<>(type.type());
+        }
+
+        @Override
+        public Type<T> type() { return type; }
+
+        @Override
+        public String path() { return all.path(); }
+
+        @Override
+        public Query<T> orderByChild(String field) { return all.orderByChild(field); }
+
+        @Override
+        public Query<T> startAt(Object value) { return all.startAt(value); }
+
+        @Override
+        public Query<T> startAt(Object value, String key) { return all.startAt(value, key); }
+
+        @Override
+        public Query<T> startAfter(Object value, String key) { return all.startAfter(value, key); }
+
+        @Override
+        public Query<T> endAt(Object value) { return all.endAt(value); }
+
+        @Override
+        public Query<T> endAt(Object value, String key) { return all.endAt(value, key); }
+
+        @Override
+        public Query<T> equalTo(Object value) { return all.equalTo(value); }
+
+        @Override
+        public Query<T> limitToFirst(int limit) { return all.limitToFirst(limit); }
+
+        @Override
+        public Query<T> limitToLast(int limit) { return all.limitToLast(limit); }
+
+        @Override
+        public CompletableFuture<Map<String, T>> get() { return all.get(); }
+
+        @Override
+        public Registration addChildListener(ChildListener<T> listener) {
+            return all.addChildListener(listener);
+        }
+
+        @Override
+        public Registration addValueListener(ValueListener<Map<String, T>> listener) {
+            return all.addValueListener(listener);
+        }
+
+        @Override
+        public String newKey() {
+            synchronized (lock) {
+                // milliseconds with room for 1024 keys each, never going back
+                lastKeyStamp = Math.max(System.currentTimeMillis() << 10, lastKeyStamp + 1);
+                return String.format(Locale.US, "-%016x", lastKeyStamp);
+            }
+        }
+
+        @Override
+        public CompletableFuture<T> get(String key) {
+            checkKey(key);
+            CompletableFuture<T> result = new CompletableFuture<>();
+            synchronized (lock) {
+                Map<String, Object> row = rows.get(key);
+                enqueue(() -> result.complete(read(key, row)));
+            }
+            schedule();
+            return result;
+        }
+
+        @Override
+        public CompletableFuture<Void> set(String key, T value) {
+            checkKey(key);
+            Map<String, Object> row = (value == null) ? null : mapper.toMap(value);
+            return write(key, row);
+        }
+
+        @Override
+        public CompletableFuture<Void> update(String key, Map<String, Object> fields) {
+            checkKey(key);
+            Map<String, Object> normalized = new HashMap<>();
+            for (Map.Entry<String, Object> e : fields.entrySet()) {
+                normalized.put(checkKey(e.getKey()), fieldValue(e.getValue()));
+            }
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            synchronized (lock) {
+                commit(key, applyFields(rows.get(key), normalized));
+                enqueue(() -> result.complete(null));
+            }
+            schedule();
+            return result;
+        }
+
+        @Override
+        public CompletableFuture<Void> remove(String key) {
+            checkKey(key);
+            return write(key, null);
+        }
+
+        @Override
+        public CompletableFuture<Boolean> create(String key, T value) {
+            checkKey(key);
+            Map<String, Object> row = mapper.toMap(Objects.requireNonNull(value, "value"));
+            CompletableFuture<Boolean> result = new CompletableFuture<>();
+            synchronized (lock) {
+                boolean created = !rows.containsKey(key) && !row.isEmpty();
+                if (created) commit(key, row);
+                enqueue(() -> result.complete(created));
+            }
+            schedule();
+            return result;
+        }
+
+        @Override
+        public CompletableFuture<T> transact(String key, UnaryOperator<T> change) {
+            checkKey(key);
+            CompletableFuture<T> result = new CompletableFuture<>();
+            synchronized (lock) {
+                Map<String, Object> row = rows.get(key);
+                T next = (row == null) ? null : change.apply(read(key, row));
+                Map<String, Object> nextRow = (next == null) ? null : mapper.toMap(next);
+                if (nextRow != null) commit(key, nextRow);
+                enqueue(() -> result.complete((nextRow == null) ? null : read(key, nextRow)));
+            }
+            schedule();
+            return result;
+        }
+
+        @Override
+        public Registration addValueListener(String key, ValueListener<T> listener) {
+            checkKey(key);
+            KeyWatch<T> watch = new KeyWatch<>(this, key, listener);
+            synchronized (lock) {
+                keyWatches.computeIfAbsent(key, k -> new ArrayList<>()).add(watch);
+                watch.send(rows.get(key));
+            }
+            schedule();
+            return watch;
+        }
+
+        // the row of a whole record written by update(Map)
+        Map<String, Object> toRow(Object value) {
+            if (value == null) return null;
+            if (!type.type().isInstance(value)) {
+                throw new IllegalArgumentException(path() + " holds " + type.type().getSimpleName()
+                        + " records, not " + value.getClass().getSimpleName());
+            }
+            return mapper.toMap(type.type().cast(value));
+        }
+
+        private CompletableFuture<Void> write(String key, Map<String, Object> row) {
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            synchronized (lock) {
+                commit(key, row);
+                enqueue(() -> result.complete(null));
+            }
+            schedule();
+            return result;
+        }
+
+        Registration watch(Watch<T> watch) {
+            synchronized (lock) {
+                watches.add(watch);
+                watch.start();
+            }
+            schedule();
+            return watch;
+        }
+
+        void unwatch(Watch<T> watch) {
+            synchronized (lock) {
+                watches.remove(watch);
+            }
+        }
+
+        /**
+         * commit replaces one child's row (null removes it), keeps the
+         * indexes up to date & queues the listeners' events. Called with
+         * lock held.
+         */
+        private void commit(String key, Map<String, Object> row) {
+            Map<String, Object> old = rows.get(key);
+            // writing the same fields again changes nothing & sends nothing
+            if (old == null ? row == null : old.equals(row)) return;
+            if (row == null) {
+                rows.remove(key);
+            } else {
+                rows.put(key, row);
+            }
+            for (Map.Entry<String, NavigableSet<Slot>> e : indexes.entrySet()) {
+                if (old != null) e.getValue().remove(slot(key, old, e.getKey()));
+                if (row != null) e.getValue().add(slot(key, row, e.getKey()));
+            }
+            for (Watch<T> w : watches) {
+                w.changed(key, old, row);
+            }
+            List<KeyWatch<?>> keyed = keyWatches.get(key);
+            if (keyed != null) {
+                for (KeyWatch<?> w : keyed) {
+                    w.send(row);
+                }
+            }
+        }
+
+        Slot slot(String key, Map<String, Object> row, String field) {
+            return new Slot((field == null) ? key : row.get(field), key);
+        }
+
+        /**
+         * window returns the children a query matches, in query order.
+         * Called with lock held.
+         */
+        Map<String, Map<String, Object>> window(Spec spec) {
+            NavigableSet<Slot> range = index(spec.field);
+            if (spec.start != null) range = range.tailSet(spec.start, !spec.startExclusive);
+            if (spec.end != null) {
+                // a start after the end would make subSet throw
+                if (spec.start != null && SLOT_ORDER.compare(spec.start, spec.end) > 0) {
+                    return Collections.emptyMap();
+                }
+                range = range.headSet(spec.end, true);
+            }
+            int limit = (spec.limit == 0) ? Integer.MAX_VALUE : spec.limit;
+            // not sized by range.size(): on a sub set that counts every slot
+            List<Slot> picked = new ArrayList<>();
+            Iterator<Slot> it = spec.fromLast ? range.descendingIterator() : range.iterator();
+            while (it.hasNext() && picked.size() < limit) {
+                picked.add(it.next());
+            }
+            if (spec.fromLast) Collections.reverse(picked);
+
+            Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+            for (Slot s : picked) {
+                result.put(s.key, rows.get(s.key));
+            }
+            return result;
+        }
+
+        // builds the index on first use; writes keep it up to date after that
+        private NavigableSet<Slot> index(String field) {
+            NavigableSet<Slot> index = indexes.get(field);
+            if (index == null) {
+                index = new TreeSet<>(SLOT_ORDER);
+                for (Map.Entry<String, Map<String, Object>> e : rows.entrySet()) {
+                    index.add(slot(e.getKey(), e.getValue(), field));
+                }
+                indexes.put(field, index);
+            }
+            return index;
+        }
+
+        T read(String key, Map<String, Object> row) {
+            return (row == null) ? null : type.withKey(mapper.fromMap(row), key);
+        }
+
+        Map<String, T> read(Map<String, Map<String, Object>> rows) {
+            Map<String, T> result = new LinkedHashMap<>();
+            for (Map.Entry<String, Map<String, Object>> e : rows.entrySet()) {
+                result.put(e.getKey(), read(e.getKey(), e.getValue()));
+            }
+            return result;
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // callbacks
+
+    /**
+     * enqueue adds a callback after the ones already waiting. Called with
+     * lock held, so callbacks run in the order writes were applied.
+     */
+    private void enqueue(Runnable task) {
+        synchronized (pending) {
+            pending.add(task);
+        }
+    }
+
+    /**
+     * schedule makes sure the queued callbacks get run, unless they
+     * already are being run.
+     */
+    private void schedule() {
+        synchronized (pending) {
+            if (draining || pending.isEmpty()) return;
+            draining = true;
+        }
+        callbacks.execute(this::drain);
+    }
+
+    private void drain() {
+        while (true) {
+            Runnable task;
+            synchronized (pending) {
+                task = pending.poll();
+                if (task == null) {
+                    draining = false;
+                    return;
+                }
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // hand the rest to a new run, then report the failure
+                synchronized (pending) {
+                    draining = false;
+                }
+                schedule();
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package edu.uga.cs.tradeit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * IndexBackfill writes the composite index fields (statusTime, statusName,
+ * buyerStatus & sellerStatus) onto items stored before those fields
+ * existed. Without them an item is left out of every query ordered by one
+ * of them, so it would never show up in the home feed or the transaction
+ * tabs.
+ *
+ * statusTime came first & sellerStatus last, & every item has both once it
+ * is indexed (buyerStatus is legitimately missing while no one requested
+ * the item), so the items lacking either of them are the ones to fix. A
+ * missing field sorts before every value, so endAt(null) on its index reads
+ * exactly those items, one batch after another by key. Each item is fixed
+ * in a transaction, so a status change written at the same time is not
+ * overwritten with stale index values. Once every item is fixed a run is
+ * two empty reads.
+ */
+public class IndexBackfill {
+
+    static final int BATCH = 100;
+
+    // the index fields that tell an item from before they existed
+    private static final String[] MARKERS = { "statusTime", "sellerStatus" };
+
+    private final DataSource source;
+
+    public IndexBackfill(DataSource source) {
+        this.source = source;
+    }
+
+    /**
+     * run fixes every item missing its index fields. Completes with the
+     * number of items that were written.
+     */
+    public CompletableFuture<Integer> run() {
+        CompletableFuture<Integer> result = CompletableFuture.completedFuture(0);
+        for (String marker : MARKERS) {
+            result = result.thenCompose(written -> nextBatch(marker, null, written));
+        }
+        return result;
+    }
+
+    private CompletableFuture<Integer> nextBatch(String marker, String afterKey, int writtenSoFar) {
+        DataSource.Ref<Item> items = source.items();
+        DataSource.Query<Item> missing = items.orderByChild(marker);
+        if (afterKey != null) missing = missing.startAfter(null, afterKey);
+        return missing.endAt(null).limitToFirst(BATCH).get()
+                .thenCompose(batch -> {
+                    if (batch.isEmpty()) return CompletableFuture.completedFuture(writtenSoFar);
+                    List<CompletableFuture<Item>> writes = new ArrayList<>(batch.size());
+                    String lastKey = null;
+                    for (String key : batch.keySet()) {
+                        writes.add(items.transact(key, IndexBackfill::withIndexes));
+                        lastKey = key;
+                    }
+                    // the next batch starts after this one, so an item that
+                    // still lacks the field (e.g. it has no seller) is not
+                    // read again
+                    String cursor = lastKey;
+                    return CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0]))
+                            .thenCompose(done -> {
+                                int written = writtenSoFar;
+                                for (CompletableFuture<Item> write : writes) {
+                                    if (write.join() != null) written++;
+                                }
+                                return nextBatch(marker, cursor, written);
+                            });
+                });
+    }
+
+    /**
+     * withIndexes fills in the index fields of an item that lacks them. An
+     * item fixed in the meantime is written back unchanged, which changes
+     * nothing.
+     */
+    static Item withIndexes(Item item) {
+        if (item.getStatusTime() == null || item.getSellerStatus() == null) item.updateIndexes();
+        return item;
+    }
+}
@@ -0,0 +1,304 @@
+package edu.uga.cs.tradeit;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Item initializes the item table in the database.
+ */
+public class Item {
+
+    // newest first; ties are broken by key so every item has one exact spot
+    public static final Comparator<Item> NEWEST_FIRST = (a, b) -> {
+        int c = Long.compare(b.creationTime, a.creationTime);
+        return (c != 0) ? c : compareKeys(a, b);
+    };
+
+    // alphabetical by the same normalized name as the statusName index, so
+    // pages read in that order line up; ties are broken by key like there
+    public static final Comparator<Item> BY_NAME = (a, b) -> {
+        int c = a.nameKey().compareTo(b.nameKey());
+        return (c != 0) ? c : compareKeys(a, b);
+    };
+
+    // cheapest first; ties are broken by key, the same order as PriceIndex
+    public static final Comparator<Item> PRICE_LOW_FIRST = (a, b) -> {
+        int c = Double.compare(a.price, b.price);
+        return (c != 0) ? c : compareKeys(a, b);
+    };
+
+    // most expensive first, exactly the reverse of PRICE_LOW_FIRST
+    public static final Comparator<Item> PRICE_HIGH_FIRST = PRICE_LOW_FIRST.reversed();
+
+    // initialize attributes
+    private String key;
+    private String sellerId;
+    private String name;
+    private String categoryId;
+    private long creationTime;
+    private double price;
+    private String buyerId;
+    private String status;
+    private String description;
+    private boolean buyerConfirmed;
+    private boolean sellerConfirmed;
+
+    // NEW: snapshot of the category title (for history / completed transactions)
+    private String categoryTitle;
+    // snapshot of the seller's name, written with the item so cards need no
+    // extra read to show it
+    private String sellerName;
+
+    // composite index fields (status + sort value) so a single status can be
+    // paged through in either sort order with one indexed query
+    private String statusTime;
+    private String statusName;
+
+    // composite index fields (user + status) so each transaction tab can be
+    // answered by one indexed equalTo() query
+    private String buyerStatus;
+    private String sellerStatus;
+
+    // sort key for the name, built once per name & never stored in the database
+    private transient String nameKey;
+    // CategoryOrdinals ordinal of the category, looked up once per category
+    private static final int UNKNOWN_ORDINAL = -2;
+    private transient int categoryOrdinal = UNKNOWN_ORDINAL;
+
+    // default empty constructor
+    public Item() {
+        this.key = null;
+        this.sellerId = null;
+        this.name = null;
+        this.categoryId = null;
+        this.creationTime = 0L;
+        this.price = 0.0;
+        this.buyerId = null;
+        this.status = null;
+        this.description = null;
+        this.buyerConfirmed = false;
+        this.sellerConfirmed = false;
+        this.categoryTitle = null;
+        this.sellerName = null;
+        this.statusTime = null;
+        this.statusName = null;
+        this.buyerStatus = null;
+        this.sellerStatus = null;
+    }
+
+    // constructor
+    public Item(String sellerId,
+                String name,
+                String categoryId,
+                long creationTime,
+                double price,
+                String status,
+                String description) {
+
+        this.key = null;
+        this.sellerId = sellerId;
+        this.name = name;
+        this.categoryId = categoryId;
+        this.creationTime = creationTime;
+        this.price = price;
+        this.buyerId = null;
+        this.status = status;
+        this.description = description;
+        this.buyerConfirmed = false;
+        this.sellerConfirmed = false;
+        this.categoryTitle = null; // set separately
+        this.sellerName = null; // set separately
+        updateIndexes();
+    }
+
+    // getter & setter methods
+    public String getKey() { return key; }
+    public void setKey(String key) { this.key = key; }
+
+    public String getSellerId() { return sellerId; }
+    public void setSellerId(String sellerId) { this.sellerId = sellerId; }
+
+    public String getName() { return name; }
+    public void setName(String name) {
+        this.name = name;
+        this.nameKey = null;
+    }
+
+    public String getCategoryId() { return categoryId; }
+    public void setCategoryId(String categoryId) {
+        this.categoryId = categoryId;
+        this.categoryOrdinal = UNKNOWN_ORDINAL;
+    }
+
+    // you still have these helpers
+    public String getCategory() { return categoryId; }
+    public void setCategory(String categoryId) { setCategoryId(categoryId); }
+
+    public long getCreationTime() { return creationTime; }
+    public void setCreationTime(long creationTime) { this.creationTime = creationTime; }
+
+    public double getPrice() { return price; }
+    public void setPrice(double price) { this.price = price; }
+
+    public String getBuyerId() { return buyerId; }
+    public void setBuyerId(String buyerId) { this.buyerId = buyerId; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public String getDescription() { return description; }
+    public void setDescription(String description) { this.description = description; }
+
+    public boolean isBuyerConfirmed() { return buyerConfirmed; }
+    public void setBuyerConfirmed(boolean buyerConfirmed) { this.buyerConfirmed = buyerConfirmed; }
+
+    public boolean isSellerConfirmed() { return sellerConfirmed; }
+    public void setSellerConfirmed(boolean sellerConfirmed) { this.sellerConfirmed = sellerConfirmed; }
+
+    // NEW: categoryTitle snapshot
+    public String getCategoryTitle() { return categoryTitle; }
+    public void setCategoryTitle(String categoryTitle) { this.categoryTitle = categoryTitle; }
+
+    public String getSellerName() { return sellerName; }
+    public void setSellerName(String sellerName) { this.sellerName = sellerName; }
+
+    public String getStatusTime() { return statusTime; }
+    public void setStatusTime(String statusTime) { this.statusTime = statusTime; }
+
+    public String getStatusName() { return statusName; }
+    public void setStatusName(String statusName) { this.statusName = statusName; }
+
+    public String getBuyerStatus() { return buyerStatus; }
+    public void setBuyerStatus(String buyerStatus) { this.buyerStatus = buyerStatus; }
+
+    public String getSellerStatus() { return sellerStatus; }
+    public void setSellerStatus(String sellerStatus) { this.sellerStatus = sellerStatus; }
+
+    /**
+     * nameKey returns the normalized name the statusName index is built
+     * from, computed once, so sorting by name compares it instead of
+     * lowercasing strings on every compare.
+     */
+    public String nameKey() {
+        String k = nameKey;
+        if (k == null) {
+            k = normalizeName(name);
+            nameKey = k;
+        }
+        return k;
+    }
+
+    /**
+     * categoryOrdinal returns the category's CategoryOrdinals ordinal (or
+     * CategoryOrdinals.NONE without a category), so checking it against a
+     * set of categories is a bit test.
+     */
+    public int categoryOrdinal() {
+        int ordinal = categoryOrdinal;
+        if (ordinal == UNKNOWN_ORDINAL) {
+            ordinal = CategoryOrdinals.get().ordinal(categoryId);
+            categoryOrdinal = ordinal;
+        }
+        return ordinal;
+    }
+
+    private static int compareKeys(Item a, Item b) {
+        String ka = (a.key == null) ? "" : a.key;
+        String kb = (b.key == null) ? "" : b.key;
+        return ka.compareTo(kb);
+    }
+
+    /**
+     * updateIndexes recomputes the composite index fields from the current
+     * status, creation time, name, buyer & seller. Call this after changing
+     * any of those fields & before writing the item back to the database.
+     */
+    public void updateIndexes() {
+        statusTime = timeIndex(status, creationTime);
+        statusName = nameIndex(status, name);
+        buyerStatus = userIndex(buyerId, status);
+        sellerStatus = userIndex(sellerId, status);
+    }
+
+    /**
+     * indexValues returns the composite index fields as a map that can be
+     * merged into an updateChildren() call.
+     */
+    public Map<String, Object> indexValues() {
+        return indexValuesFor(status, buyerId);
+    }
+
+    /**
+     * indexValuesFor returns the composite index fields this item would have
+     * with a new status & buyer, without changing the item itself.
+     */
+    public Map<String, Object> indexValuesFor(String newStatus, String newBuyerId) {
+        Map<String, Object> values = new HashMap<>();
+        values.put("statusTime", timeIndex(newStatus, creationTime));
+        values.put("statusName", nameIndex(newStatus, name));
+        values.put("buyerStatus", userIndex(newBuyerId, newStatus));
+        values.put("sellerStatus", userIndex(sellerId, newStatus));
+        return values;
+    }
+
+    /**
+     * sameContentAs checks if every stored field of this item equals the
+     * other item's, so a list can tell if a row needs to be redrawn.
+     */
+    public boolean sameContentAs(Item other) {
+        if (other == null) return false;
+        return creationTime == other.creationTime
+                && Double.compare(price, other.price) == 0
+                && buyerConfirmed == other.buyerConfirmed
+                && sellerConfirmed == other.sellerConfirmed
+                && Objects.equals(key, other.key)
+                && Objects.equals(sellerId, other.sellerId)
+                && Objects.equals(name, other.name)
+                && Objects.equals(categoryId, other.categoryId)
+                && Objects.equals(buyerId, other.buyerId)
+                && Objects.equals(status, other.status)
+                && Objects.equals(description, other.description)
+                && Objects.equals(categoryTitle, other.categoryTitle)
+                && Objects.equals(sellerName, other.sellerName);
+    }
+
+    /**
+     * timeIndex builds the "newest first" index value. The creation time is
+     * inverted & zero padded so that ascending string order is newest first.
+     */
+    public static String timeIndex(String status, long creationTime) {
+        return indexPrefix(status)
+                + String.format(Locale.US, "%019d", Long.MAX_VALUE - creationTime);
+    }
+
+    /**
+     * nameIndex builds the alphabetical index value.
+     */
+    public static String nameIndex(String status, String name) {
+        return indexPrefix(status) + normalizeName(name);
+    }
+
+    // the name as the alphabetical index & sort compare it
+    private static String normalizeName(String name) {
+        return (name == null) ? "" : name.trim().toLowerCase(Locale.US);
+    }
+
+    /**
+     * userIndex builds the "user + status" index value used by the
+     * transaction tabs, or null if there is no such user yet.
+     */
+    public static String userIndex(String uid, String status) {
+        return (uid == null) ? null : uid + "_" + status;
+    }
+
+    /**
+     * indexPrefix is the part of every index value shared by all items with
+     * the given status, used as the start of a status range query.
+     */
+    public static String indexPrefix(String status) {
+        return (status == null ? "" : status) + "_";
+    }
+}
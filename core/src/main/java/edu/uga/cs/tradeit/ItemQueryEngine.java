@@ -0,0 +1,304 @@
+package edu.uga.cs.tradeit;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+/**
+ * ItemQueryEngine filters & orders items for every list in the app, so
+ * filtering is written & tuned in one place.
+ *
+ * A query is built from clauses (status, user, category set, name text,
+ * price range, free only, posted since). Each clause has a rough cost & the
+ * clauses are checked cheapest first, so an item failing a number compare
+ * never reaches a string search. Checking stops at the first failing clause.
+ *
+ * Queries are immutable & can be run from any thread; the name clause only
+ * touches the NameIndex, which is thread safe.
+ */
+public final class ItemQueryEngine {
+
+    // checked between this many items for cancellation
+    private static final int CANCEL_CHECK_INTERVAL = 512;
+
+    // rough clause costs, lowest first
+    private static final int COST_NUMBER = 1;
+    private static final int COST_BITS = 1;
+    private static final int COST_EQUALS = 2;
+    private static final int COST_SET = 3;
+    private static final int COST_TEXT = 20;
+
+    private ItemQueryEngine() { }
+
+    public static Builder newQuery() {
+        return new Builder();
+    }
+
+    /**
+     * Clause is one condition of a query.
+     */
+    private abstract static class Clause {
+        final int cost;
+
+        Clause(int cost) { this.cost = cost; }
+
+        abstract boolean test(Item item);
+
+        // the clause to use for checking a whole list at once
+        Clause prepared() { return this; }
+    }
+
+    /**
+     * Builder collects the clauses of a query. Calling a method twice
+     * adds both clauses, so both must match.
+     */
+    public static final class Builder {
+        private final List<Clause> clauses = new ArrayList<>();
+        private Comparator<Item> order;
+
+        private Builder() { }
+
+        /**
+         * withStatus keeps items with the given status.
+         */
+        public Builder withStatus(String status) {
+            clauses.add(new Clause(COST_EQUALS) {
+                @Override boolean test(Item item) { return status.equals(item.getStatus()); }
+            });
+            return this;
+        }
+
+        /**
+         * withoutStatus drops items with the given status. Items without a
+         * status are kept.
+         */
+        public Builder withoutStatus(String status) {
+            clauses.add(new Clause(COST_EQUALS) {
+                @Override boolean test(Item item) { return !status.equals(item.getStatus()); }
+            });
+            return this;
+        }
+
+        /**
+         * involvingUser keeps items the user is the seller or buyer of.
+         */
+        public Builder involvingUser(String uid) {
+            clauses.add(new Clause(COST_EQUALS) {
+                @Override boolean test(Item item) {
+                    return uid.equals(item.getSellerId()) || uid.equals(item.getBuyerId());
+                }
+            });
+            return this;
+        }
+
+        /**
+         * soldBy keeps items the user is selling.
+         */
+        public Builder soldBy(String uid) {
+            clauses.add(new Clause(COST_EQUALS) {
+                @Override boolean test(Item item) { return uid.equals(item.getSellerId()); }
+            });
+            return this;
+        }
+
+        /**
+         * boughtBy keeps items the user is buying.
+         */
+        public Builder boughtBy(String uid) {
+            clauses.add(new Clause(COST_EQUALS) {
+                @Override boolean test(Item item) { return uid.equals(item.getBuyerId()); }
+            });
+            return this;
+        }
+
+        /**
+         * inCategories keeps items in one of the given categories. An empty
+         * set adds no clause, i.e. every category is allowed.
+         */
+        public Builder inCategories(Set<String> categoryIds) {
+            if (categoryIds.isEmpty()) return this;
+            return inCategories(CategoryOrdinals.get().fill(new BitSet(), categoryIds));
+        }
+
+        /**
+         * inCategories keeps items whose CategoryOrdinals ordinal is set in
+         * ordinals, so each item is one bit test. An empty set adds no
+         * clause. The bits must not change while the query is in use.
+         */
+        public Builder inCategories(BitSet ordinals) {
+            if (ordinals.isEmpty()) return this;
+            clauses.add(new Clause(COST_BITS) {
+                @Override boolean test(Item item) {
+                    int ordinal = item.categoryOrdinal();
+                    return ordinal >= 0 && ordinals.get(ordinal);
+                }
+            });
+            return this;
+        }
+
+        /**
+         * nameContains keeps items whose name contains the text, ignoring
+         * case. With an index the matching keys are looked up once before a
+         * list is checked, so each item is only a set lookup; without one
+         * every name is searched. Empty text adds no clause.
+         * @param names the index over the items' names, or null
+         */
+        public Builder nameContains(String text, NameIndex names) {
+            String query = (text == null) ? "" : text.trim().toLowerCase(Locale.US);
+            if (query.isEmpty()) return this;
+            if (names == null) {
+                clauses.add(new Clause(COST_TEXT) {
+                    @Override boolean test(Item item) {
+                        String name = item.getName();
+                        return name != null && name.toLowerCase(Locale.US).contains(query);
+                    }
+                });
+            } else {
+                clauses.add(new IndexedNameClause(query, names));
+            }
+            return this;
+        }
+
+        /**
+         * priceBetween keeps items priced from min to max, both included.
+         */
+        public Builder priceBetween(double min, double max) {
+            clauses.add(new Clause(COST_NUMBER) {
+                @Override boolean test(Item item) {
+                    return item.getPrice() >= min && item.getPrice() <= max;
+                }
+            });
+            return this;
+        }
+
+        /**
+         * freeOnly keeps items that cost nothing.
+         */
+        public Builder freeOnly() {
+            clauses.add(new Clause(COST_NUMBER) {
+                @Override boolean test(Item item) { return item.getPrice() == 0.0; }
+            });
+            return this;
+        }
+
+        /**
+         * postedSince keeps items created at or after the given time.
+         */
+        public Builder postedSince(long timeMillis) {
+            clauses.add(new Clause(COST_NUMBER) {
+                @Override boolean test(Item item) { return item.getCreationTime() >= timeMillis; }
+            });
+            return this;
+        }
+
+        /**
+         * orderBy sorts the result of run(). Without it the result keeps
+         * the order of the input.
+         */
+        public Builder orderBy(Comparator<Item> comparator) {
+            order = comparator;
+            return this;
+        }
+
+        public Query build() {
+            List<Clause> sorted = new ArrayList<>(clauses);
+            // stable, so clauses of the same cost keep the order they were added in
+            sorted.sort(Comparator.comparingInt(c -> c.cost));
+            return new Query(sorted, order);
+        }
+    }
+
+    /**
+     * Query is a built, immutable query.
+     */
+    public static final class Query {
+        private final Clause[] clauses;
+        private final Comparator<Item> order;
+
+        private Query(List<Clause> clauses, Comparator<Item> order) {
+            this.clauses = clauses.toArray(new Clause[0]);
+            this.order = order;
+        }
+
+        /**
+         * isEmpty tells if the query has no clauses, i.e. matches everything.
+         */
+        public boolean isEmpty() { return clauses.length == 0; }
+
+        /**
+         * matches checks one item, for single item changes.
+         */
+        public boolean matches(Item item) {
+            return matchesAll(clauses, item);
+        }
+
+        private static boolean matchesAll(Clause[] clauses, Item item) {
+            for (Clause c : clauses) {
+                if (!c.test(item)) return false;
+            }
+            return true;
+        }
+
+        public List<Item> run(Iterable<Item> items) {
+            return run(items, () -> false);
+        }
+
+        /**
+         * run returns the matching items, ordered by the query's order (or
+         * in input order). It stops early, returning what it has, once
+         * isCancelled is true.
+         */
+        public List<Item> run(Iterable<Item> items, BooleanSupplier isCancelled) {
+            Clause[] run = new Clause[clauses.length];
+            for (int c = 0; c < clauses.length; c++) {
+                run[c] = clauses[c].prepared();
+            }
+            List<Item> result = new ArrayList<>();
+            int i = 0;
+            for (Item item : items) {
+                if (i++ % CANCEL_CHECK_INTERVAL == 0 && isCancelled.getAsBoolean()) {
+                    return result;
+                }
+                if (matchesAll(run, item)) result.add(item);
+            }
+            if (order != null) {
+                result.sort(order);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * IndexedNameClause answers the name clause from a NameIndex. A single
+     * item is looked up directly; for a whole list every matching key is
+     * fetched once, so each item is only a set lookup.
+     */
+    private static final class IndexedNameClause extends Clause {
+        private final String query;
+        private final NameIndex names;
+
+        IndexedNameClause(String query, NameIndex names) {
+            super(COST_SET);
+            this.query = query;
+            this.names = names;
+        }
+
+        @Override
+        boolean test(Item item) {
+            return item.getKey() != null && names.matches(item.getKey(), query);
+        }
+
+        @Override
+        Clause prepared() {
+            // fetched for this run only, as the index keeps changing
+            Set<String> hits = names.search(query);
+            return new Clause(COST_SET) {
+                @Override boolean test(Item item) { return hits.contains(item.getKey()); }
+            };
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package edu.uga.cs.tradeit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ItemTable stores the fields the home feed filters & sorts on as columns
+ * (one array per field), so filters do not follow a pointer per row:
+ *
+ * - creation time & price are long[] & double[], with no object per value
+ * - status & the two confirmed flags are packed into one byte per row
+ * - seller & buyer ids are dictionary-encoded ints, so each distinct id
+ *   string is kept once instead of once per item, & categories are stored
+ *   as their shared CategoryOrdinals ordinal
+ *
+ * Filters run over these arrays directly. Each row also points at its Item,
+ * so the table is the one place the feed reads loaded items from: select()
+ * hands back the matching Items without a second map from key to item.
+ *
+ * The row numbers are also kept sorted in each order (newest, name &
+ * price; the high price order reads the price one backwards). put &
+ * remove move one row with a binary search, so select() only walks the
+ * order it is asked for & never sorts, & a price range in a price order
+ * is found with two more binary searches instead of a scan.
+ *
+ * Removing a row moves the last row into its place, so rows stay packed &
+ * a row number is only meaningful inside one call. Methods are synchronized
+ * so the table can be read on a background thread while the main thread
+ * keeps it up to date.
+ */
+public class ItemTable {
+
+    public static final int ORDER_NEWEST = 0;
+    public static final int ORDER_NAME = 1;
+    public static final int ORDER_PRICE_LOW = 2;
+    public static final int ORDER_PRICE_HIGH = 3;
+
+    // the low two bits of a row's flags hold its status
+    private static final int STATUS_MASK = 0b11;
+    private static final int STATUS_OTHER = 0;
+    private static final int STATUS_AVAILABLE = 1;
+    private static final int STATUS_PENDING = 2;
+    private static final int STATUS_COMPLETED = 3;
+    private static final int BUYER_CONFIRMED = 1 << 2;
+    private static final int SELLER_CONFIRMED = 1 << 3;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    // the orders kept sorted; ORDER_PRICE_HIGH is ORDER_PRICE_LOW backwards
+    private static final int[] STORED_ORDERS = { ORDER_NEWEST, ORDER_NAME, ORDER_PRICE_LOW };
+
+    private final StringDictionary users = new StringDictionary();
+
+    private String[] keys = new String[INITIAL_CAPACITY];
+    private Item[] items = new Item[INITIAL_CAPACITY];
+    private long[] creationTimes = new long[INITIAL_CAPACITY];
+    private double[] prices = new double[INITIAL_CAPACITY];
+    private int[] sellers = new int[INITIAL_CAPACITY];
+    private int[] buyers = new int[INITIAL_CAPACITY];
+    private int[] categoryOrdinals = new int[INITIAL_CAPACITY];
+    private byte[] flags = new byte[INITIAL_CAPACITY];
+    private String[] nameKeys = new String[INITIAL_CAPACITY];
+    private int size = 0;
+
+    // the first size row numbers in each stored order, by STORED_ORDERS slot
+    private final int[][] sorted = new int[STORED_ORDERS.length][INITIAL_CAPACITY];
+    private final RowComparator[] comparators = new RowComparator[STORED_ORDERS.length];
+
+    // item key -> its row
+    private final Map<String, Integer> rowOf = new HashMap<>();
+
+    public ItemTable() {
+        for (int slot = 0; slot < STORED_ORDERS.length; slot++) {
+            comparators[slot] = comparator(STORED_ORDERS[slot]);
+        }
+    }
+
+    /**
+     * put adds an item, or overwrites its row if it is already here.
+     */
+    public synchronized void put(Item item) {
+        Integer existing = rowOf.get(item.getKey());
+        int row;
+        if (existing != null) {
+            row = existing;
+            // taken out with its old values & put back with the new ones
+            unlink(row, size);
+        } else {
+            if (size == keys.length) grow();
+            row = size++;
+            rowOf.put(item.getKey(), row);
+        }
+
+        keys[row] = item.getKey();
+        items[row] = item;
+        creationTimes[row] = item.getCreationTime();
+        prices[row] = item.getPrice();
+        sellers[row] = users.encode(item.getSellerId());
+        buyers[row] = users.encode(item.getBuyerId());
+        categoryOrdinals[row] = item.categoryOrdinal();
+        flags[row] = packFlags(item);
+        nameKeys[row] = item.nameKey();
+        link(row, size - 1);
+    }
+
+    /**
+     * remove takes the item with the given key out of the table.
+     */
+    public synchronized void remove(String key) {
+        Integer row = rowOf.remove(key);
+        if (row == null) return;
+        unlink(row, size);
+        int last = --size;
+        if (row != last) {
+            // found by its values, which are still in place
+            renumber(last, row, size);
+            keys[row] = keys[last];
+            items[row] = items[last];
+            creationTimes[row] = creationTimes[last];
+            prices[row] = prices[last];
+            sellers[row] = sellers[last];
+            buyers[row] = buyers[last];
+            categoryOrdinals[row] = categoryOrdinals[last];
+            flags[row] = flags[last];
+            nameKeys[row] = nameKeys[last];
+            rowOf.put(keys[row], row);
+        }
+        keys[last] = null;
+        items[last] = null;
+        nameKeys[last] = null;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(items, 0, size, null);
+        Arrays.fill(nameKeys, 0, size, null);
+        size = 0;
+        rowOf.clear();
+    }
+
+    public synchronized int size() { return size; }
+
+    public synchronized boolean contains(String key) { return rowOf.containsKey(key); }
+
+    /**
+     * get returns the item stored with the given key, or null.
+     */
+    public synchronized Item get(String key) {
+        Integer row = rowOf.get(key);
+        return (row == null) ? null : items[row];
+    }
+
+    /**
+     * select returns the keys of the rows passing the filter, in the given
+     * order (one of the ORDER_ constants).
+     */
+    public synchronized List<String> select(Filter filter, int order) {
+        return select(filter, order, keys);
+    }
+
+    /**
+     * selectItems returns the items passing the filter, in the given order.
+     */
+    public synchronized List<Item> selectItems(Filter filter, int order) {
+        return select(filter, order, items);
+    }
+
+    // the values in column of the rows passing the filter, in order
+    private <T> List<T> select(Filter filter, int order, T[] column) {
+        int status = statusCode(filter.status);
+        int seller = users.codeOf(filter.sellerId);
+        int buyer = users.codeOf(filter.buyerId);
+        // a user no row has ever named cannot match anything
+        if ((filter.sellerId != null && seller == StringDictionary.NONE)
+                || (filter.buyerId != null && buyer == StringDictionary.NONE)) {
+            return new ArrayList<>();
+        }
+        BitSet allowed = filter.categories;
+
+        boolean backwards = (order == ORDER_PRICE_HIGH);
+        int slot = slotOf(order);
+        int[] rows = sorted[slot];
+        int from = 0;
+        int to = size;
+        if (STORED_ORDERS[slot] == ORDER_PRICE_LOW) {
+            // the price range is one run of the price order
+            from = firstPriced(filter.minPrice, false);
+            to = firstPriced(filter.maxPrice, true);
+        }
+        List<T> result = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            int row = rows[backwards ? from + to - 1 - i : i];
+            // number compares first, then the int codes
+            double price = prices[row];
+            if (price < filter.minPrice || price > filter.maxPrice) continue;
+            if (creationTimes[row] < filter.postedSince) continue;
+            if (filter.status != null && (flags[row] & STATUS_MASK) != status) continue;
+            if (filter.sellerId != null && sellers[row] != seller) continue;
+            if (filter.buyerId != null && buyers[row] != buyer) continue;
+            if (allowed != null) {
+                int ordinal = categoryOrdinals[row];
+                if (ordinal < 0 || !allowed.get(ordinal)) continue;
+            }
+            result.add(column[row]);
+        }
+        return result;
+    }
+
+    /**
+     * firstPriced finds the first spot in the price order whose price is at
+     * least price, or above it if after is set.
+     */
+    private int firstPriced(double price, boolean after) {
+        int[] rows = sorted[slotOf(ORDER_PRICE_LOW)];
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = Double.compare(prices[rows[mid]], price);
+            if (c < 0 || (after && c == 0)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Filter is the set of conditions select() checks. Every condition is
+     * off until it is set.
+     */
+    public static final class Filter {
+        private String status;
+        private String sellerId;
+        private String buyerId;
+        private BitSet categories;
+        private double minPrice = Double.NEGATIVE_INFINITY;
+        private double maxPrice = Double.POSITIVE_INFINITY;
+        private long postedSince = Long.MIN_VALUE;
+
+        /**
+         * withStatus keeps rows with the given status, which must be
+         * available, pending or completed.
+         */
+        public Filter withStatus(String status) {
+            this.status = status;
+            return this;
+        }
+
+        public Filter soldBy(String uid) {
+            this.sellerId = uid;
+            return this;
+        }
+
+        public Filter boughtBy(String uid) {
+            this.buyerId = uid;
+            return this;
+        }
+
+        /**
+         * inCategories keeps rows in one of the given categories. An empty
+         * set leaves the condition off, like ItemQueryEngine.
+         */
+        public Filter inCategories(Set<String> ids) {
+            return inCategories(CategoryOrdinals.get().fill(new BitSet(), ids));
+        }
+
+        /**
+         * inCategories keeps rows whose category ordinal is set in
+         * ordinals. The bits must not change while select() runs.
+         */
+        public Filter inCategories(BitSet ordinals) {
+            this.categories = ordinals.isEmpty() ? null : ordinals;
+            return this;
+        }
+
+        public Filter priceBetween(double min, double max) {
+            this.minPrice = min;
+            this.maxPrice = max;
+            return this;
+        }
+
+        public Filter postedSince(long timeMillis) {
+            this.postedSince = timeMillis;
+            return this;
+        }
+    }
+
+    // compares two rows
+    private interface RowComparator {
+        int compare(int a, int b);
+    }
+
+    private RowComparator comparator(int order) {
+        switch (order) {
+            case ORDER_NAME:
+                return (a, b) -> {
+                    int c = nameKeys[a].compareTo(nameKeys[b]);
+                    return (c != 0) ? c : keys[a].compareTo(keys[b]);
+                };
+            case ORDER_PRICE_LOW:
+                return (a, b) -> {
+                    int c = Double.compare(prices[a], prices[b]);
+                    return (c != 0) ? c : keys[a].compareTo(keys[b]);
+                };
+            default:
+                return (a, b) -> {
+                    int c = Long.compare(creationTimes[b], creationTimes[a]);
+                    return (c != 0) ? c : keys[a].compareTo(keys[b]);
+                };
+        }
+    }
+
+    // the STORED_ORDERS slot of an ORDER_ constant
+    private static int slotOf(int order) {
+        switch (order) {
+            case ORDER_NAME: return 1;
+            case ORDER_PRICE_LOW:
+            case ORDER_PRICE_HIGH: return 2;
+            default: return 0;
+        }
+    }
+
+    /**
+     * position finds where a row goes (or is) among the first count rows
+     * of a stored order, with a binary search over the row's values.
+     */
+    private int position(int slot, int row, int count) {
+        int[] rows = sorted[slot];
+        RowComparator cmp = comparators[slot];
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cmp.compare(rows[mid], row) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // adds a row to every stored order, which hold count rows so far
+    private void link(int row, int count) {
+        for (int slot = 0; slot < STORED_ORDERS.length; slot++) {
+            int[] rows = sorted[slot];
+            int at = position(slot, row, count);
+            System.arraycopy(rows, at, rows, at + 1, count - at);
+            rows[at] = row;
+        }
+    }
+
+    // takes a row out of every stored order, which hold count rows
+    private void unlink(int row, int count) {
+        for (int slot = 0; slot < STORED_ORDERS.length; slot++) {
+            int[] rows = sorted[slot];
+            int at = position(slot, row, count);
+            System.arraycopy(rows, at + 1, rows, at, count - at - 1);
+        }
+    }
+
+    // gives a row a new number in every stored order; the sort values are
+    // the same, so it keeps its place
+    private void renumber(int from, int to, int count) {
+        for (int slot = 0; slot < STORED_ORDERS.length; slot++) {
+            sorted[slot][position(slot, from, count)] = to;
+        }
+    }
+
+    private static byte packFlags(Item item) {
+        int bits = statusCode(item.getStatus());
+        if (item.isBuyerConfirmed()) bits |= BUYER_CONFIRMED;
+        if (item.isSellerConfirmed()) bits |= SELLER_CONFIRMED;
+        return (byte) bits;
+    }
+
+    private static int statusCode(String status) {
+        if (status == null) return STATUS_OTHER;
+        switch (status) {
+            case "available": return STATUS_AVAILABLE;
+            case "pending": return STATUS_PENDING;
+            case "completed": return STATUS_COMPLETED;
+            default: return STATUS_OTHER;
+        }
+    }
+
+    private void grow() {
+        int capacity = keys.length * 2;
+        keys = Arrays.copyOf(keys, capacity);
+        items = Arrays.copyOf(items, capacity);
+        creationTimes = Arrays.copyOf(creationTimes, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        sellers = Arrays.copyOf(sellers, capacity);
+        buyers = Arrays.copyOf(buyers, capacity);
+        categoryOrdinals = Arrays.copyOf(categoryOrdinals, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        nameKeys = Arrays.copyOf(nameKeys, capacity);
+        for (int slot = 0; slot < STORED_ORDERS.length; slot++) {
+            sorted[slot] = Arrays.copyOf(sorted[slot], capacity);
+        }
+    }
+}
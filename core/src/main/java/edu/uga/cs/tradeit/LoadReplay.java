@@ -0,0 +1,395 @@
+package edu.uga.cs.tradeit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * LoadReplay sends a stream of marketplace operations to a DataSource at a
+ * fixed rate & measures how long each takes. The operations make the same
+ * calls as the app's screens do:
+ *
+ * - CREATE lists a new item (AddItemDialogFragment)
+ * - EDIT changes the name, price & description of an available item
+ *   (EditItemDialogFragment)
+ * - REQUEST requests an available item in a transaction (ItemRequest)
+ * - CONFIRM confirms one side of a pending item in a transaction &
+ *   completes it once both sides have (ItemConfirm)
+ *
+ * Sellers, buyers & categories are picked with the same skew as the
+ * seeded marketplace. Operations are sent on a fixed schedule whether or
+ * not earlier ones have finished, & latency is counted from the time an
+ * operation was due, so a source that falls behind shows it in the
+ * latencies instead of quietly sending fewer operations.
+ *
+ * A replay is run from one thread; completions may come on any thread.
+ */
+public class LoadReplay {
+
+    public enum Op { CREATE, EDIT, REQUEST, CONFIRM }
+
+    private final DataSource source;
+    private final Map<String, User> users;
+    private final List<String> uids;
+    private final List<Category> categories;
+    private final Random random;
+    private final MarketplaceSeeder.Zipf sellers;
+    private final MarketplaceSeeder.Zipf buyers;
+    private final MarketplaceSeeder.Zipf popularity;
+
+    // what the replay expects the source to hold, kept by the sending thread
+    private final List<Item> available = new ArrayList<>();
+    private final List<Item> pending = new ArrayList<>();
+
+    private final int[] weights = { 20, 30, 30, 20 };
+    private int totalWeight = 100;
+
+    /**
+     * Creates a replay against a source that already holds the given
+     * marketplace.
+     */
+    public LoadReplay(DataSource source, MarketplaceSeeder.Marketplace market, long seed) {
+        this.source = source;
+        this.users = market.users;
+        this.uids = market.uids();
+        this.categories = market.categories;
+        this.random = new Random(seed);
+        this.sellers = new MarketplaceSeeder.Zipf(uids.size(), 1.1);
+        this.buyers = new MarketplaceSeeder.Zipf(uids.size(), 0.8);
+        this.popularity = new MarketplaceSeeder.Zipf(categories.size(), 1.0);
+        for (Item item : market.items) {
+            if ("available".equals(item.getStatus())) {
+                available.add(copyOf(item));
+            } else if ("pending".equals(item.getStatus())) {
+                pending.add(copyOf(item));
+            }
+        }
+    }
+
+    /**
+     * mix sets the relative weights of the operations, e.g. 1, 2, 2, 1.
+     */
+    public LoadReplay mix(int create, int edit, int request, int confirm) {
+        int[] w = { create, edit, request, confirm };
+        int total = 0;
+        for (int v : w) {
+            if (v < 0) throw new IllegalArgumentException("weights must be >= 0");
+            total += v;
+        }
+        if (total == 0) throw new IllegalArgumentException("at least one weight must be > 0");
+        System.arraycopy(w, 0, weights, 0, w.length);
+        totalWeight = total;
+        return this;
+    }
+
+    /**
+     * run sends the given number of operations at the given rate per
+     * second & waits for all of them to finish.
+     */
+    public Report run(double ratePerSecond, int operations) throws InterruptedException {
+        if (ratePerSecond <= 0) throw new IllegalArgumentException("rate must be > 0");
+        Report report = new Report(operations);
+        CountDownLatch done = new CountDownLatch(operations);
+        double interval = 1e9 / ratePerSecond;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            long due = start + (long) (i * interval);
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Op op = pick();
+            CompletableFuture<Boolean> result;
+            try {
+                result = send(op);
+            } catch (RuntimeException e) {
+                result = new CompletableFuture<>();
+                result.completeExceptionally(e);
+            }
+            result.whenComplete((applied, error) -> {
+                report.record(op, System.nanoTime() - due, error != null,
+                        error == null && !applied);
+                done.countDown();
+            });
+        }
+        long sent = System.nanoTime();
+        done.await();
+        report.finish(sent - start, System.nanoTime() - start);
+        return report;
+    }
+
+    private Op pick() {
+        int roll = random.nextInt(totalWeight);
+        Op[] ops = Op.values();
+        for (int i = 0; i < ops.length; i++) {
+            roll -= weights[i];
+            if (roll < 0) return runnable(ops[i]) ? ops[i] : Op.CREATE;
+        }
+        return Op.CREATE;
+    }
+
+    // edits & requests need an available item, confirms a pending one
+    private boolean runnable(Op op) {
+        switch (op) {
+            case EDIT:
+            case REQUEST:
+                return !available.isEmpty();
+            case CONFIRM:
+                return !pending.isEmpty();
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * send starts one operation. The future tells if it was applied, or
+     * false if it lost a race the way a user could (e.g. the item was
+     * requested by someone else first).
+     */
+    private CompletableFuture<Boolean> send(Op op) {
+        switch (op) {
+            case EDIT:
+                return edit(available.get(random.nextInt(available.size())));
+            case REQUEST:
+                return request(takeRandom(available));
+            case CONFIRM:
+                return confirm(random.nextInt(pending.size()));
+            default:
+                return create();
+        }
+    }
+
+    private CompletableFuture<Boolean> create() {
+        String sellerId = uids.get(sellers.next(random));
+        Category category = categories.get(popularity.next(random));
+        Item item = new Item(sellerId, MarketplaceSeeder.itemName(random), category.getKey(),
+                System.currentTimeMillis(), MarketplaceSeeder.price(random), "available",
+                "listed during replay");
+        item.setKey(source.items().newKey());
+        item.setCategoryTitle(category.getTitle());
+        item.setSellerName(users.get(sellerId).getName());
+        available.add(item);
+
+        Map<String, Object> updates = new HashMap<>();
+        updates.put(DataSource.Type.ITEM.path() + "/" + item.getKey(), item);
+        addStatusChange(updates, item.getCategoryId(), null, "available");
+        return source.update(updates).thenApply(v -> true);
+    }
+
+    private CompletableFuture<Boolean> edit(Item item) {
+        item.setName(MarketplaceSeeder.itemName(random));
+        item.setPrice(MarketplaceSeeder.price(random));
+        item.setDescription("edited " + random.nextInt(1000));
+        item.updateIndexes();
+
+        Map<String, Object> fields = new HashMap<>(item.indexValues());
+        fields.put("name", item.getName());
+        fields.put("price", item.getPrice());
+        fields.put("description", item.getDescription());
+        return source.items().update(item.getKey(), fields).thenApply(v -> true);
+    }
+
+    private CompletableFuture<Boolean> request(Item item) {
+        String buyerId = MarketplaceSeeder.buyerFor(item.getSellerId(), uids, buyers, random);
+        if (buyerId == null) {
+            // a one-user marketplace has no one to buy from
+            available.add(item);
+            return CompletableFuture.completedFuture(false);
+        }
+        item.setBuyerId(buyerId);
+        item.setStatus("pending");
+        item.setBuyerConfirmed(false);
+        item.setSellerConfirmed(false);
+        item.updateIndexes();
+        pending.add(item);
+
+        String key = item.getKey();
+        return source.items().transact(key, current -> {
+            if (!"available".equals(current.getStatus())
+                    || buyerId.equals(current.getSellerId())) {
+                return null;
+            }
+            current.setKey(key);
+            current.setBuyerId(buyerId);
+            current.setStatus("pending");
+            current.setBuyerConfirmed(false);
+            current.setSellerConfirmed(false);
+            current.updateIndexes();
+            return current;
+        }).thenCompose(stored -> {
+            if (stored == null || !buyerId.equals(stored.getBuyerId())) {
+                return CompletableFuture.completedFuture(false);
+            }
+            // only the winning request moves the category count
+            Map<String, Object> counts = new HashMap<>();
+            addStatusChange(counts, stored.getCategoryId(), "available", "pending");
+            return source.update(counts).thenApply(v -> true);
+        });
+    }
+
+    private CompletableFuture<Boolean> confirm(int index) {
+        Item item = pending.get(index);
+        // the first side is either party, the second is the other one
+        boolean buyerSide = item.isSellerConfirmed()
+                || (!item.isBuyerConfirmed() && random.nextBoolean());
+        if (buyerSide) {
+            item.setBuyerConfirmed(true);
+        } else {
+            item.setSellerConfirmed(true);
+        }
+        if (item.isBuyerConfirmed() && item.isSellerConfirmed()) {
+            takeAt(pending, index);
+        }
+
+        String key = item.getKey();
+        return source.items().transact(key, current -> {
+            if (!"pending".equals(current.getStatus())) return null;
+            current.setKey(key);
+            if (buyerSide) {
+                current.setBuyerConfirmed(true);
+            } else {
+                current.setSellerConfirmed(true);
+            }
+            if (current.isBuyerConfirmed() && current.isSellerConfirmed()) {
+                current.setStatus("completed");
+                current.updateIndexes();
+            }
+            return current;
+        }).thenCompose(stored -> {
+            if (stored == null) return CompletableFuture.completedFuture(false);
+            if (!"completed".equals(stored.getStatus())) return CompletableFuture.completedFuture(true);
+            // only the confirmation that completed the item moves the count
+            Map<String, Object> counts = new HashMap<>();
+            addStatusChange(counts, stored.getCategoryId(), "pending", "completed");
+            return source.update(counts).thenApply(v -> true);
+        });
+    }
+
+    // the counter changes CategoryCounters adds for a status change
+    private static void addStatusChange(Map<String, Object> updates, String categoryId,
+                                        String oldStatus, String newStatus) {
+        if (oldStatus != null) {
+            updates.put(CategoryCounts.path(categoryId, oldStatus), DataSource.increment(-1));
+        }
+        if (newStatus != null) {
+            updates.put(CategoryCounts.path(categoryId, newStatus), DataSource.increment(1));
+        }
+    }
+
+    private Item takeRandom(List<Item> list) {
+        return takeAt(list, random.nextInt(list.size()));
+    }
+
+    // removes an element in O(1) by moving the last one into its place
+    private static Item takeAt(List<Item> list, int i) {
+        Item last = list.remove(list.size() - 1);
+        if (i == list.size()) return last;
+        return list.set(i, last);
+    }
+
+    private static Item copyOf(Item item) {
+        Item copy = new Item(item.getSellerId(), item.getName(), item.getCategoryId(),
+                item.getCreationTime(), item.getPrice(), item.getStatus(), item.getDescription());
+        copy.setKey(item.getKey());
+        copy.setBuyerId(item.getBuyerId());
+        copy.setBuyerConfirmed(item.isBuyerConfirmed());
+        copy.setSellerConfirmed(item.isSellerConfirmed());
+        copy.setCategoryTitle(item.getCategoryTitle());
+        copy.setSellerName(item.getSellerName());
+        copy.updateIndexes();
+        return copy;
+    }
+
+    /**
+     * Report holds the latencies & outcomes of one run, per operation.
+     */
+    public static class Report {
+        private final Map<Op, long[]> latencies = new EnumMap<>(Op.class);
+        private final int[] counts = new int[Op.values().length];
+        private final int[] failed = new int[Op.values().length];
+        private final int[] lost = new int[Op.values().length];
+        private long sendNanos;
+        private long totalNanos;
+
+        Report(int operations) {
+            for (Op op : Op.values()) {
+                latencies.put(op, new long[Math.max(16, operations / 2)]);
+            }
+        }
+
+        synchronized void record(Op op, long nanos, boolean error, boolean raced) {
+            int i = op.ordinal();
+            long[] samples = latencies.get(op);
+            if (counts[i] == samples.length) {
+                samples = Arrays.copyOf(samples, samples.length * 2);
+                latencies.put(op, samples);
+            }
+            samples[counts[i]++] = nanos;
+            if (error) failed[i]++;
+            if (raced) lost[i]++;
+        }
+
+        synchronized void finish(long sendNanos, long totalNanos) {
+            this.sendNanos = sendNanos;
+            this.totalNanos = totalNanos;
+            for (Op op : Op.values()) {
+                Arrays.sort(latencies.get(op), 0, counts[op.ordinal()]);
+            }
+        }
+
+        public synchronized int count(Op op) { return counts[op.ordinal()]; }
+
+        public synchronized int failed(Op op) { return failed[op.ordinal()]; }
+
+        // operations that lost a race, e.g. a request for an item someone got first
+        public synchronized int lost(Op op) { return lost[op.ordinal()]; }
+
+        public synchronized int total() {
+            int sum = 0;
+            for (int c : counts) sum += c;
+            return sum;
+        }
+
+        /**
+         * rate is the operations per second actually sent.
+         */
+        public synchronized double rate() {
+            return (sendNanos == 0) ? 0 : total() * 1e9 / sendNanos;
+        }
+
+        /**
+         * percentile returns the latency in microseconds that the given
+         * share of an operation's runs finished within, e.g. 0.99.
+         */
+        public synchronized double percentile(Op op, double share) {
+            int n = counts[op.ordinal()];
+            if (n == 0) return 0;
+            int i = (int) Math.min(n - 1, Math.ceil(share * n) - 1);
+            return latencies.get(op)[Math.max(0, i)] / 1e3;
+        }
+
+        @Override
+        public synchronized String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.US, "%d ops in %.2f s (%.0f ops/s sent), drained after %.2f s%n",
+                    total(), sendNanos / 1e9, rate(), totalNanos / 1e9));
+            sb.append(String.format(Locale.US, "%-8s %8s %6s %6s %10s %10s %10s %10s%n",
+                    "op", "count", "lost", "failed", "p50 us", "p95 us", "p99 us", "max us"));
+            for (Op op : Op.values()) {
+                sb.append(String.format(Locale.US, "%-8s %8d %6d %6d %10.1f %10.1f %10.1f %10.1f%n",
+                        op, count(op), lost(op), failed(op), percentile(op, 0.50),
+                        percentile(op, 0.95), percentile(op, 0.99), percentile(op, 1.0)));
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package edu.uga.cs.tradeit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * MarketplaceSeeder makes a repeatable fake marketplace (users, categories
+ * & items) shaped like a real one, to load a DataSource with before
+ * profiling or load testing:
+ *
+ * - listings per seller follow a power law: a few users list hundreds of
+ *   items, most list a handful
+ * - category popularity is Zipfian, so a few categories hold most items
+ * - buyers are skewed the same way, so some users have long transaction
+ *   tabs
+ * - most items are available, the rest are pending (with 0 or 1 sides
+ *   confirmed) or completed
+ *
+ * Every record is filled in the way the app writes it, with the seller
+ * name, category title & composite index fields. The same seed & sizes
+ * always give the same records.
+ */
+public class MarketplaceSeeder {
+
+    // the newest item is made at this time, the rest go back up to a year
+    static final long NOW = 1_700_000_000_000L;
+    private static final long YEAR_MS = 365L * 24 * 60 * 60 * 1000;
+
+    private static final String[] FIRST_NAMES = {
+            "Ava", "Ben", "Chloe", "Dev", "Ella", "Finn", "Grace", "Hugo", "Isla",
+            "Jay", "Kira", "Liam", "Maya", "Noah", "Omar", "Priya", "Quinn", "Rosa",
+            "Sam", "Tara", "Uma", "Vik", "Wren", "Yara", "Zane"
+    };
+    private static final String[] LAST_NAMES = {
+            "Adams", "Brooks", "Chen", "Diaz", "Evans", "Fox", "Garcia", "Hill",
+            "Ito", "Jones", "Khan", "Lee", "Moore", "Nguyen", "Okafor", "Patel",
+            "Reed", "Singh", "Turner", "Walker"
+    };
+    private static final String[] WORDS = {
+            "desk", "lamp", "chair", "bike", "textbook", "calculator", "monitor",
+            "jacket", "guitar", "kettle", "backpack", "printer", "sofa", "poster",
+            "headphones", "mirror", "shelf", "rug", "camera", "skateboard",
+            "microwave", "keyboard", "tent", "blender", "sneakers", "couch", "fan",
+            "speaker", "tablet", "router"
+    };
+    private static final String[] ADJECTIVES = {
+            "used", "new", "vintage", "small", "large", "blue", "red", "wooden",
+            "portable", "broken", "classic", "electric", "foldable", "barely used"
+    };
+    private static final String[] GROUPS = {
+            "Furniture", "Electronics", "Textbooks", "Clothing", "Kitchen", "Sports",
+            "Music", "Decor", "Outdoors", "Games", "Tools", "Bikes", "Dorm", "Art"
+    };
+
+    private final long seed;
+    private int users = 5_000;
+    private int categories = 300;
+    private int items = 100_000;
+    // Zipf exponents; around 1 is what marketplaces usually show
+    private double sellerSkew = 1.1;
+    private double categorySkew = 1.0;
+    private double buyerSkew = 0.8;
+    // shares of the items that are pending & completed, the rest are available
+    private double pendingShare = 0.08;
+    private double completedShare = 0.12;
+
+    public MarketplaceSeeder(long seed) {
+        this.seed = seed;
+    }
+
+    public MarketplaceSeeder users(int users) {
+        this.users = requirePositive(users, "users");
+        return this;
+    }
+
+    public MarketplaceSeeder categories(int categories) {
+        this.categories = requirePositive(categories, "categories");
+        return this;
+    }
+
+    public MarketplaceSeeder items(int items) {
+        if (items < 0) throw new IllegalArgumentException("items must be >= 0");
+        this.items = items;
+        return this;
+    }
+
+    /**
+     * skew sets the Zipf exponents of listings per seller, items per
+     * category & requests per buyer. 0 spreads them evenly.
+     */
+    public MarketplaceSeeder skew(double sellers, double categories, double buyers) {
+        this.sellerSkew = sellers;
+        this.categorySkew = categories;
+        this.buyerSkew = buyers;
+        return this;
+    }
+
+    /**
+     * statusMix sets the shares of pending & completed items. Older items
+     * are more likely to be sold, so the shares are met on average.
+     */
+    public MarketplaceSeeder statusMix(double pending, double completed) {
+        if (pending < 0 || completed < 0 || pending + completed > 1) {
+            throw new IllegalArgumentException("shares must be >= 0 & add up to at most 1");
+        }
+        this.pendingShare = pending;
+        this.completedShare = completed;
+        return this;
+    }
+
+    /**
+     * Marketplace is one generated set of records.
+     */
+    public static class Marketplace {
+        // by uid, in rank order: the first user sells & buys the most
+        public final Map<String, User> users;
+        // in popularity order: the first category holds the most items
+        public final List<Category> categories;
+        public final List<Item> items;
+
+        Marketplace(Map<String, User> users, List<Category> categories, List<Item> items) {
+            this.users = Collections.unmodifiableMap(users);
+            this.categories = Collections.unmodifiableList(categories);
+            this.items = Collections.unmodifiableList(items);
+        }
+
+        /**
+         * uids returns the user ids in rank order.
+         */
+        public List<String> uids() {
+            return new ArrayList<>(users.keySet());
+        }
+
+        /**
+         * countByStatus returns how many items have each status.
+         */
+        public Map<String, Integer> countByStatus() {
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            for (Item item : items) {
+                counts.merge(item.getStatus(), 1, Integer::sum);
+            }
+            return counts;
+        }
+
+        /**
+         * countByCategory returns the item counts of each category, the way
+         * CategoryCounters keeps them.
+         */
+        public Map<String, CategoryCounts> countByCategory() {
+            Map<String, CategoryCounts> counts = new LinkedHashMap<>();
+            for (Item item : items) {
+                CategoryCounts c = counts.computeIfAbsent(item.getCategoryId(), k -> new CategoryCounts());
+                if ("completed".equals(item.getStatus())) {
+                    c.setCompleted(c.getCompleted() + 1);
+                } else if ("pending".equals(item.getStatus())) {
+                    c.setPending(c.getPending() + 1);
+                } else {
+                    c.setAvailable(c.getAvailable() + 1);
+                }
+            }
+            return counts;
+        }
+
+        /**
+         * writeTo stores every record & the category counts in the source.
+         * The future completes once all writes have.
+         */
+        public CompletableFuture<Void> writeTo(DataSource source) {
+            List<CompletableFuture<Void>> writes = new ArrayList<>();
+            for (Map.Entry<String, User> e : users.entrySet()) {
+                writes.add(source.users().set(e.getKey(), e.getValue()));
+            }
+            for (Category category : categories) {
+                writes.add(source.categories().set(category.getKey(), category));
+            }
+            for (Item item : items) {
+                writes.add(source.items().set(item.getKey(), item));
+            }
+            for (Map.Entry<String, CategoryCounts> e : countByCategory().entrySet()) {
+                writes.add(source.counters().set(e.getKey(), e.getValue()));
+            }
+            // the counts are complete, so there is nothing to migrate
+            writes.add(source.migrations().set(CounterBackfill.NAME,
+                    new Migration(Migration.DONE, "seeder", NOW)));
+            return CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0]));
+        }
+    }
+
+    /**
+     * generate makes the records.
+     */
+    public Marketplace generate() {
+        Random random = new Random(seed);
+
+        Map<String, User> userMap = new LinkedHashMap<>();
+        List<String> uids = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            String uid = uid(i);
+            String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+            String last = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            userMap.put(uid, new User(first + " " + last,
+                    (first + "." + last + i + "@example.com").toLowerCase(Locale.US)));
+            uids.add(uid);
+        }
+
+        List<Category> categoryList = new ArrayList<>(categories);
+        for (int i = 0; i < categories; i++) {
+            String title = (i < GROUPS.length)
+                    ? GROUPS[i]
+                    : GROUPS[random.nextInt(GROUPS.length)] + " - "
+                      + capitalize(WORDS[random.nextInt(WORDS.length)]) + " " + i;
+            Category c = new Category(uids.get(random.nextInt(users)), title,
+                    NOW - YEAR_MS - (long) (categories - i) * 60_000);
+            c.setKey(categoryKey(i));
+            categoryList.add(c);
+        }
+
+        Zipf sellers = new Zipf(users, sellerSkew);
+        Zipf buyers = new Zipf(users, buyerSkew);
+        Zipf popularity = new Zipf(categories, categorySkew);
+
+        List<Item> itemList = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            String sellerId = uids.get(sellers.next(random));
+            Category category = categoryList.get(popularity.next(random));
+            // older items are more likely to be sold already
+            long created = NOW - (long) (YEAR_MS * random.nextDouble());
+            double age = (NOW - created) / (double) YEAR_MS;
+
+            Item item = new Item(sellerId, itemName(random), category.getKey(), created,
+                    price(random), "available", "description " + i);
+            item.setKey(itemKey(i));
+            item.setCategoryTitle(category.getTitle());
+            item.setSellerName(userMap.get(sellerId).getName());
+
+            // with a single user there is no one to sell to
+            double roll = (users > 1) ? random.nextDouble() : 1.0;
+            if (roll < completedShare * 2 * age) {
+                item.setBuyerId(buyerFor(sellerId, uids, buyers, random));
+                item.setStatus("completed");
+                item.setBuyerConfirmed(true);
+                item.setSellerConfirmed(true);
+            } else if (roll < (completedShare + pendingShare) * 2 * age) {
+                item.setBuyerId(buyerFor(sellerId, uids, buyers, random));
+                item.setStatus("pending");
+                int side = random.nextInt(3);
+                item.setBuyerConfirmed(side == 1);
+                item.setSellerConfirmed(side == 2);
+            }
+            item.updateIndexes();
+            itemList.add(item);
+        }
+        return new Marketplace(userMap, categoryList, itemList);
+    }
+
+    static String uid(int rank) { return String.format(Locale.US, "u%06d", rank); }
+
+    static String categoryKey(int rank) { return String.format(Locale.US, "c%05d", rank); }
+
+    static String itemKey(int index) { return String.format(Locale.US, "i%08d", index); }
+
+    static String itemName(Random random) {
+        return capitalize(ADJECTIVES[random.nextInt(ADJECTIVES.length)]) + " "
+                + WORDS[random.nextInt(WORDS.length)];
+    }
+
+    /**
+     * price is 0 for about one item in six, otherwise log-normal around $20
+     * & at most $2000, in whole cents.
+     */
+    static double price(Random random) {
+        if (random.nextInt(6) == 0) return 0.0;
+        double dollars = Math.min(2000.0, Math.exp(3.0 + 1.2 * random.nextGaussian()));
+        return Math.max(1, Math.round(dollars * 100)) / 100.0;
+    }
+
+    // a skewed buyer who is not the seller
+    static String buyerFor(String sellerId, List<String> uids, Zipf buyers, Random random) {
+        if (uids.size() < 2) return null;
+        String buyer;
+        do {
+            buyer = uids.get(buyers.next(random));
+        } while (buyer.equals(sellerId));
+        return buyer;
+    }
+
+    private static String capitalize(String s) {
+        return Character.toUpperCase(s.charAt(0)) + s.substring(1);
+    }
+
+    private static int requirePositive(int value, String name) {
+        if (value <= 0) throw new IllegalArgumentException(name + " must be > 0");
+        return value;
+    }
+
+    /**
+     * Zipf picks ranks 0..n-1 with chances proportional to 1 / (rank+1)^s,
+     * by binary search in the cumulative chances.
+     */
+    static final class Zipf {
+        private final double[] cumulative;
+
+        Zipf(int n, double s) {
+            cumulative = new double[n];
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += 1.0 / Math.pow(i + 1, s);
+                cumulative[i] = sum;
+            }
+            for (int i = 0; i < n; i++) {
+                cumulative[i] /= sum;
+            }
+        }
+
+        int next(Random random) {
+            int i = Arrays.binarySearch(cumulative, random.nextDouble());
+            int rank = (i >= 0) ? i : -i - 1;
+            return Math.min(rank, cumulative.length - 1);
+        }
+    }
+}
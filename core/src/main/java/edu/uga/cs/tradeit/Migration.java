@@ -0,0 +1,43 @@
+package edu.uga.cs.tradeit;
+
+/**
+ * Migration records the state of one data migration under
+ * /migrations/{name}, so it runs on one phone at a time & only until it
+ * is done.
+ */
+public class Migration {
+
+    public static final String RUNNING = "running";
+    public static final String DONE = "done";
+
+    private String state;
+    // the app run that claimed it
+    private String owner;
+    // when it was claimed or finished
+    private long time;
+
+    public Migration() {
+        // needed for the database
+    }
+
+    public Migration(String state, String owner, long time) {
+        this.state = state;
+        this.owner = owner;
+        this.time = time;
+    }
+
+    public String getState() { return state; }
+
+    public void setState(String state) { this.state = state; }
+
+    public String getOwner() { return owner; }
+
+    public void setOwner(String owner) { this.owner = owner; }
+
+    public long getTime() { return time; }
+
+    public void setTime(long time) { this.time = time; }
+
+    // not isDone(), which would be stored as a field
+    public boolean done() { return DONE.equals(state); }
+}
@@ -0,0 +1,145 @@
+package edu.uga.cs.tradeit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * NameIndex is an in-memory trigram index over item names. Every lowercase
+ * name is split into its 3 letter pieces & each piece keeps the set of item
+ * keys whose name contains it (a posting list).
+ *
+ * A substring search only has to intersect the posting lists of the query's
+ * pieces, starting with the smallest, & then check the few candidates left,
+ * instead of running contains() over every item name.
+ *
+ * Methods are synchronized so searches can run on a background thread while
+ * the main thread keeps the index up to date.
+ */
+public class NameIndex {
+
+    private static final int GRAM = 3;
+
+    // trigram -> keys of the items whose name contains it
+    private final Map<String, Set<String>> postings = new HashMap<>();
+    // item key -> lowercase name, also used to check the final candidates
+    private final Map<String, String> names = new HashMap<>();
+
+    /**
+     * put adds an item's name to the index, replacing its old name if the
+     * item was already indexed.
+     */
+    public synchronized void put(String key, String name) {
+        String norm = normalize(name);
+        String old = names.get(key);
+        if (norm.equals(old)) return;
+        if (old != null) {
+            remove(key);
+        }
+
+        names.put(key, norm);
+        for (String gram : grams(norm)) {
+            Set<String> keys = postings.get(gram);
+            if (keys == null) {
+                keys = new HashSet<>();
+                postings.put(gram, keys);
+            }
+            keys.add(key);
+        }
+    }
+
+    /**
+     * remove takes an item out of the index.
+     */
+    public synchronized void remove(String key) {
+        String old = names.remove(key);
+        if (old == null) return;
+        for (String gram : grams(old)) {
+            Set<String> keys = postings.get(gram);
+            if (keys == null) continue;
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        postings.clear();
+        names.clear();
+    }
+
+    /**
+     * matches checks if one indexed item's name contains the query.
+     */
+    public synchronized boolean matches(String key, String query) {
+        String name = names.get(key);
+        return name != null && name.contains(normalize(query));
+    }
+
+    /**
+     * search returns the keys of every indexed item whose name contains the
+     * query. Queries shorter than a trigram fall back to checking each name.
+     */
+    public synchronized Set<String> search(String query) {
+        String norm = normalize(query);
+        if (norm.isEmpty()) {
+            return new HashSet<>(names.keySet());
+        }
+
+        Set<String> result = new HashSet<>();
+        if (norm.length() < GRAM) {
+            for (Map.Entry<String, String> e : names.entrySet()) {
+                if (e.getValue().contains(norm)) {
+                    result.add(e.getKey());
+                }
+            }
+            return result;
+        }
+
+        // gather the posting lists, smallest first
+        List<Set<String>> lists = new ArrayList<>();
+        for (String gram : grams(norm)) {
+            Set<String> keys = postings.get(gram);
+            if (keys == null) {
+                // a piece no name has, so nothing can match
+                return result;
+            }
+            lists.add(keys);
+        }
+        Collections.sort(lists, (a, b) -> Integer.compare(a.size(), b.size()));
+
+        Set<String> smallest = lists.get(0);
+        for (String key : smallest) {
+            boolean inAll = true;
+            for (int i = 1; i < lists.size(); i++) {
+                if (!lists.get(i).contains(key)) {
+                    inAll = false;
+                    break;
+                }
+            }
+            // all pieces present does not mean they are in order, so check
+            if (inAll && names.get(key).contains(norm)) {
+                result.add(key);
+            }
+        }
+        return result;
+    }
+
+    private static String normalize(String s) {
+        return (s == null) ? "" : s.trim().toLowerCase(Locale.US);
+    }
+
+    private static Set<String> grams(String norm) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= norm.length(); i++) {
+            grams.add(norm.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,147 @@
+package edu.uga.cs.tradeit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PriceIndex keeps item prices in a sorted double[] with the item keys in a
+ * parallel String[], ordered by price & then by key (the same order as
+ * Item.PRICE_LOW_FIRST). A map from key to price finds an item's position
+ * again with a binary search when it changes or is removed.
+ *
+ * A price range is two binary searches plus a copy of the slice between
+ * them, & both price sorts are just that slice read forwards or backwards,
+ * so neither needs a pass over every item.
+ *
+ * Methods are synchronized so ranges can be read on a background thread
+ * while the main thread keeps the index up to date.
+ */
+public class PriceIndex {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private double[] prices = new double[INITIAL_CAPACITY];
+    private String[] keys = new String[INITIAL_CAPACITY];
+    private int size = 0;
+    // item key -> its price in the arrays, used to find its position
+    private final Map<String, Double> priceOf = new HashMap<>();
+
+    /**
+     * put adds an item's price, or moves the item if its price changed.
+     */
+    public synchronized void put(String key, double price) {
+        Double old = priceOf.get(key);
+        if (old != null) {
+            if (Double.compare(old, price) == 0) return;
+            removeAt(position(old, key));
+        }
+
+        int pos = -(position(price, key) + 1);
+        if (size == prices.length) {
+            prices = Arrays.copyOf(prices, size * 2);
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        System.arraycopy(prices, pos, prices, pos + 1, size - pos);
+        System.arraycopy(keys, pos, keys, pos + 1, size - pos);
+        prices[pos] = price;
+        keys[pos] = key;
+        size++;
+        priceOf.put(key, price);
+    }
+
+    /**
+     * remove takes an item out of the index.
+     */
+    public synchronized void remove(String key) {
+        Double old = priceOf.remove(key);
+        if (old == null) return;
+        removeAt(position(old, key));
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(keys, 0, size, null);
+        size = 0;
+        priceOf.clear();
+    }
+
+    public synchronized int size() { return size; }
+
+    /**
+     * countBetween returns how many items are priced from min to max, both
+     * included, without copying them.
+     */
+    public synchronized int countBetween(double min, double max) {
+        return Math.max(0, upperBound(max) - lowerBound(min));
+    }
+
+    /**
+     * keysBetween returns the keys of the items priced from min to max,
+     * both included, cheapest first or most expensive first. Ties are in
+     * key order, reversed along with the rest when descending.
+     */
+    public synchronized List<String> keysBetween(double min, double max, boolean descending) {
+        int from = lowerBound(min);
+        int to = upperBound(max);
+        List<String> result = new ArrayList<>(Math.max(0, to - from));
+        if (descending) {
+            for (int i = to - 1; i >= from; i--) result.add(keys[i]);
+        } else {
+            for (int i = from; i < to; i++) result.add(keys[i]);
+        }
+        return result;
+    }
+
+    private void removeAt(int pos) {
+        System.arraycopy(prices, pos + 1, prices, pos, size - pos - 1);
+        System.arraycopy(keys, pos + 1, keys, pos, size - pos - 1);
+        size--;
+        keys[size] = null;
+    }
+
+    /**
+     * position finds (price, key) like Arrays.binarySearch: its index if it
+     * is here, otherwise -(insertion point) - 1.
+     */
+    private int position(double price, String key) {
+        int lo = 0;
+        int hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = Double.compare(prices[mid], price);
+            if (c == 0) c = keys[mid].compareTo(key);
+            if (c < 0) {
+                lo = mid + 1;
+            } else if (c > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    // the first position priced at or above min
+    private int lowerBound(double min) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Double.compare(prices[mid], min) < 0) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // the first position priced above max
+    private int upperBound(double max) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Double.compare(prices[mid], max) <= 0) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,53 @@
+package edu.uga.cs.tradeit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * StringDictionary gives each distinct string a small int code, starting at
+ * 0 & counting up, so a column of repeated ids (sellers, categories) can be
+ * stored as an int[] that points at one shared copy of each string.
+ *
+ * Codes are never reused or taken back, so a code stays valid for as long
+ * as the dictionary lives. null is never stored & has the code NONE.
+ */
+public class StringDictionary {
+
+    public static final int NONE = -1;
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    /**
+     * encode returns the code of value, adding it if it is new.
+     */
+    public int encode(String value) {
+        if (value == null) return NONE;
+        Integer code = codes.get(value);
+        if (code != null) return code;
+        int next = values.size();
+        codes.put(value, next);
+        values.add(value);
+        return next;
+    }
+
+    /**
+     * codeOf returns the code of value, or NONE if it was never added.
+     */
+    public int codeOf(String value) {
+        if (value == null) return NONE;
+        Integer code = codes.get(value);
+        return (code == null) ? NONE : code;
+    }
+
+    /**
+     * decode returns the shared copy of the string with the given code.
+     */
+    public String decode(int code) {
+        return (code == NONE) ? null : values.get(code);
+    }
+
+    public int size() { return values.size(); }
+}
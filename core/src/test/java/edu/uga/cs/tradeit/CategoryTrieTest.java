@@ -0,0 +1,119 @@
+package edu.uga.cs.tradeit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for CategoryTrie: prefix matches, the ranking by active items &
+ * keeping both right as categories are renamed, removed & recounted.
+ */
+public class CategoryTrieTest {
+
+    private CategoryTrie trie;
+
+    @Before
+    public void setUp() {
+        trie = new CategoryTrie(10);
+        trie.update(Arrays.asList(
+                category("books", "Books"),
+                category("bikes", "Bikes"),
+                category("boards", "Board Games"),
+                category("desks", "Desks")));
+    }
+
+    @Test
+    public void suggestMatchesPrefixesIgnoringCase() {
+        assertEquals(Arrays.asList("bikes", "boards", "books"), keys(trie.suggest("b", 10)));
+        assertEquals(Arrays.asList("boards", "books"), keys(trie.suggest("  BO", 10)));
+        assertTrue(trie.suggest("x", 10).isEmpty());
+        assertEquals(4, trie.suggest("", 10).size());
+    }
+
+    @Test
+    public void moreActiveItemsRankFirst() {
+        trie.setActiveItems("books", 5);
+        trie.setActiveItems("boards", 2);
+        assertEquals(Arrays.asList("books", "boards", "bikes"), keys(trie.suggest("b", 10)));
+        assertEquals(Arrays.asList("books", "boards"), keys(trie.suggest("b", 2)));
+
+        trie.setActiveItems("books", 0);
+        assertEquals(Arrays.asList("boards", "bikes", "books"), keys(trie.suggest("b", 10)));
+    }
+
+    @Test
+    public void countsSetBeforeTheCategoryArriveAreKept() {
+        trie.setActiveItems("lamps", 9);
+        List<Category> categories = new ArrayList<>(Arrays.asList(
+                category("books", "Books"),
+                category("bikes", "Bikes"),
+                category("boards", "Board Games"),
+                category("desks", "Desks")));
+        categories.add(category("lamps", "Lamps"));
+        trie.update(categories);
+        assertEquals("lamps", trie.suggest("", 10).get(0).key());
+        assertEquals(9, trie.suggest("la", 10).get(0).activeItems());
+    }
+
+    @Test
+    public void renameMovesTheCategory() {
+        trie.setActiveItems("desks", 3);
+        trie.update(Arrays.asList(
+                category("books", "Books"),
+                category("bikes", "Bikes"),
+                category("boards", "Board Games"),
+                category("desks", "Bookshelves")));
+        assertTrue(trie.suggest("de", 10).isEmpty());
+        // the count follows the category to its new title
+        assertEquals(Arrays.asList("desks", "books"), keys(trie.suggest("book", 10)));
+        assertEquals("Bookshelves", trie.suggest("book", 10).get(0).title());
+    }
+
+    @Test
+    public void missingCategoriesAreRemoved() {
+        trie.update(Arrays.asList(category("books", "Books")));
+        assertEquals(1, trie.size());
+        assertEquals(Arrays.asList("books"), keys(trie.suggest("b", 10)));
+        assertTrue(trie.suggest("d", 10).isEmpty());
+    }
+
+    @Test
+    public void largeNodesKeepTheirRankingUpToDate() {
+        // enough categories under "c" that its best suggestions are cached
+        List<Category> categories = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            categories.add(category("c" + i, String.format("Cat %03d", i)));
+        }
+        trie = new CategoryTrie(5);
+        trie.update(categories);
+        assertEquals(Arrays.asList("c0", "c1", "c2", "c3", "c4"), keys(trie.suggest("cat", 5)));
+
+        trie.setActiveItems("c150", 4);
+        trie.setActiveItems("c42", 7);
+        assertEquals(Arrays.asList("c42", "c150", "c0", "c1", "c2"), keys(trie.suggest("c", 5)));
+
+        categories.set(42, category("c42", "Dog"));
+        trie.update(categories);
+        assertEquals(Arrays.asList("c150", "c0", "c1", "c2", "c3"), keys(trie.suggest("cat", 5)));
+        assertEquals(Arrays.asList("c42"), keys(trie.suggest("dog", 5)));
+    }
+
+    private static List<String> keys(List<CategoryTrie.Suggestion> suggestions) {
+        List<String> keys = new ArrayList<>();
+        for (CategoryTrie.Suggestion s : suggestions) {
+            keys.add(s.key());
+        }
+        return keys;
+    }
+
+    private static Category category(String key, String title) {
+        Category category = new Category("creator", title, 0L);
+        category.setKey(key);
+        return category;
+    }
+}
@@ -0,0 +1,123 @@
+package edu.uga.cs.tradeit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for CounterBackfill: the counters are brought in line with the
+ * items by the phone holding the claim, & counted again once that count
+ * is RECOUNT_MS old.
+ */
+public class CounterBackfillTest {
+
+    private static final long NOW = 1_000_000_000L;
+
+    private InMemoryDataSource source;
+
+    @Before
+    public void setUp() {
+        source = new InMemoryDataSource(Runnable::run);
+        put("a", "books", "available");
+        put("b", "books", "pending");
+        put("c", "books", null);
+        put("d", "bikes", "completed");
+        put("e", null, "available");
+        // a change counted before the backfill ran
+        source.counters().update("books",
+                Collections.singletonMap("pending", DataSource.increment(1))).join();
+        // a counter for a category no item is in any more
+        source.counters().set("desks", new CategoryCounts(3, 0, 0)).join();
+    }
+
+    @Test
+    public void countsMatchTheItems() {
+        assertTrue(backfill("one", NOW).run().join());
+
+        // a missing status counts as available
+        assertCounts("books", 2, 1, 0);
+        assertCounts("bikes", 0, 0, 1);
+        assertCounts("desks", 0, 0, 0);
+        assertTrue(source.migrations().get(CounterBackfill.NAME).join().done());
+
+        // done, so a second run changes nothing
+        put("f", "bikes", "available");
+        assertTrue(backfill("two", NOW).run().join());
+        assertCounts("bikes", 0, 0, 1);
+    }
+
+    @Test
+    public void anOldCountIsCountedAgain() {
+        assertTrue(backfill("one", NOW).run().join());
+        // a status change whose counter write never arrived
+        put("a", "books", "pending");
+        assertCounts("books", 2, 1, 0);
+
+        long later = NOW + CounterBackfill.RECOUNT_MS;
+        assertTrue(backfill("two", later).run().join());
+        assertCounts("books", 1, 2, 0);
+        Migration state = source.migrations().get(CounterBackfill.NAME).join();
+        assertTrue(state.done());
+        assertEquals("two", state.getOwner());
+        assertEquals(later, state.getTime());
+    }
+
+    @Test
+    public void aRecountIsNotRepeatedRightAway() {
+        source.migrations().set(CounterBackfill.NAME,
+                new Migration(Migration.DONE, "old", NOW)).join();
+        long later = NOW + CounterBackfill.RECOUNT_MS;
+
+        CounterBackfill first = backfill("one", later);
+        CounterBackfill second = backfill("two", later);
+        assertTrue(first.run().join());
+        assertCounts("books", 2, 1, 0);
+        // "one" just counted, so "two" leaves the counts alone
+        put("f", "books", "available");
+        assertTrue(second.run().join());
+        assertCounts("books", 2, 1, 0);
+        assertEquals("one", source.migrations().get(CounterBackfill.NAME).join().getOwner());
+    }
+
+    @Test
+    public void aFreshClaimIsNotTakenOver() {
+        source.migrations().set(CounterBackfill.NAME,
+                new Migration(Migration.RUNNING, "other", NOW - 1000)).join();
+
+        assertFalse(backfill("one", NOW).run().join());
+        assertEquals("other", source.migrations().get(CounterBackfill.NAME).join().getOwner());
+        assertCounts("books", 0, 1, 0);
+    }
+
+    @Test
+    public void aStaleClaimIsTakenOver() {
+        source.migrations().set(CounterBackfill.NAME,
+                new Migration(Migration.RUNNING, "other", NOW - CounterBackfill.STALE_MS)).join();
+
+        assertTrue(backfill("one", NOW).run().join());
+        Migration state = source.migrations().get(CounterBackfill.NAME).join();
+        assertTrue(state.done());
+        assertEquals("one", state.getOwner());
+        assertCounts("books", 2, 1, 0);
+    }
+
+    private CounterBackfill backfill(String owner, long now) {
+        return new CounterBackfill(source, owner, () -> now);
+    }
+
+    private void assertCounts(String categoryId, long available, long pending, long completed) {
+        CategoryCounts counts = source.counters().get(categoryId).join();
+        if (counts == null) counts = new CategoryCounts();
+        assertEquals(available, counts.getAvailable());
+        assertEquals(pending, counts.getPending());
+        assertEquals(completed, counts.getCompleted());
+    }
+
+    private void put(String key, String categoryId, String status) {
+        Item item = new Item("seller", "item " + key, categoryId, 0L, 1.0, status, null);
+        source.items().set(key, item).join();
+    }
+}
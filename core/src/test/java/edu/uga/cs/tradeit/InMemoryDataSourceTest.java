@@ -0,0 +1,182 @@
+package edu.uga.cs.tradeit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for InMemoryDataSource: query ordering & ranges, child events,
+ * multi-path updates, increments & create. Callbacks run on the writing
+ * thread, so every write is done & reported when it returns.
+ */
+public class InMemoryDataSourceTest {
+
+    private InMemoryDataSource source;
+    private DataSource.Ref<Item> items;
+
+    @Before
+    public void setUp() {
+        source = new InMemoryDataSource(Runnable::run);
+        items = source.items();
+        put("a", "available", 5.0);
+        put("b", "pending", 1.0);
+        put("c", "available", 3.0);
+        put("d", "available", 3.0);
+    }
+
+    @Test
+    public void orderByChildSortsByValueThenKey() {
+        assertEquals(Arrays.asList("b", "c", "d", "a"),
+                keys(items.orderByChild("price").get().join()));
+    }
+
+    @Test
+    public void equalToKeepsOneValue() {
+        assertEquals(Arrays.asList("a", "c", "d"),
+                keys(items.orderByChild("status").equalTo("available").get().join()));
+        assertTrue(items.orderByChild("status").equalTo("completed").get().join().isEmpty());
+    }
+
+    @Test
+    public void startAfterPagesByValueAndKey() {
+        DataSource.Query<Item> byPrice = items.orderByChild("price");
+        assertEquals(Arrays.asList("b", "c"), keys(byPrice.limitToFirst(2).get().join()));
+        // "d" has the same price as the last row read, so only its key tells them apart
+        assertEquals(Arrays.asList("d", "a"),
+                keys(byPrice.startAfter(3.0, "c").limitToFirst(2).get().join()));
+        assertEquals(Arrays.asList("c", "d"),
+                keys(byPrice.startAt(3.0).endAt(3.0, "d").get().join()));
+    }
+
+    @Test
+    public void endAtNullReadsChildrenMissingTheField() {
+        Item legacy = new Item();
+        legacy.setStatus("available");
+        items.set("e", legacy).join();
+
+        assertEquals(Collections.singletonList("e"),
+                keys(items.orderByChild("statusTime").endAt(null).get().join()));
+        assertTrue(items.orderByChild("statusTime").startAfter(null, "e")
+                .endAt(null).get().join().isEmpty());
+    }
+
+    @Test
+    public void childListenerReportsEnteringChangingAndLeaving() {
+        List<String> events = new ArrayList<>();
+        DataSource.Registration registration = items.orderByChild("status").equalTo("available")
+                .addChildListener(new DataSource.ChildListener<Item>() {
+                    @Override
+                    public void onChildAdded(String key, Item value) { events.add("added " + key); }
+
+                    @Override
+                    public void onChildChanged(String key, Item value) {
+                        events.add("changed " + key + " " + value.getPrice());
+                    }
+
+                    @Override
+                    public void onChildRemoved(String key, Item value) { events.add("removed " + key); }
+                });
+        assertEquals(Arrays.asList("added a", "added c", "added d"), events);
+
+        events.clear();
+        items.update("a", Collections.singletonMap("price", 7.0)).join();
+        items.update("c", Collections.singletonMap("status", "pending")).join();
+        items.update("b", Collections.singletonMap("status", "available")).join();
+        items.remove("d").join();
+        assertEquals(Arrays.asList("changed a 7.0", "removed c", "added b", "removed d"), events);
+
+        events.clear();
+        registration.remove();
+        items.remove("a").join();
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void updateWritesEveryPathTogether() {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("items/a/status", "pending");
+        updates.put("items/b", null);
+        updates.put(CategoryCounts.path("books", "pending"), DataSource.increment(1));
+        updates.put(CategoryCounts.path("books", "available"), DataSource.increment(-1));
+        source.update(updates).join();
+
+        assertEquals("pending", items.get("a").join().getStatus());
+        assertNull(items.get("b").join());
+        CategoryCounts counts = source.counters().get("books").join();
+        assertEquals(-1, counts.getAvailable());
+        assertEquals(1, counts.getPending());
+    }
+
+    @Test
+    public void badUpdateChangesNothing() {
+        Map<String, Object> overlapping = new HashMap<>();
+        overlapping.put("items/a", null);
+        overlapping.put("items/a/status", "pending");
+        try {
+            source.update(overlapping);
+            fail("overlapping paths were accepted");
+        } catch (IllegalArgumentException expected) {
+            // the whole update is refused
+        }
+
+        Map<String, Object> unknown = new HashMap<>();
+        unknown.put("items/a/status", "pending");
+        unknown.put("nowhere/x", "y");
+        try {
+            source.update(unknown);
+            fail("an unknown node was accepted");
+        } catch (IllegalArgumentException expected) {
+            // the whole update is refused
+        }
+        assertEquals("available", items.get("a").join().getStatus());
+    }
+
+    @Test
+    public void incrementsAddUp() {
+        DataSource.Ref<CategoryCounts> counters = source.counters();
+        counters.update("books", Collections.singletonMap("available", DataSource.increment(2))).join();
+        counters.update("books", Collections.singletonMap("available", DataSource.increment(3))).join();
+        assertEquals(5, counters.get("books").join().getAvailable());
+
+        assertEquals(DataSource.increment(4), DataSource.increment(4));
+        assertEquals(4, ((DataSource.Increment) DataSource.increment(4)).delta());
+    }
+
+    @Test
+    public void createOnlyStoresMissingChildren() {
+        DataSource.Ref<Migration> migrations = source.migrations();
+        assertTrue(migrations.create("m", new Migration(Migration.RUNNING, "one", 1)).join());
+        assertFalse(migrations.create("m", new Migration(Migration.RUNNING, "two", 2)).join());
+        assertEquals("one", migrations.get("m").join().getOwner());
+    }
+
+    @Test
+    public void transactCanAbort() {
+        assertNull(items.transact("a", item -> null).join());
+        assertNull(items.transact("missing", item -> item).join());
+
+        Item committed = items.transact("a", item -> {
+            item.setPrice(9.0);
+            return item;
+        }).join();
+        assertEquals(9.0, committed.getPrice(), 0.0);
+        assertEquals(9.0, items.get("a").join().getPrice(), 0.0);
+    }
+
+    private void put(String key, String status, double price) {
+        Item item = new Item("seller", "item " + key, null, 0L, price, status, null);
+        items.set(key, item).join();
+    }
+
+    private static List<String> keys(Map<String, Item> children) {
+        return new ArrayList<>(children.keySet());
+    }
+}
@@ -0,0 +1,69 @@
+package edu.uga.cs.tradeit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for IndexBackfill: items stored without their index fields get
+ * them, in batches, & items that cannot be indexed do not stop it.
+ */
+public class IndexBackfillTest {
+
+    private InMemoryDataSource source;
+
+    @Before
+    public void setUp() {
+        source = new InMemoryDataSource(Runnable::run);
+    }
+
+    @Test
+    public void legacyItemsGetTheirIndexFields() {
+        int legacy = IndexBackfill.BATCH * 2 + 7;
+        for (int i = 0; i < legacy; i++) {
+            source.items().set(String.format("k%04d", i), legacyItem("seller", i)).join();
+        }
+        Item indexed = new Item("seller", "new", null, 5L, 1.0, "available", null);
+        source.items().set("indexed", indexed).join();
+
+        assertEquals(Integer.valueOf(legacy), new IndexBackfill(source).run().join());
+
+        Map<String, Item> feed = source.items().orderByChild("statusTime")
+                .startAt(Item.indexPrefix("available"))
+                .endAt(Item.indexPrefix("available") + "\uf8ff")
+                .get().join();
+        assertEquals(legacy + 1, feed.size());
+        assertEquals(legacy + 1, source.items().orderByChild("sellerStatus")
+                .equalTo("seller_available").get().join().size());
+
+        // nothing is left to fix
+        assertEquals(Integer.valueOf(0), new IndexBackfill(source).run().join());
+    }
+
+    @Test
+    public void itemsWithoutASellerDoNotStopTheRun() {
+        for (int i = 0; i < IndexBackfill.BATCH + 1; i++) {
+            source.items().set(String.format("k%04d", i), legacyItem(null, i)).join();
+        }
+        source.items().set("z", legacyItem("seller", 1)).join();
+
+        // each is written once (it gets statusTime) & read past after that
+        new IndexBackfill(source).run().join();
+        Item fixed = source.items().get("z").join();
+        assertEquals("seller_available", fixed.getSellerStatus());
+        assertNotNull(fixed.getStatusTime());
+        assertNull(source.items().get("k0000").join().getSellerStatus());
+    }
+
+    private static Item legacyItem(String sellerId, long time) {
+        Item item = new Item();
+        item.setSellerId(sellerId);
+        item.setName("old " + time);
+        item.setCreationTime(time);
+        item.setStatus("available");
+        return item;
+    }
+}
@@ -0,0 +1,192 @@
+package edu.uga.cs.tradeit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for ItemTable: filters, the presorted orders & keeping them sorted
+ * through overwrites & deletes.
+ */
+public class ItemTableTest {
+
+    private ItemTable table;
+
+    @Before
+    public void setUp() {
+        table = new ItemTable();
+        table.put(item("a", "Lamp", 10.0, 100, "available", "s1"));
+        table.put(item("b", "apple", 5.0, 300, "available", "s2"));
+        table.put(item("c", "Zebra", 20.0, 200, "pending", "s1"));
+        table.put(item("d", " desk", 5.0, 400, "available", "s1"));
+    }
+
+    @Test
+    public void selectReturnsEachOrder() {
+        ItemTable.Filter all = new ItemTable.Filter();
+        assertEquals(Arrays.asList("d", "b", "c", "a"), table.select(all, ItemTable.ORDER_NEWEST));
+        // trimmed & lowercase, like the statusName index
+        assertEquals(Arrays.asList("b", "d", "a", "c"), table.select(all, ItemTable.ORDER_NAME));
+        assertEquals(Arrays.asList("b", "d", "a", "c"), table.select(all, ItemTable.ORDER_PRICE_LOW));
+        assertEquals(Arrays.asList("c", "a", "d", "b"), table.select(all, ItemTable.ORDER_PRICE_HIGH));
+    }
+
+    @Test
+    public void filtersCombine() {
+        ItemTable.Filter filter = new ItemTable.Filter()
+                .withStatus("available")
+                .soldBy("s1")
+                .priceBetween(0.0, 10.0);
+        assertEquals(Arrays.asList("d", "a"), table.select(filter, ItemTable.ORDER_NEWEST));
+
+        ItemTable.Filter recent = new ItemTable.Filter().postedSince(250);
+        assertEquals(Arrays.asList("d", "b"), table.select(recent, ItemTable.ORDER_NEWEST));
+    }
+
+    @Test
+    public void priceRangesInPriceOrders() {
+        // both bounds are inclusive, & ties keep their key order either way
+        ItemTable.Filter range = new ItemTable.Filter().priceBetween(5.0, 10.0);
+        assertEquals(Arrays.asList("b", "d", "a"), table.select(range, ItemTable.ORDER_PRICE_LOW));
+        assertEquals(Arrays.asList("a", "d", "b"), table.select(range, ItemTable.ORDER_PRICE_HIGH));
+
+        ItemTable.Filter none = new ItemTable.Filter().priceBetween(11.0, 19.0);
+        assertTrue(table.select(none, ItemTable.ORDER_PRICE_LOW).isEmpty());
+        ItemTable.Filter above = new ItemTable.Filter().priceBetween(6.0, Double.POSITIVE_INFINITY);
+        assertEquals(Arrays.asList("c", "a"), table.select(above, ItemTable.ORDER_PRICE_HIGH));
+    }
+
+    @Test
+    public void rowsHandBackTheirItems() {
+        Item lamp = table.get("a");
+        assertEquals("Lamp", lamp.getName());
+        assertNull(table.get("missing"));
+
+        ItemTable.Filter cheap = new ItemTable.Filter().priceBetween(0.0, 5.0);
+        List<Item> items = table.selectItems(cheap, ItemTable.ORDER_NAME);
+        assertEquals(2, items.size());
+        assertSame(table.get("b"), items.get(0));
+        assertSame(table.get("d"), items.get(1));
+
+        table.remove("a");
+        assertNull(table.get("a"));
+        // the last row moved into the removed one's place
+        assertEquals(" desk", table.get("d").getName());
+    }
+
+    @Test
+    public void unknownUserMatchesNothing() {
+        ItemTable.Filter filter = new ItemTable.Filter().soldBy("nobody");
+        assertTrue(table.select(filter, ItemTable.ORDER_NEWEST).isEmpty());
+    }
+
+    @Test
+    public void categoriesAreMatchedByOrdinal() {
+        Item chair = item("e", "Chair", 1.0, 50, "available", "s3");
+        chair.setCategoryId("table-test-furniture");
+        table.put(chair);
+
+        ItemTable.Filter filter = new ItemTable.Filter()
+                .inCategories(Collections.singleton("table-test-furniture"));
+        assertEquals(Collections.singletonList("e"), table.select(filter, ItemTable.ORDER_NAME));
+        // an empty set leaves the condition off
+        ItemTable.Filter none = new ItemTable.Filter().inCategories(Collections.emptySet());
+        assertEquals(5, table.select(none, ItemTable.ORDER_NAME).size());
+    }
+
+    @Test
+    public void overwriteMovesTheRow() {
+        table.put(item("a", "Lamp", 1.0, 500, "available", "s1"));
+        ItemTable.Filter all = new ItemTable.Filter();
+        assertEquals(Arrays.asList("a", "d", "b", "c"), table.select(all, ItemTable.ORDER_NEWEST));
+        assertEquals(Arrays.asList("a", "b", "d", "c"), table.select(all, ItemTable.ORDER_PRICE_LOW));
+        assertEquals(4, table.size());
+    }
+
+    @Test
+    public void removeKeepsTheOrders() {
+        // "a" is the first row, so the last row moves into its place
+        table.remove("a");
+        table.remove("missing");
+        ItemTable.Filter all = new ItemTable.Filter();
+        assertEquals(Arrays.asList("d", "b", "c"), table.select(all, ItemTable.ORDER_NEWEST));
+        assertEquals(Arrays.asList("b", "d", "c"), table.select(all, ItemTable.ORDER_NAME));
+        assertFalse(table.contains("a"));
+        assertTrue(table.contains("d"));
+
+        table.put(item("a", "Lamp", 10.0, 100, "available", "s1"));
+        assertEquals(Arrays.asList("d", "b", "c", "a"), table.select(all, ItemTable.ORDER_NEWEST));
+    }
+
+    @Test
+    public void randomChangesMatchASort() {
+        Random random = new Random(7);
+        Map<String, Item> live = new HashMap<>();
+        String[] names = { "Lamp", "apple", " lamp", "Desk", "zebra" };
+        for (int step = 0; step < 5000; step++) {
+            String key = "k" + random.nextInt(200);
+            if (random.nextInt(4) == 0) {
+                table.remove(key);
+                live.remove(key);
+            } else {
+                Item item = item(key, names[random.nextInt(names.length)],
+                        random.nextInt(20), random.nextInt(50), "available", "s1");
+                table.put(item);
+                live.put(key, item);
+            }
+        }
+        // the four items from setUp are still in the table
+        for (String key : new String[] { "a", "b", "c", "d" }) {
+            table.remove(key);
+        }
+
+        ItemTable.Filter all = new ItemTable.Filter();
+        assertEquals(sorted(live, Item.NEWEST_FIRST), table.select(all, ItemTable.ORDER_NEWEST));
+        assertEquals(sorted(live, Item.BY_NAME), table.select(all, ItemTable.ORDER_NAME));
+        assertEquals(sorted(live, Item.PRICE_LOW_FIRST), table.select(all, ItemTable.ORDER_PRICE_LOW));
+        assertEquals(sorted(live, Item.PRICE_HIGH_FIRST), table.select(all, ItemTable.ORDER_PRICE_HIGH));
+
+        Map<String, Item> inRange = new HashMap<>();
+        for (Item item : live.values()) {
+            if (item.getPrice() >= 5.0 && item.getPrice() <= 12.0) inRange.put(item.getKey(), item);
+        }
+        ItemTable.Filter range = new ItemTable.Filter().priceBetween(5.0, 12.0);
+        assertEquals(sorted(inRange, Item.PRICE_LOW_FIRST), table.select(range, ItemTable.ORDER_PRICE_LOW));
+        assertEquals(sorted(inRange, Item.PRICE_HIGH_FIRST), table.select(range, ItemTable.ORDER_PRICE_HIGH));
+        assertEquals(sorted(inRange, Item.BY_NAME), table.select(range, ItemTable.ORDER_NAME));
+    }
+
+    @Test
+    public void clearEmptiesTheTable() {
+        table.clear();
+        assertEquals(0, table.size());
+        assertTrue(table.select(new ItemTable.Filter(), ItemTable.ORDER_NAME).isEmpty());
+    }
+
+    private static List<String> sorted(Map<String, Item> items, Comparator<Item> order) {
+        List<Item> list = new ArrayList<>(items.values());
+        list.sort(order);
+        List<String> keys = new ArrayList<>();
+        for (Item item : list) {
+            keys.add(item.getKey());
+        }
+        return keys;
+    }
+
+    private static Item item(String key, String name, double price, long time,
+                             String status, String sellerId) {
+        Item item = new Item(sellerId, name, null, time, price, status, null);
+        item.setKey(key);
+        return item;
+    }
+}
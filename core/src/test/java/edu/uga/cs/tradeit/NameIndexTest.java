@@ -0,0 +1,83 @@
+package edu.uga.cs.tradeit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for NameIndex: trigram searches, the short query fallback & keeping
+ * the posting lists right as names change.
+ */
+public class NameIndexTest {
+
+    private NameIndex index;
+
+    @Before
+    public void setUp() {
+        index = new NameIndex();
+        index.put("a", "Desk Lamp");
+        index.put("b", "Lamplight");
+        index.put("c", "Office Chair");
+    }
+
+    @Test
+    public void searchFindsSubstringsIgnoringCase() {
+        assertEquals(keys("a", "b"), index.search("lamp"));
+        assertEquals(keys("a", "b"), index.search("  LAMP "));
+        assertEquals(keys("c"), index.search("ice ch"));
+    }
+
+    @Test
+    public void shortQueriesCheckEveryName() {
+        assertEquals(keys("a", "b"), index.search("am"));
+        assertEquals(keys("a", "b", "c"), index.search("a"));
+    }
+
+    @Test
+    public void emptyQueryMatchesEverything() {
+        assertEquals(keys("a", "b", "c"), index.search(""));
+        assertEquals(keys("a", "b", "c"), index.search(null));
+    }
+
+    @Test
+    public void unknownTrigramMatchesNothing() {
+        assertTrue(index.search("xyz").isEmpty());
+    }
+
+    @Test
+    public void allTrigramsOutOfOrderIsNoMatch() {
+        // has abc, bca & cab, but not "abcab"
+        index.put("d", "abcaxcab");
+        assertTrue(index.search("abcab").isEmpty());
+        assertEquals(keys("d"), index.search("xcab"));
+    }
+
+    @Test
+    public void renameAndRemoveUpdateThePostings() {
+        index.put("b", "Sofa");
+        assertEquals(keys("a"), index.search("lamp"));
+        assertEquals(keys("b"), index.search("sofa"));
+
+        index.remove("a");
+        assertTrue(index.search("lamp").isEmpty());
+        assertFalse(index.matches("a", "desk"));
+    }
+
+    @Test
+    public void matchesChecksOneItem() {
+        assertTrue(index.matches("a", "K LA"));
+        assertFalse(index.matches("c", "lamp"));
+        assertFalse(index.matches("missing", "lamp"));
+    }
+
+    private static Set<String> keys(String... keys) {
+        Set<String> set = new HashSet<>();
+        Collections.addAll(set, keys);
+        return set;
+    }
+}
@@ -0,0 +1,68 @@
+package edu.uga.cs.tradeit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for PriceIndex: inclusive range bounds, tie order & moving items
+ * when their price changes.
+ */
+public class PriceIndexTest {
+
+    private PriceIndex index;
+
+    @Before
+    public void setUp() {
+        index = new PriceIndex();
+        index.put("d", 10.0);
+        index.put("a", 0.0);
+        index.put("c", 5.0);
+        index.put("e", 20.0);
+        index.put("b", 5.0);
+    }
+
+    @Test
+    public void bothBoundsAreIncluded() {
+        assertEquals(Arrays.asList("b", "c", "d"), index.keysBetween(5.0, 10.0, false));
+        assertEquals(3, index.countBetween(5.0, 10.0));
+        assertEquals(Collections.singletonList("a"), index.keysBetween(0.0, 0.0, false));
+    }
+
+    @Test
+    public void descendingIsTheExactReverse() {
+        assertEquals(Arrays.asList("d", "c", "b"), index.keysBetween(5.0, 10.0, true));
+        assertEquals(Arrays.asList("e", "d", "c", "b", "a"),
+                index.keysBetween(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, true));
+    }
+
+    @Test
+    public void rangesBetweenPricesAreEmpty() {
+        assertTrue(index.keysBetween(5.5, 9.5, false).isEmpty());
+        assertTrue(index.keysBetween(21.0, 100.0, false).isEmpty());
+        assertEquals(0, index.countBetween(-10.0, -1.0));
+    }
+
+    @Test
+    public void putMovesAChangedPrice() {
+        index.put("a", 7.0);
+        assertEquals(Arrays.asList("b", "c", "a", "d"), index.keysBetween(5.0, 10.0, false));
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    public void removeTakesTheItemOut() {
+        index.remove("c");
+        index.remove("missing");
+        assertEquals(Arrays.asList("b", "d"), index.keysBetween(5.0, 10.0, false));
+        assertEquals(4, index.size());
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertTrue(index.keysBetween(0.0, 100.0, false).isEmpty());
+    }
+}